@@ -1,4 +1,4 @@
 #!/bin/sh
 ls -l /ai
 # Start the Java application
-exec java -Djava.security.egd=file:/dev/./urandom -jar /ai/mcpdemo.jar
\ No newline at end of file
+exec java --add-modules jdk.incubator.vector -Djava.security.egd=file:/dev/./urandom -jar /ai/mcpdemo.jar
\ No newline at end of file
@@ -23,4 +23,117 @@ public class OpenAIConfig {
 
     @Value("${openai.max-tokens:500}")
     private int maxTokens;
+
+    // Request timeout of the model clients
+    @Value("${openai.timeout-seconds:60}")
+    private int timeoutSeconds;
+
+    // Model clients are reused per (API key, model, settings); each holds its own HTTP connection pool
+    @Value("${openai.clients.max-entries:64}")
+    private int clientMaxEntries;
+
+    @Value("${openai.clients.ttl-seconds:1800}")
+    private long clientTtlSeconds;
+
+    // Per-API-key provider limits; 0 disables a bucket
+    @Value("${openai.rate-limit.requests-per-minute:3000}")
+    private long requestsPerMinute;
+
+    @Value("${openai.rate-limit.tokens-per-minute:1000000}")
+    private long tokensPerMinute;
+
+    // Retries of a rate-limited (429) or failed (5xx) call, with exponential backoff
+    @Value("${openai.rate-limit.max-retries:3}")
+    private int rateLimitMaxRetries;
+
+    // Longest an interactive call (chat, query embedding) waits for the limits and backoff before failing with 429;
+    // ingestion batches run on the embedding pool and wait as long as it takes
+    @Value("${openai.rate-limit.max-wait-millis:2000}")
+    private long rateLimitMaxWaitMillis;
+
+    // Adaptive (AIMD) concurrency limit per API key, model and call type (chat, query or batch embeddings)
+    @Value("${openai.concurrency.initial:8}")
+    private int concurrencyInitial;
+
+    @Value("${openai.concurrency.min:1}")
+    private int concurrencyMin;
+
+    @Value("${openai.concurrency.max:64}")
+    private int concurrencyMax;
+
+    // Calls slower than this multiple of the baseline latency shrink the limit
+    @Value("${openai.concurrency.latency-tolerance:3.0}")
+    private double concurrencyLatencyTolerance;
+
+    // Ingestion embeds chunks in batches bounded by input count and (estimated) tokens per request
+    @Value("${openai.embedding.batch-size:256}")
+    private int embeddingBatchSize;
+
+    @Value("${openai.embedding.batch-tokens:100000}")
+    private int embeddingBatchTokens;
+
+    // Embedding batches in flight at once, across all uploads
+    @Value("${openai.embedding.concurrency:4}")
+    private int embeddingConcurrency;
+
+    // Embeddings are cached on disk by (model, SHA-256 of the normalized text)
+    @Value("${openai.embedding.cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
+
+    @Value("${storage.embedding-cache-file:/tmp/embedding_cache.bin}")
+    private String embeddingCacheFile;
+
+    // Cached vectors kept in memory in front of the file
+    @Value("${openai.embedding.cache.memory-entries:10000}")
+    private int embeddingCacheMemoryEntries;
+
+    // Recent search-query embeddings kept in memory (W-TinyLFU eviction), each for at most ttl-seconds
+    @Value("${openai.embedding.query-cache.max-entries:10000}")
+    private int queryCacheMaxEntries;
+
+    @Value("${openai.embedding.query-cache.ttl-seconds:3600}")
+    private long queryCacheTtlSeconds;
+
+    // Single-text embedding requests arriving within window-millis of each other are sent as one batch
+    // of up to max-size texts; 0 sends each request on its own
+    @Value("${openai.embedding.micro-batch.window-millis:5}")
+    private int microBatchWindowMillis;
+
+    @Value("${openai.embedding.micro-batch.max-size:64}")
+    private int microBatchMaxSize;
+
+    // Micro-batches in flight at once, on their own threads so query embeddings never wait behind ingestion
+    @Value("${openai.embedding.micro-batch.concurrency:4}")
+    private int microBatchConcurrency;
+
+    // Embedding backend: openai (the API) or local (an ONNX sentence-embedding model run in-process)
+    @Value("${openai.embedding.provider:openai}")
+    private String embeddingProvider;
+
+    // Vector size requested from the OpenAI embedding model (text-embedding-3 models can shorten their vectors);
+    // 0 for the model's full size
+    @Value("${openai.embedding.dimension:0}")
+    private int embeddingDimension;
+
+    @Value("${openai.embedding.local.model-path:}")
+    private String localModelPath;
+
+    @Value("${openai.embedding.local.tokenizer-path:}")
+    private String localTokenizerPath;
+
+    // mean or cls, as the model was trained
+    @Value("${openai.embedding.local.pooling:mean}")
+    private String localPooling;
+
+    // Name in embedding cache keys; defaults to the model file name
+    @Value("${openai.embedding.local.model-name:}")
+    private String localModelName;
+
+    // Inference threads for batches; 0 for one per CPU core
+    @Value("${openai.embedding.local.threads:0}")
+    private int localThreads;
+
+    public boolean isLocalEmbeddings() {
+        return "local".equalsIgnoreCase(embeddingProvider);
+    }
 }
@@ -20,9 +20,6 @@ public class QdrantConfig {
     @Value("${qdrant.collection-name:science_curriculum_g3_g6}")
     private String collectionName;
 
-    @Value("${qdrant.vector-size:1536}")
-    private int vectorSize;
-
     @Bean
     public QdrantClient qdrantClient() {
         try {
@@ -56,8 +53,4 @@ public class QdrantConfig {
     public String getCollectionName() {
         return collectionName;
     }
-
-    public int getVectorSize() {
-        return vectorSize;
-    }
 }
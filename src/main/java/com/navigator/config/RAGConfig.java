@@ -0,0 +1,142 @@
+package com.navigator.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * In-memory RAG index configuration.
+ * Selects the vector index implementation, its tuning parameters and the similarity kernels.
+ */
+@Configuration
+@Getter
+public class RAGConfig {
+
+    // "exact" for a brute-force scan (the default, identical results to before), "hnsw" for the approximate
+    // graph index, "int8" / "binary" for a scalar- / sign-bit-quantized scan with full-precision rescoring
+    @Value("${rag.index.type:exact}")
+    private String indexType;
+
+    @Value("${rag.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.index.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.index.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    // Quantized indexes rescore k * oversample candidates with the full-precision vectors
+    @Value("${rag.index.quantized.oversample:4}")
+    private int quantizedOversample;
+
+    // Sign-bit codes are much coarser than int8, so the binary index rescores a wider shortlist
+    @Value("${rag.index.quantized.binary-oversample:16}")
+    private int binaryOversample;
+
+    // Default number of chunks used as context for a RAG answer
+    @Value("${rag.search.top-k:3}")
+    private int searchTopK;
+
+    // Chunks scoring below this cosine similarity are never used as context
+    @Value("${rag.search.min-score:0.0}")
+    private double searchMinScore;
+
+    // "vector" for embedding similarity only, "hybrid" to fuse it with BM25 keyword matches
+    @Value("${rag.search.mode:vector}")
+    private String searchMode;
+
+    // Results taken from each ranking before reciprocal rank fusion
+    @Value("${rag.search.hybrid.candidates:50}")
+    private int hybridCandidates;
+
+    // RRF damping constant: each ranking contributes 1 / (rrf-k + rank)
+    @Value("${rag.search.hybrid.rrf-k:60}")
+    private int hybridRrfK;
+
+    @Value("${rag.search.bm25.k1:1.2}")
+    private float bm25K1;
+
+    @Value("${rag.search.bm25.b:0.75}")
+    private float bm25B;
+
+    // Exact scans over at least this many chunks are split into parallel shards, and the index segments
+    // are searched in parallel once they hold this many chunks together
+    @Value("${rag.search.parallel.threshold:20000}")
+    private int searchParallelThreshold;
+
+    // Threads in the dedicated scan pool; 0 means half of the available cores
+    @Value("${rag.search.parallel.parallelism:0}")
+    private int searchParallelism;
+
+    // Metadata fields with a bitmap index; only these can be used as search filters
+    @Value("${rag.metadata.indexed-fields:grade,subject,filename,source}")
+    private List<String> metadataIndexedFields;
+
+    // Chunk text lives outside the index in <chunk-file>.<epoch>, read only for the final hits
+    @Value("${storage.rag-chunk-file:/tmp/rag_chunks.blob}")
+    private String chunkFile;
+
+    // "none" or "deflate" (per block)
+    @Value("${rag.chunks.compression:deflate}")
+    private String chunkCompression;
+
+    // Uncompressed block size; a chunk read inflates its whole block
+    @Value("${rag.chunks.block-bytes:16384}")
+    private int chunkBlockBytes;
+
+    // Decompressed blocks kept in memory
+    @Value("${rag.chunks.cache-blocks:256}")
+    private int chunkCacheBlocks;
+
+    // Force the write-ahead log to disk at the end of every upload
+    @Value("${rag.wal.fsync:true}")
+    private boolean walFsync;
+
+    // The write-ahead log is checkpointed into the segment, in the background, once it grows past this size
+    @Value("${rag.wal.checkpoint-bytes:67108864}")
+    private long walCheckpointBytes;
+
+    // New chunks go to a mutable vector segment, sealed once it holds this many chunks
+    @Value("${rag.segments.max-mutable-chunks:10000}")
+    private int segmentMaxMutableChunks;
+
+    // The background compactor merges this many sealed segments of similar size at a time
+    @Value("${rag.segments.merge-factor:4}")
+    private int segmentMergeFactor;
+
+    // Merges stop short of segments with more vector data than this (a segment file section holds under 2 GB)
+    @Value("${rag.segments.max-segment-bytes:1073741824}")
+    private long segmentMaxBytes;
+
+    // A sealed segment with at least this fraction of deleted chunks is rewritten without them
+    @Value("${rag.segments.delete-ratio:0.3}")
+    private double segmentDeleteRatio;
+
+    // Use the JDK Vector API kernels when the jdk.incubator.vector module is enabled
+    @Value("${rag.simd.enabled:true}")
+    private boolean simdEnabled;
+
+    /**
+     * Quantized indexes keep their full-precision vectors off-heap, only touched when rescoring
+     */
+    public boolean isQuantizedIndex() {
+        return "int8".equalsIgnoreCase(indexType) || "binary".equalsIgnoreCase(indexType);
+    }
+
+    public boolean isHybridSearch() {
+        return "hybrid".equalsIgnoreCase(searchMode);
+    }
+
+    /**
+     * Scan pool size, leaving the other half of the cores to request threads by default
+     */
+    public int resolveSearchParallelism() {
+        if (searchParallelism > 0) {
+            return searchParallelism;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+}
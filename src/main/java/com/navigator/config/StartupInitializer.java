@@ -1,5 +1,6 @@
 package com.navigator.config;
 
+import com.navigator.model.response.SourceUpdateResponse;
 import com.navigator.service.RAGService;
 import com.navigator.util.PDFProcessor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,7 +20,7 @@ import java.util.stream.Stream;
 
 /**
  * Startup initializer for the Navigator application.
- * Loads RAG state and performs other initialization tasks.
+ * Loads RAG state (segment plus write-ahead log) and performs other initialization tasks.
  */
 @Slf4j
 @Component
@@ -40,9 +41,10 @@ public class StartupInitializer {
     public void onApplicationReady() {
         log.info("🔄 Initializing Navigator application...");
 
-        // Try to load existing RAG state first
+        // Try to load existing RAG state first: the last checkpoint, then the uploads logged since
         boolean loaded = ragService.loadState();
-        if (loaded) {
+        int replayed = ragService.replayWriteAheadLog();
+        if (loaded || replayed > 0) {
             log.info("✅ RAG system initialized with {} document chunks from saved state", ragService.getDocumentCount());
         } else {
             log.info("📚 No saved RAG state found. Loading from knowledge base...");
@@ -87,16 +89,17 @@ public class StartupInitializer {
                         metadata.put("source", "knowledge_base");
                         metadata.put("loaded_at", Instant.now().toString());
                         
-                        // Add to RAG system
-                        int docCountBefore = ragService.getDocumentCount();
-                        ragService.addDocument(text, metadata, openAIConfig.getApiKey());
-                        int chunksAdded = ragService.getDocumentCount() - docCountBefore;
+                        // Add to RAG system as a source identified by its path under the knowledge base,
+                        // so same-named files in different folders stay distinct and can be replaced or deleted
+                        SourceUpdateResponse result = ragService.indexSource(sourceId(relativePath), text, metadata,
+                                openAIConfig.getApiKey());
+                        int chunksAdded = result.getChunksAdded();
                         
                         totalChunks += chunksAdded;
                         processedFiles++;
                         
                         log.info("✅ Loaded: {} ({} chunks) - Grade {}, Subject: {}", 
-                            pdfFile.getName(), 
+                            relativePath, 
                             chunksAdded,
                             metadata.get("grade"),
                             metadata.get("subject"));
@@ -139,4 +142,11 @@ public class StartupInitializer {
         
         return metadata;
     }
+
+    /**
+     * Source identity of a knowledge base file: its path relative to the knowledge base, with forward slashes
+     */
+    private static String sourceId(String relativePath) {
+        return relativePath.replace("\\", "/");
+    }
 }
@@ -5,13 +5,16 @@ import com.navigator.model.request.ChatRequest;
 import com.navigator.model.response.ConversationResponse;
 import com.navigator.service.ConversationService;
 import com.navigator.service.OpenAIService;
+import com.navigator.service.RateLimitedException;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 
 import jakarta.validation.Valid;
@@ -89,7 +92,9 @@ public class ChatController {
                     })
                     .doOnError(error -> {
                         log.error("Error in chat streaming: {}", error.getMessage());
-                    });
+                    })
+                    .onErrorMap(RateLimitedException::isCause,
+                            error -> new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, error.getMessage(), error));
 
         } catch (Exception e) {
             log.error("Error processing chat request: {}", e.getMessage());
@@ -1,11 +1,15 @@
 package com.navigator.controller;
 
 import com.navigator.model.ConversationMessage;
+import com.navigator.model.Document;
 import com.navigator.model.request.RAGChatRequest;
 import com.navigator.model.response.RAGResponse;
 import com.navigator.model.response.RAGStatusResponse;
+import com.navigator.model.response.SourceUpdateResponse;
 import com.navigator.service.ConversationService;
+import com.navigator.service.QdrantService;
 import com.navigator.service.RAGService;
+import com.navigator.service.RateLimitedException;
 import com.navigator.util.PDFProcessor;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -19,6 +23,7 @@ import jakarta.validation.Valid;
 import java.io.File;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,17 +37,21 @@ public class RAGController {
 
     private final RAGService ragService;
     private final ConversationService conversationService;
+    private final QdrantService qdrantService;
     
     @Value("${openai_api_key}")
     private String openaiApiKey;
 
-    public RAGController(RAGService ragService, ConversationService conversationService) {
+    public RAGController(RAGService ragService, ConversationService conversationService,
+                         QdrantService qdrantService) {
         this.ragService = ragService;
         this.conversationService = conversationService;
+        this.qdrantService = qdrantService;
     }
     
     /**
-     * Upload PDF documents to the RAG system
+     * Upload PDF documents to the RAG system.
+     * A file replaces the indexed version with the same filename; an unchanged file is skipped.
      * POST /api/rag/upload
      */
     @PostMapping("/rag/upload")
@@ -51,50 +60,45 @@ public class RAGController {
             @RequestParam("files") MultipartFile[] files) {
         try {
             int processedFiles = 0;
+            int unchangedFiles = 0;
             int totalChunks = 0;
+            int removedChunks = 0;
+            Map<String, String> qdrantErrors = new HashMap<>();
             
             for (MultipartFile file : files) {
                 if (file.isEmpty() || !file.getOriginalFilename().toLowerCase().endsWith(".pdf")) {
                     continue;
                 }
-                
-                // Save temporary file
-                File tempFile = File.createTempFile("upload_", ".pdf");
-                file.transferTo(tempFile);
-                
-                try {
-                    // Extract text from PDF
-                    Map<String, Object> pdfData = PDFProcessor.extractTextWithMetadata(tempFile);
-                    String text = (String) pdfData.get("text");
-                    
-                    // Prepare metadata
-                    Map<String, Object> metadata = new HashMap<>();
-                    metadata.put("filename", file.getOriginalFilename());
-                    metadata.put("pages", pdfData.get("pages"));
-                    metadata.put("upload_time", Instant.now().toString());
-                    
-                    // Add to RAG system
-                    int docCountBefore = ragService.getDocumentCount();
-                    ragService.addDocument(text, metadata, openaiApiKey);
-                    int chunksAdded = ragService.getDocumentCount() - docCountBefore;
-                    
-                    totalChunks += chunksAdded;
-                    processedFiles++;
-                    
-                    log.info("✅ Processed: {} ({} chunks)", file.getOriginalFilename(), chunksAdded);
-                } finally {
-                    tempFile.delete();
+
+                // Replaces an earlier upload of the same path; an identical file is skipped
+                SourceUpdateResponse result = indexPdf(file, sourceId(file.getOriginalFilename()));
+                String qdrantError = mirrorToQdrant(result);
+                if (qdrantError != null) {
+                    qdrantErrors.put(result.getFilename(), qdrantError);
+                }
+                totalChunks += result.getChunksAdded();
+                removedChunks += result.getChunksRemoved();
+                if ("unchanged".equals(result.getStatus())) {
+                    unchangedFiles++;
                 }
+                processedFiles++;
+
+                log.info("✅ Processed: {} ({}, {} chunks)", file.getOriginalFilename(), result.getStatus(),
+                        result.getChunksAdded());
             }
             
-            // Save state
-            ragService.saveState();
-            
+            // No full save: chunks are durable in the write-ahead log, which is checkpointed once it grows large
+
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("files_processed", processedFiles);
+            response.put("files_unchanged", unchangedFiles);
             response.put("chunks_added", totalChunks);
+            response.put("chunks_removed", removedChunks);
             response.put("total_chunks", ragService.getDocumentCount());
+            if (!qdrantErrors.isEmpty()) {
+                response.put("qdrant_errors", qdrantErrors);
+            }
             
             return ResponseEntity.ok(response);
             
@@ -107,6 +111,186 @@ public class RAGController {
         }
     }
 
+    /**
+     * List the indexed source documents
+     * GET /api/rag/sources
+     */
+    @GetMapping("/rag/sources")
+    @Operation(summary = "List sources", description = "Indexed documents with their content hash and chunk count")
+    public ResponseEntity<List<Map<String, Object>>> listSources() {
+        return ResponseEntity.ok(ragService.listSources());
+    }
+
+    /**
+     * Replace one source document with a new version of the PDF.
+     * The source is named by its path, e.g. grades/3/science/notes.pdf for a knowledge base file.
+     * PUT /api/rag/sources/{source}
+     */
+    @PutMapping("/rag/sources/{*source}")
+    @Operation(summary = "Replace a source",
+            description = "Re-index a PDF under the given filename; the previous version's chunks are removed")
+    public ResponseEntity<Map<String, Object>> replaceSource(@PathVariable String source,
+                                                             @RequestParam("file") MultipartFile file) {
+        String filename = sourceIdOrNull(source);
+        if (filename == null) {
+            return invalidSource(source);
+        }
+        try {
+            if (file.isEmpty()) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "Empty file");
+                return ResponseEntity.badRequest().body(error);
+            }
+            SourceUpdateResponse result = indexPdf(file, filename);
+            return ResponseEntity.ok(sourceResponse(result, mirrorToQdrant(result)));
+        } catch (Exception e) {
+            log.error("Error replacing source {}: {}", filename, e.getMessage(), e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(500).body(error);
+        }
+    }
+
+    /**
+     * Delete one source document (only the given version when contentHash is set)
+     * DELETE /api/rag/sources/{source}
+     */
+    @DeleteMapping("/rag/sources/{*source}")
+    @Operation(summary = "Delete a source", description = "Remove every chunk of a document from the RAG index")
+    public ResponseEntity<Map<String, Object>> deleteSource(@PathVariable String source,
+                                                            @RequestParam(required = false) String contentHash) {
+        String filename = sourceIdOrNull(source);
+        if (filename == null) {
+            return invalidSource(source);
+        }
+        try {
+            SourceUpdateResponse result = ragService.deleteSource(filename, contentHash);
+            // Also when nothing was removed locally, so repeating a delete repairs a failed Qdrant delete
+            String qdrantError = mirrorToQdrant(() -> qdrantService.deleteSource(filename, contentHash), filename);
+            if (result.getChunksRemoved() == 0) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "No indexed chunks for source " + filename);
+                return ResponseEntity.status(404).body(error);
+            }
+            return ResponseEntity.ok(sourceResponse(result, qdrantError));
+        } catch (Exception e) {
+            log.error("Error deleting source {}: {}", filename, e.getMessage(), e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(500).body(error);
+        }
+    }
+
+    /**
+     * Normalize a source name to the relative path form used by the knowledge base loader:
+     * forward slashes, no leading slash, no empty, "." or ".." segments
+     */
+    private static String sourceId(String name) {
+        StringBuilder id = new StringBuilder();
+        for (String part : name.replace("\\", "/").split("/")) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                continue;
+            }
+            if (id.length() > 0) {
+                id.append('/');
+            }
+            id.append(part);
+        }
+        if (id.length() == 0) {
+            throw new IllegalArgumentException("Invalid source name: " + name);
+        }
+        return id.toString();
+    }
+
+    /**
+     * {@link #sourceId}, or null for a name without any path segment (e.g. "/", "." or "..")
+     */
+    private static String sourceIdOrNull(String name) {
+        try {
+            return sourceId(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> invalidSource(String name) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", "Invalid source name: " + name);
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    private SourceUpdateResponse indexPdf(MultipartFile file, String filename) throws Exception {
+        // Save temporary file
+        File tempFile = File.createTempFile("upload_", ".pdf");
+        file.transferTo(tempFile);
+
+        try {
+            // Extract text from PDF
+            Map<String, Object> pdfData = PDFProcessor.extractTextWithMetadata(tempFile);
+            String text = (String) pdfData.get("text");
+
+            // Prepare metadata
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("pages", pdfData.get("pages"));
+            metadata.put("upload_time", Instant.now().toString());
+
+            return ragService.indexSource(filename, text, metadata, openaiApiKey);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Make Qdrant hold the same version of the source as the RAG index.
+     * Also runs for unchanged uploads, so a source whose earlier Qdrant write failed is repaired on re-upload;
+     * the point ids are stable and the embeddings cached, so that costs no new embeddings.
+     * Returns the Qdrant error message, or null when the write succeeded or Qdrant is not in use.
+     */
+    private String mirrorToQdrant(SourceUpdateResponse result) {
+        return mirrorToQdrant(() -> {
+            List<Document> chunks = ragService.sourceChunks(result.getFilename(), result.getContentHash());
+            if (chunks.isEmpty()) {
+                qdrantService.deleteSource(result.getFilename(), null);
+            } else {
+                qdrantService.replaceSource(result.getFilename(), result.getContentHash(), chunks, openaiApiKey);
+            }
+        }, result.getFilename());
+    }
+
+    /**
+     * Run a Qdrant write that follows a change already committed to the RAG index. A failure is logged and
+     * returned as a message instead of thrown: the local change stands, and failing the request would report
+     * it as not made.
+     */
+    private String mirrorToQdrant(Runnable write, String filename) {
+        if (!qdrantService.isAvailable()) {
+            return null;
+        }
+        try {
+            write.run();
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Qdrant is out of sync for source {}: {}", filename, e.getMessage(), e);
+            return e.getMessage();
+        }
+    }
+
+    private Map<String, Object> sourceResponse(SourceUpdateResponse result, String qdrantError) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("source", result);
+        response.put("total_chunks", ragService.getDocumentCount());
+        if (qdrantError != null) {
+            response.put("qdrant_error", qdrantError);
+        }
+        return response;
+    }
+
     /**
      * RAG chat endpoint
      * POST /api/rag-chat
@@ -123,7 +307,8 @@ public class RAGController {
             conversationService.addMessage(request.getUserId(), userMsg);
 
             // Query RAG system
-            String response = ragService.query(request.getUserMessage(), request.getApiKey());
+            String response = ragService.query(request.getUserMessage(), request.getTopK(),
+                    request.getMinScore(), request.toFilters(), request.getApiKey());
 
             // Add assistant response to conversation history
             ConversationMessage assistantMsg = new ConversationMessage(
@@ -138,7 +323,20 @@ public class RAGController {
                     ragService.getDocumentCount(),
                     "ok"));
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid RAG chat request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new RAGResponse(
+                    "Error: " + e.getMessage(),
+                    0,
+                    "error"));
         } catch (Exception e) {
+            if (RateLimitedException.isCause(e)) {
+                log.warn("RAG chat rate limited: {}", e.getMessage());
+                return ResponseEntity.status(429).body(new RAGResponse(
+                        "Error: " + e.getMessage(),
+                        0,
+                        "error"));
+            }
             log.error("Error in RAG chat: {}", e.getMessage());
             return ResponseEntity.status(500).body(new RAGResponse(
                     "Error: " + e.getMessage(),
@@ -178,6 +376,39 @@ public class RAGController {
         }
     }
 
+    /**
+     * Get in-memory index statistics
+     * GET /api/rag/index/stats
+     */
+    @GetMapping("/rag/index/stats")
+    @Operation(summary = "Get index statistics", description = "Index type, memory footprint and search metrics")
+    public ResponseEntity<Map<String, Object>> getIndexStats() {
+        return ResponseEntity.ok(ragService.getIndexStats());
+    }
+
+    /**
+     * Measure approximate index recall against the exact scan
+     * GET /api/rag/index/recall
+     */
+    @GetMapping("/rag/index/recall")
+    @Operation(summary = "Evaluate index recall",
+            description = "Compare recall@k against the exact scan to tune efSearch (hnsw) or oversample (quantized)")
+    public ResponseEntity<Map<String, Object>> evaluateRecall(
+            @RequestParam(defaultValue = "3") int k,
+            @RequestParam(defaultValue = "100") int samples,
+            @RequestParam(required = false) int[] efSearch,
+            @RequestParam(required = false) int[] oversample) {
+        try {
+            return ResponseEntity.ok(ragService.evaluateRecall(k, samples, efSearch != null ? efSearch : oversample));
+        } catch (Exception e) {
+            log.error("Error evaluating index recall: {}", e.getMessage(), e);
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(500).body(error);
+        }
+    }
+
     /**
      * Get RAG status for a specific user
      * GET /api/rag-status/{userId}
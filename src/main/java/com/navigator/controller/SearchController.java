@@ -1,9 +1,11 @@
 package com.navigator.controller;
 
-import com.navigator.model.Document;
+import com.navigator.model.request.BatchSearchRequest;
 import com.navigator.model.request.SearchRequest;
+import com.navigator.model.response.BatchSearchResponse;
 import com.navigator.model.response.SearchResponse;
 import com.navigator.service.QdrantService;
+import com.navigator.service.RateLimitedException;
 import com.navigator.service.RAGService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -12,7 +14,6 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * REST controller for search endpoints.
@@ -35,39 +36,79 @@ public class SearchController {
      * Search endpoint
      * POST /api/search
      * 
-     * Uses Qdrant if available, falls back to in-memory RAG
+     * Uses Qdrant if available, falls back to in-memory RAG.
+     * Retrieval only (no LLM call); results carry the backend's similarity score.
      */
     @PostMapping("/search")
     public ResponseEntity<List<SearchResponse>> search(@Valid @RequestBody SearchRequest request) {
         try {
-            List<Document> results;
+            List<SearchResponse> responses;
 
             // Try Qdrant first
             if (qdrantService.isAvailable()) {
                 log.info("Using Qdrant for search");
-                results = qdrantService.searchTopK(request.getQuery(), request.getTopK(), request.getApiKey());
+                responses = qdrantService.search(request.getQuery(), request.getTopK(), request.getMinScore(),
+                        request.toFilters(), request.getApiKey());
             } else {
                 log.info("Qdrant not available, using in-memory RAG");
-                // Fallback to RAG service
-                // Note: RAGService doesn't have a direct search method, so we'll return empty
-                // for now
-                // In a full implementation, you'd add a search method to RAGService
-                results = new ArrayList<>();
+                responses = ragService.search(request.getQuery(), request.getTopK(), request.getMinScore(),
+                        request.toFilters(), request.getApiKey());
             }
 
-            // Convert to response format
-            List<SearchResponse> responses = results.stream()
-                    .map(doc -> new SearchResponse(
-                            doc.getText(),
-                            1.0, // Score would come from Qdrant in real implementation
-                            doc.getMetadata()))
-                    .collect(Collectors.toList());
-
             return ResponseEntity.ok(responses);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new ArrayList<>());
         } catch (Exception e) {
+            if (RateLimitedException.isCause(e)) {
+                log.warn("Search rate limited: {}", e.getMessage());
+                return ResponseEntity.status(429).body(new ArrayList<>());
+            }
             log.error("Error in search: {}", e.getMessage());
             return ResponseEntity.status(500).body(new ArrayList<>());
         }
     }
+
+    /**
+     * Batch search endpoint
+     * POST /api/search/batch
+     *
+     * Embeds all queries in one call and scores them in one pass; uses Qdrant's batch search
+     * when available, otherwise the in-memory RAG index
+     */
+    @PostMapping("/search/batch")
+    public ResponseEntity<List<BatchSearchResponse>> searchBatch(@Valid @RequestBody BatchSearchRequest request) {
+        try {
+            List<String> queries = request.getQueries();
+            List<List<SearchResponse>> results;
+
+            if (qdrantService.isAvailable()) {
+                log.info("Using Qdrant for batch search of {} queries", queries.size());
+                results = qdrantService.searchBatch(queries, request.getTopK(), request.getMinScore(),
+                        request.toFilters(), request.getApiKey());
+            } else {
+                log.info("Qdrant not available, using in-memory RAG for batch search of {} queries", queries.size());
+                results = ragService.searchBatch(queries, request.getTopK(), request.getMinScore(),
+                        request.toFilters(), request.getApiKey());
+            }
+
+            List<BatchSearchResponse> responses = new ArrayList<>(queries.size());
+            for (int i = 0; i < queries.size(); i++) {
+                responses.add(new BatchSearchResponse(queries.get(i), results.get(i)));
+            }
+            return ResponseEntity.ok(responses);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new ArrayList<>());
+        } catch (Exception e) {
+            if (RateLimitedException.isCause(e)) {
+                log.warn("Batch search rate limited: {}", e.getMessage());
+                return ResponseEntity.status(429).body(new ArrayList<>());
+            }
+            log.error("Error in batch search: {}", e.getMessage());
+            return ResponseEntity.status(500).body(new ArrayList<>());
+        }
+    }
 }
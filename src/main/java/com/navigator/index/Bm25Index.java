@@ -0,0 +1,371 @@
+package com.navigator.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process inverted index with Okapi BM25 scoring over chunk text.
+ * Chunks are appended in ordinal order, so every postings list stays sorted and
+ * adding a chunk only appends to the lists of its terms.
+ * A deleted chunk no longer counts towards document frequencies, the chunk count or the average length, so
+ * replacing a source does not skew IDF. Its postings stay in place (and are skipped) until dead postings make
+ * up a quarter of all postings; the lists are then rewritten without them.
+ */
+public class Bm25Index {
+
+    private static final int MAGIC = 0x424D3235; // "BM25"
+    // Version 2 adds the deleted chunks and writes live postings only
+    private static final int VERSION = 2;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "can", "do", "does", "for", "from",
+            "has", "have", "how", "if", "in", "into", "is", "it", "its", "not", "of", "on", "or", "so",
+            "such", "that", "the", "their", "then", "there", "these", "they", "this", "to", "was", "we",
+            "what", "when", "where", "which", "who", "why", "will", "with", "you", "your");
+
+    private final float k1;
+    private final float b;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int[] lengths = new int[0];
+    // Token count of the live chunks
+    private long totalLength;
+    private int size;
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    private long postingCount;
+    private long deadPostings;
+    // A snapshot shares its arrays with the live index and must never be added to
+    private boolean readOnly;
+
+    public Bm25Index(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Index the text of the chunk with the given ordinal
+     */
+    public void add(int ordinal, String text) {
+        if (readOnly) {
+            throw new IllegalStateException("BM25 snapshot is read-only");
+        }
+        if (ordinal != size) {
+            throw new IllegalArgumentException("BM25 chunks must be added in ordinal order, expected " + size);
+        }
+
+        Map<String, Integer> termFrequencies = new LinkedHashMap<>();
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+        termFrequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new Postings()).add(ordinal, tf));
+        postingCount += termFrequencies.size();
+
+        if (size == lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(64, size + (size >> 1)));
+        }
+        lengths[size++] = tokens.size();
+        totalLength += tokens.size();
+    }
+
+    /**
+     * Remove a chunk from the statistics and from search results; text must be the text it was added with.
+     * Returns false when the chunk is unknown or already deleted.
+     */
+    public boolean delete(int ordinal, String text) {
+        if (readOnly) {
+            throw new IllegalStateException("BM25 snapshot is read-only");
+        }
+        if (ordinal < 0 || ordinal >= size || deleted.get(ordinal)) {
+            return false;
+        }
+
+        deleted.set(ordinal);
+        deletedCount++;
+        totalLength -= lengths[ordinal];
+        for (String term : new LinkedHashSet<>(tokenize(text))) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                list.live--;
+                deadPostings++;
+            }
+        }
+        if (deadPostings * 4 >= postingCount) {
+            purge();
+        }
+        return true;
+    }
+
+    public boolean isDeleted(int ordinal) {
+        return deleted.get(ordinal);
+    }
+
+    /**
+     * Top-k chunks by BM25 score for the query terms, best first; restricted to filter when not null
+     */
+    public SearchHits search(String query, int k, BitSet filter) {
+        int liveSize = size - deletedCount;
+        if (k <= 0 || liveSize == 0) {
+            return SearchHits.empty();
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings list = postings.get(term);
+            if (list != null && list.live > 0) {
+                lists.add(list);
+            }
+        }
+        float[] idfs = new float[lists.size()];
+        for (int t = 0; t < idfs.length; t++) {
+            int count = lists.get(t).live;
+            idfs[t] = (float) Math.log(1 + (liveSize - count + 0.5) / (count + 0.5));
+        }
+
+        // Document at a time over the sorted postings of the query terms: memory grows with the number of
+        // terms, not with the number of chunks
+        float avgLength = (float) totalLength / liveSize;
+        int[] cursors = new int[lists.size()];
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int t = 0; t < cursors.length; t++) {
+                Postings list = lists.get(t);
+                if (cursors[t] < list.count) {
+                    doc = Math.min(doc, list.docs[cursors[t]]);
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            boolean included = !deleted.get(doc) && (filter == null || filter.get(doc));
+            float norm = k1 * (1 - b + b * lengths[doc] / avgLength);
+            float score = 0;
+            for (int t = 0; t < cursors.length; t++) {
+                Postings list = lists.get(t);
+                if (cursors[t] < list.count && list.docs[cursors[t]] == doc) {
+                    int tf = list.frequencies[cursors[t]++];
+                    score += idfs[t] * tf * (k1 + 1) / (tf + norm);
+                }
+            }
+            if (included) {
+                top.offer(doc, score, k);
+            }
+        }
+        return top.drainDescending();
+    }
+
+    /**
+     * Chunks added, deleted ones included (the next ordinal to add)
+     */
+    public int size() {
+        return size;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Read-only view of the index as of now. It shares the postings and length arrays, which adds only extend
+     * past the counts captured here and purges replace instead of changing, so taking it costs one map entry
+     * per term (and a copy of the deleted set) instead of a copy of the postings.
+     * The caller must hold whatever lock guards {@link #add}; the view can then be read without it.
+     */
+    public Bm25Index snapshot() {
+        Bm25Index view = new Bm25Index(k1, b);
+        postings.forEach((term, list) -> view.postings.put(term, list.view()));
+        view.lengths = lengths;
+        view.totalLength = totalLength;
+        view.size = size;
+        view.deleted = (BitSet) deleted.clone();
+        view.deletedCount = deletedCount;
+        view.postingCount = postingCount;
+        view.deadPostings = deadPostings;
+        view.readOnly = true;
+        return view;
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Approximate heap footprint of the postings and length arrays in bytes
+     */
+    public long memoryBytes() {
+        long bytes = (long) lengths.length * Integer.BYTES;
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            bytes += entry.getKey().length() * 2L + (long) entry.getValue().docs.length * Integer.BYTES * 2;
+        }
+        return bytes;
+    }
+
+    /**
+     * Lowercased alphanumeric tokens of at least two characters, without stop words
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Serialize the live postings and the deleted chunks. Chunk text is not written; it is persisted with
+     * the RAG state.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(lengths[i]);
+        }
+        out.writeInt(deletedCount);
+        for (int ordinal = deleted.nextSetBit(0); ordinal >= 0; ordinal = deleted.nextSetBit(ordinal + 1)) {
+            out.writeInt(ordinal);
+        }
+        int terms = 0;
+        for (Postings list : postings.values()) {
+            if (list.live > 0) {
+                terms++;
+            }
+        }
+        out.writeInt(terms);
+        for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+            Postings list = entry.getValue();
+            if (list.live == 0) {
+                continue;
+            }
+            out.writeUTF(entry.getKey());
+            out.writeInt(list.live);
+            for (int i = 0; i < list.count; i++) {
+                if (!deleted.get(list.docs[i])) {
+                    out.writeInt(list.docs[i]);
+                    out.writeInt(list.frequencies[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore postings written by {@link #writeTo(DataOutput)}; version 1 data has no deleted chunks
+     */
+    public static Bm25Index readFrom(DataInput in, float k1, float b) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a BM25 index file");
+        }
+        int version = in.readInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported BM25 index version " + version);
+        }
+
+        Bm25Index index = new Bm25Index(k1, b);
+        index.size = in.readInt();
+        index.lengths = new int[index.size];
+        for (int i = 0; i < index.size; i++) {
+            index.lengths[i] = in.readInt();
+        }
+        if (version >= 2) {
+            index.deletedCount = in.readInt();
+            for (int i = 0; i < index.deletedCount; i++) {
+                index.deleted.set(in.readInt());
+            }
+        }
+        for (int i = 0; i < index.size; i++) {
+            if (!index.deleted.get(i)) {
+                index.totalLength += index.lengths[i];
+            }
+        }
+        int terms = in.readInt();
+        for (int t = 0; t < terms; t++) {
+            String term = in.readUTF();
+            int count = in.readInt();
+            Postings list = new Postings(count);
+            for (int i = 0; i < count; i++) {
+                list.add(in.readInt(), in.readInt());
+            }
+            index.postings.put(term, list);
+            index.postingCount += count;
+        }
+        return index;
+    }
+
+    /**
+     * Rewrite every postings list without the deleted chunks. New lists replace the old ones, so snapshots
+     * sharing the old arrays are unaffected.
+     */
+    private void purge() {
+        postings.replaceAll((term, list) -> {
+            Postings live = new Postings(list.live);
+            for (int i = 0; i < list.count; i++) {
+                if (!deleted.get(list.docs[i])) {
+                    live.add(list.docs[i], list.frequencies[i]);
+                }
+            }
+            return live;
+        });
+        postings.values().removeIf(list -> list.count == 0);
+        postingCount -= deadPostings;
+        deadPostings = 0;
+    }
+
+    /**
+     * Ordinals containing a term with the term's frequency in each, ascending by ordinal.
+     * count includes deleted chunks; live (the document frequency) does not.
+     */
+    private static final class Postings {
+        private int[] docs;
+        private int[] frequencies;
+        private int count;
+        private int live;
+
+        Postings() {
+            this(4);
+        }
+
+        Postings(int capacity) {
+            docs = new int[Math.max(1, capacity)];
+            frequencies = new int[docs.length];
+        }
+
+        Postings view() {
+            Postings view = new Postings(0);
+            view.docs = docs;
+            view.frequencies = frequencies;
+            view.count = count;
+            view.live = live;
+            return view;
+        }
+
+        void add(int doc, int frequency) {
+            if (count == docs.length) {
+                docs = Arrays.copyOf(docs, count * 2);
+                frequencies = Arrays.copyOf(frequencies, count * 2);
+            }
+            docs[count] = doc;
+            frequencies[count++] = frequency;
+            live++;
+        }
+    }
+}
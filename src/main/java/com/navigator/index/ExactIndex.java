@@ -0,0 +1,134 @@
+package com.navigator.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Brute-force index: scores every row of the matrix against the query.
+ * Always exact, so it also serves as the ground truth for recall measurements.
+ * Rows are scored in blocks with the batch dot-product kernel and selected with a
+ * bounded min-heap, so a search is O(n log k) and allocates nothing per candidate.
+ * With a {@link ShardedScanner} large matrices are scanned in parallel shards.
+ * A filtered search only scores the rows in the filter.
+ */
+public class ExactIndex implements VectorIndex {
+
+    private final VectorMatrix vectors;
+    private final ShardedScanner scanner;
+
+    public ExactIndex(VectorMatrix vectors) {
+        this(vectors, null);
+    }
+
+    public ExactIndex(VectorMatrix vectors, ShardedScanner scanner) {
+        this.vectors = vectors;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public void add(int ordinal) {
+        // Nothing to maintain, every search scans the matrix
+    }
+
+    @Override
+    public SearchHits search(float[] query, int k, float minScore) {
+        int rows = vectors.size();
+        if (k <= 0 || rows == 0) {
+            return SearchHits.empty();
+        }
+        int dimension = vectors.dimension();
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+
+        return scan(rows, k, minScore, (from, to, scores) -> vectors.dotRows(query, from, to, scores));
+    }
+
+    @Override
+    public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+        if (filter == null) {
+            return search(query, k, minScore);
+        }
+        return searchRows(query, k, minScore, ShardedScanner.filteredRows(filter, vectors.size()));
+    }
+
+    @Override
+    public SearchHits searchRows(float[] query, int k, float minScore, int[] rows) {
+        if (rows == null) {
+            return search(query, k, minScore);
+        }
+        if (k <= 0 || vectors.size() == 0) {
+            return SearchHits.empty();
+        }
+        if (query.length != vectors.dimension()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+
+        return scan(rows.length, k, minScore, ShardedScanner.gather(rows, row -> vectors.dot(query, row)))
+                .mapOrdinals(rows);
+    }
+
+    /**
+     * Batch search as one query-matrix x chunk-matrix product: every chunk row is read once per batch
+     */
+    @Override
+    public SearchHits[] searchBatch(float[][] queries, int k, float minScore, BitSet filter) {
+        return searchRowsBatch(queries, k, minScore,
+                filter == null ? null : ShardedScanner.filteredRows(filter, vectors.size()));
+    }
+
+    @Override
+    public SearchHits[] searchRowsBatch(float[][] queries, int k, float minScore, int[] rows) {
+        SearchHits[] empty = new SearchHits[queries.length];
+        Arrays.fill(empty, SearchHits.empty());
+        if (k <= 0 || vectors.size() == 0 || queries.length == 0) {
+            return empty;
+        }
+        for (float[] query : queries) {
+            if (query.length != vectors.dimension()) {
+                throw new IllegalArgumentException("Vectors must have the same dimension");
+            }
+        }
+
+        if (rows == null) {
+            return scanBatch(vectors.size(), queries.length, k, minScore,
+                    (from, to, scores) -> vectors.dotRowsBatch(queries, from, to, scores));
+        }
+
+        SearchHits[] hits = scanBatch(rows.length, queries.length, k, minScore, (from, to, scores) -> {
+            for (int i = from; i < to; i++) {
+                for (int q = 0; q < queries.length; q++) {
+                    scores[q][i - from] = vectors.dot(queries[q], rows[i]);
+                }
+            }
+        });
+        for (int q = 0; q < hits.length; q++) {
+            hits[q] = hits[q].mapOrdinals(rows);
+        }
+        return hits;
+    }
+
+    @Override
+    public String type() {
+        return "exact";
+    }
+
+    private SearchHits[] scanBatch(int rows, int queries, int k, float minScore, ShardedScanner.BatchScorer scorer) {
+        if (scanner == null) {
+            ScoreHeap[] heaps = ShardedScanner.scanRangeBatch(0, rows, queries, k, minScore, scorer);
+            SearchHits[] hits = new SearchHits[queries];
+            for (int q = 0; q < queries; q++) {
+                hits[q] = heaps[q].drainDescending();
+            }
+            return hits;
+        }
+        return scanner.searchBatch(rows, queries, k, minScore, scorer);
+    }
+
+    private SearchHits scan(int rows, int k, float minScore, ShardedScanner.BlockScorer scorer) {
+        if (scanner == null) {
+            return ShardedScanner.scanRange(0, rows, k, minScore, scorer).drainDescending();
+        }
+        return scanner.search(rows, k, minScore, scorer);
+    }
+}
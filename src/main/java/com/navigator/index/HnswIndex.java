@@ -0,0 +1,417 @@
+package com.navigator.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Hierarchical Navigable Small World graph (Malkov &amp; Yashunin) over the rows of a {@link VectorMatrix}.
+ * Nodes are inserted incrementally as chunks are added; lookups cost roughly O(log n) distance
+ * evaluations instead of a full scan. Rows are unit-length, so similarity is a plain dot product.
+ */
+public class HnswIndex implements TunableIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+    // Filters keeping at most 1 / FILTER_EXACT_RATIO of the nodes are answered by scanning just those rows
+    private static final int FILTER_EXACT_RATIO = 10;
+
+    private final VectorMatrix vectors;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    // links[node][level] = {count, neighbour1, neighbour2, ...}
+    private int[][][] links = new int[0][][];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(VectorMatrix vectors, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW M must be at least 2");
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(efSearch, 1);
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    @Override
+    public void add(int ordinal) {
+        if (ordinal != size) {
+            throw new IllegalArgumentException("HNSW nodes must be added in ordinal order, expected " + size);
+        }
+
+        ensureCapacity(size + 1);
+        int level = randomLevel();
+        links[ordinal] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[ordinal][l] = new int[maxConnections(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = ordinal;
+            maxLevel = level;
+            return;
+        }
+
+        float[] vector = vectors.get(ordinal);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedySearch(vector, ep, l);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            SearchHits candidates = searchLayer(vector, ep, efConstruction, l, null).drainDescending();
+            connect(ordinal, selectNeighbors(candidates, m), l);
+            ep = candidates.ordinal(0);
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = ordinal;
+        }
+    }
+
+    @Override
+    public SearchHits search(float[] query, int k, float minScore) {
+        return search(query, k, minScore, efSearch);
+    }
+
+    /**
+     * Search with an explicit beam width, used to tune efSearch against the exact scan
+     */
+    @Override
+    public SearchHits search(float[] query, int k, float minScore, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return SearchHits.empty();
+        }
+        if (query.length != vectors.dimension()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedySearch(query, ep, l);
+        }
+
+        ScoreHeap results = searchLayer(query, ep, Math.max(ef, k), 0, null);
+        while (results.size() > k || (!results.isEmpty() && results.topScore() < minScore)) {
+            results.pop();
+        }
+        return results.drainDescending();
+    }
+
+    /**
+     * Filtered search. Selective filters scan the matching rows directly; otherwise the graph is
+     * traversed as usual but only matching nodes are collected as results.
+     */
+    @Override
+    public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+        if (filter == null) {
+            return search(query, k, minScore);
+        }
+        return filteredSearch(query, k, minScore, filter.cardinality(), filter, null);
+    }
+
+    @Override
+    public SearchHits searchRows(float[] query, int k, float minScore, int[] rows) {
+        if (rows == null) {
+            return search(query, k, minScore);
+        }
+        return filteredSearch(query, k, minScore, rows.length, null, rows);
+    }
+
+    /**
+     * Filtered search given the filter as a bitmap, as ascending rows, or both; each is only built from the
+     * other when the chosen strategy needs it
+     */
+    private SearchHits filteredSearch(float[] query, int k, float minScore, int matching, BitSet filter,
+                                      int[] rows) {
+        if (entryPoint < 0 || k <= 0) {
+            return SearchHits.empty();
+        }
+        if (query.length != vectors.dimension()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+
+        if (matching <= Math.max(efSearch, k) || (long) matching * FILTER_EXACT_RATIO <= size) {
+            int[] matches = rows != null ? rows : ShardedScanner.filteredRows(filter, size);
+            return ShardedScanner.scanRange(0, matches.length, k, minScore,
+                    ShardedScanner.gather(matches, row -> vectors.dot(query, row))).drainDescending()
+                    .mapOrdinals(matches);
+        }
+        if (filter == null) {
+            filter = ShardedScanner.bitmap(rows);
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedySearch(query, ep, l);
+        }
+
+        // Widen the beam by the inverse selectivity so roughly ef matching nodes are still collected
+        int ef = (int) Math.min(matching, (long) Math.max(efSearch, k) * size / matching);
+        ScoreHeap results = searchLayer(query, ep, Math.max(ef, k), 0, filter);
+        while (results.size() > k || (!results.isEmpty() && results.topScore() < minScore)) {
+            results.pop();
+        }
+        return results.drainDescending();
+    }
+
+    @Override
+    public String type() {
+        return "hnsw";
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    @Override
+    public String tuningParameter() {
+        return "efSearch";
+    }
+
+    @Override
+    public int tuningValue() {
+        return efSearch;
+    }
+
+    @Override
+    public int[] defaultSweep() {
+        return new int[]{16, 32, 64, 128, 256};
+    }
+
+    /**
+     * Approximate heap footprint of the graph links in bytes
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (int node = 0; node < size; node++) {
+            for (int[] level : links[node]) {
+                bytes += (long) level.length * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Serialize the graph. Vectors are not written; they are persisted with the RAG state.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(m);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            int[][] nodeLinks = links[node];
+            out.writeInt(nodeLinks.length - 1);
+            for (int[] level : nodeLinks) {
+                out.writeInt(level[0]);
+                for (int i = 1; i <= level[0]; i++) {
+                    out.writeInt(level[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore a graph written by {@link #writeTo(DataOutput)} on top of the given vectors
+     */
+    public static HnswIndex readFrom(DataInput in, VectorMatrix vectors, int efConstruction, int efSearch)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an HNSW graph file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported HNSW graph version " + version);
+        }
+
+        HnswIndex index = new HnswIndex(vectors, in.readInt(), efConstruction, efSearch);
+        int count = in.readInt();
+        if (count != vectors.size()) {
+            throw new IOException("HNSW graph has " + count + " nodes but the index has " + vectors.size() + " vectors");
+        }
+
+        index.ensureCapacity(count);
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int node = 0; node < count; node++) {
+            int level = in.readInt();
+            index.links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                int[] neighbours = new int[index.maxConnections(l) + 1];
+                neighbours[0] = in.readInt();
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    neighbours[i] = in.readInt();
+                }
+                index.links[node][l] = neighbours;
+            }
+        }
+        index.size = count;
+        return index;
+    }
+
+    /**
+     * Best-first beam search within one layer. Returns a min-heap of at most ef results.
+     * With a filter, non-matching nodes are still traversed but never become results.
+     */
+    private ScoreHeap searchLayer(float[] query, int entry, int ef, int level, BitSet filter) {
+        BitSet visited = new BitSet(size);
+        ScoreHeap candidates = ScoreHeap.max(ef);
+        ScoreHeap results = ScoreHeap.min(ef + 1);
+
+        float entryScore = vectors.dot(query, entry);
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        if (filter == null || filter.get(entry)) {
+            results.push(entry, entryScore);
+        }
+
+        while (!candidates.isEmpty()) {
+            float candidateScore = candidates.topScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+
+            int[] neighbours = links[candidate][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float score = vectors.dot(query, neighbour);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbour, score);
+                    if (filter != null && !filter.get(neighbour)) {
+                        continue;
+                    }
+                    results.push(neighbour, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Greedy descent used on the upper layers
+     */
+    private int greedySearch(float[] query, int entry, int level) {
+        int current = entry;
+        float best = vectors.dot(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = vectors.dot(query, neighbours[i]);
+                if (score > best) {
+                    best = score;
+                    current = neighbours[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Neighbour selection heuristic: keep a candidate only if it is closer to the base node than to any
+     * neighbour already kept, then top up with the pruned candidates to preserve connectivity.
+     */
+    private int[] selectNeighbors(SearchHits candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int count = 0;
+        int[] pruned = new int[candidates.size()];
+        int prunedCount = 0;
+
+        for (int i = 0; i < candidates.size() && count < selected.length; i++) {
+            int candidate = candidates.ordinal(i);
+            float score = candidates.score(i);
+            boolean keep = true;
+            for (int j = 0; j < count; j++) {
+                if (vectors.dot(candidate, selected[j]) > score) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            } else {
+                pruned[prunedCount++] = candidate;
+            }
+        }
+
+        for (int i = 0; i < prunedCount && count < selected.length; i++) {
+            selected[count++] = pruned[i];
+        }
+        return selected;
+    }
+
+    private void connect(int node, int[] neighbours, int level) {
+        int[] own = links[node][level];
+        own[0] = neighbours.length;
+        System.arraycopy(neighbours, 0, own, 1, neighbours.length);
+
+        int maxConnections = maxConnections(level);
+        for (int neighbour : neighbours) {
+            int[] theirs = links[neighbour][level];
+            if (theirs[0] < maxConnections) {
+                theirs[++theirs[0]] = node;
+                continue;
+            }
+
+            // Over capacity: re-select the neighbour's links among its current ones plus the new node
+            ScoreHeap heap = ScoreHeap.min(maxConnections + 1);
+            for (int i = 1; i <= theirs[0]; i++) {
+                heap.push(theirs[i], vectors.dot(neighbour, theirs[i]));
+            }
+            heap.push(node, vectors.dot(neighbour, node));
+            int[] kept = selectNeighbors(heap.drainDescending(), maxConnections);
+            theirs[0] = kept.length;
+            System.arraycopy(kept, 0, theirs, 1, kept.length);
+        }
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return Math.min((int) (-Math.log(r) * levelMultiplier), MAX_LEVEL);
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes <= links.length) {
+            return;
+        }
+        int capacity = Math.max(nodes, Math.max(64, links.length + (links.length >> 1)));
+        links = Arrays.copyOf(links, capacity);
+    }
+}
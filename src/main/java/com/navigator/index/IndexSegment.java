@@ -0,0 +1,270 @@
+package com.navigator.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * One unit of the segmented vector index: the embeddings of a set of chunks with their own
+ * nearest-neighbour structure. Row r of the segment holds the chunk with global ordinal ordinals[r];
+ * ordinals ascend, so a chunk is located by binary search.
+ * <p>
+ * A segment accepts rows until it is sealed; from then on its vectors and index are immutable and
+ * only the tombstones (deleted rows) change. Merging sealed segments drops their tombstoned rows.
+ */
+public class IndexSegment {
+
+    private final int id;
+    private final VectorMatrix vectors;
+    private final VectorIndex index;
+    private int[] ordinals;
+    private int size;
+    private final BitSet deleted = new BitSet();
+    private volatile boolean sealed;
+
+    /**
+     * Empty, mutable segment
+     */
+    public IndexSegment(int id, VectorMatrix vectors, VectorIndex index) {
+        this(id, vectors, index, new int[0], false);
+    }
+
+    /**
+     * Segment over existing rows (e.g. loaded from disk or produced by a merge)
+     *
+     * @param ordinals global chunk ordinal of every row, ascending
+     */
+    public IndexSegment(int id, VectorMatrix vectors, VectorIndex index, int[] ordinals, boolean sealed) {
+        if (ordinals.length != vectors.size()) {
+            throw new IllegalArgumentException(
+                    "Segment " + id + " has " + vectors.size() + " vectors but " + ordinals.length + " ordinals");
+        }
+        this.id = id;
+        this.vectors = vectors;
+        this.index = index;
+        this.ordinals = ordinals;
+        this.size = ordinals.length;
+        this.sealed = sealed;
+    }
+
+    /**
+     * Append the vector of the chunk with the given global ordinal (greater than any already present)
+     */
+    public void add(int ordinal, float[] vector) {
+        if (sealed) {
+            throw new IllegalStateException("Segment " + id + " is sealed");
+        }
+        if (size > 0 && ordinal <= ordinals[size - 1]) {
+            throw new IllegalArgumentException("Segment rows must be added in ordinal order, got " + ordinal
+                    + " after " + ordinals[size - 1]);
+        }
+        int row = vectors.add(vector);
+        index.add(row);
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, Math.max(64, size + (size >> 1)));
+        }
+        ordinals[size++] = ordinal;
+    }
+
+    /**
+     * Stop accepting rows
+     */
+    public void seal() {
+        sealed = true;
+        if (ordinals.length != size) {
+            ordinals = Arrays.copyOf(ordinals, size);
+        }
+    }
+
+    /**
+     * Tombstone the row holding the given global ordinal; false when this segment does not hold it
+     */
+    public boolean delete(int ordinal) {
+        int row = rowOf(ordinal);
+        if (row < 0 || deleted.get(row)) {
+            return false;
+        }
+        deleted.set(row);
+        return true;
+    }
+
+    /**
+     * Row holding the given global ordinal, or a negative value when the segment does not contain it
+     */
+    public int rowOf(int ordinal) {
+        return Arrays.binarySearch(ordinals, 0, size, ordinal);
+    }
+
+    /**
+     * Top-k live rows of this segment, as global ordinals
+     *
+     * @param filter global ordinals to restrict the search to, or null
+     */
+    public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+        if (size == 0) {
+            return SearchHits.empty();
+        }
+        BitSet rows = rowFilter(filter);
+        if (rows != null && rows.isEmpty()) {
+            return SearchHits.empty();
+        }
+        return index.search(query, k, minScore, rows).mapOrdinals(ordinals);
+    }
+
+    /**
+     * Batch variant of {@link #search(float[], int, float, BitSet)}
+     */
+    public SearchHits[] searchBatch(float[][] queries, int k, float minScore, BitSet filter) {
+        BitSet rows = size == 0 ? new BitSet() : rowFilter(filter);
+        SearchHits[] hits = new SearchHits[queries.length];
+        if (rows != null && rows.isEmpty()) {
+            Arrays.fill(hits, SearchHits.empty());
+            return hits;
+        }
+        SearchHits[] local = index.searchBatch(queries, k, minScore, rows);
+        for (int q = 0; q < queries.length; q++) {
+            hits[q] = local[q].mapOrdinals(ordinals);
+        }
+        return hits;
+    }
+
+    /**
+     * Like {@link #search(float[], int, float, BitSet)}, with the filter given as ascending global ordinals
+     * (a metadata match), translated straight into this segment's rows
+     */
+    public SearchHits searchOrdinals(float[] query, int k, float minScore, int[] filter) {
+        if (filter == null) {
+            return search(query, k, minScore, null);
+        }
+        int[] rows = size == 0 ? new int[0] : liveRows(filter);
+        if (rows.length == 0) {
+            return SearchHits.empty();
+        }
+        return index.searchRows(query, k, minScore, rows).mapOrdinals(ordinals);
+    }
+
+    /**
+     * Batch variant of {@link #searchOrdinals}
+     */
+    public SearchHits[] searchOrdinalsBatch(float[][] queries, int k, float minScore, int[] filter) {
+        if (filter == null) {
+            return searchBatch(queries, k, minScore, null);
+        }
+        int[] rows = size == 0 ? new int[0] : liveRows(filter);
+        SearchHits[] hits = new SearchHits[queries.length];
+        if (rows.length == 0) {
+            Arrays.fill(hits, SearchHits.empty());
+            return hits;
+        }
+        SearchHits[] local = index.searchRowsBatch(queries, k, minScore, rows);
+        for (int q = 0; q < queries.length; q++) {
+            hits[q] = local[q].mapOrdinals(ordinals);
+        }
+        return hits;
+    }
+
+    /**
+     * Live rows of this segment holding any of the ascending global ordinals, ascending
+     */
+    int[] liveRows(int[] filter) {
+        int first = ordinals[0];
+        int last = ordinals[size - 1];
+        boolean contiguous = last - first == size - 1;
+        int[] rows = new int[Math.min(filter.length, size)];
+        int count = 0;
+        int start = Arrays.binarySearch(filter, first);
+        // Both lists ascend, so each ordinal is looked up past the row of the previous one
+        int next = 0;
+        for (int i = start < 0 ? -start - 1 : start; i < filter.length && filter[i] <= last; i++) {
+            int row = contiguous ? filter[i] - first : Arrays.binarySearch(ordinals, next, size, filter[i]);
+            if (row < 0) {
+                next = -row - 1;
+            } else {
+                next = row + 1;
+                if (!deleted.get(row)) {
+                    rows[count++] = row;
+                }
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Translate a filter over global ordinals into one over this segment's live rows;
+     * null when every row qualifies
+     */
+    BitSet rowFilter(BitSet filter) {
+        if (filter == null) {
+            if (deleted.isEmpty()) {
+                return null;
+            }
+            BitSet rows = new BitSet(size);
+            rows.set(0, size);
+            rows.andNot(deleted);
+            return rows;
+        }
+
+        int first = ordinals[0];
+        int last = ordinals[size - 1];
+        BitSet rows;
+        if (last - first == size - 1) {
+            // Contiguous ordinals (an unmerged segment): the filter slice is the row filter
+            rows = filter.get(first, last + 1);
+        } else {
+            rows = new BitSet(size);
+            for (int ordinal = filter.nextSetBit(first); ordinal >= 0 && ordinal <= last;
+                 ordinal = filter.nextSetBit(ordinal + 1)) {
+                int row = rowOf(ordinal);
+                if (row >= 0) {
+                    rows.set(row);
+                }
+            }
+        }
+        rows.andNot(deleted);
+        return rows;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public VectorMatrix vectors() {
+        return vectors;
+    }
+
+    public VectorIndex index() {
+        return index;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Rows, tombstoned ones included
+     */
+    public int size() {
+        return size;
+    }
+
+    public int deletedCount() {
+        return deleted.cardinality();
+    }
+
+    public int liveCount() {
+        return size - deletedCount();
+    }
+
+    /**
+     * Global ordinal of a row
+     */
+    public int ordinal(int row) {
+        return ordinals[row];
+    }
+
+    /**
+     * Copy of the tombstoned rows
+     */
+    public BitSet deletedRows() {
+        return (BitSet) deleted.clone();
+    }
+}
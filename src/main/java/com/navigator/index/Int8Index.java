@@ -0,0 +1,85 @@
+package com.navigator.index;
+
+import com.navigator.util.EmbeddingUtil;
+
+import java.util.Arrays;
+
+/**
+ * Scalar-quantized index: every component is stored as a signed byte with one float scale per row
+ * (symmetric, scale = max|x| / 127), a 4x reduction over float32. Candidates are ranked with an
+ * integer dot product and rescored against the full-precision rows.
+ */
+public class Int8Index extends QuantizedIndex {
+
+    private static final int INITIAL_ROWS = 64;
+
+    private byte[] codes = new byte[0];
+    private float[] scales = new float[0];
+    private int size;
+
+    public Int8Index(VectorMatrix vectors, ShardedScanner scanner, int oversample) {
+        super(vectors, scanner, oversample);
+    }
+
+    @Override
+    protected void encode(float[] vector) {
+        ensureCapacity(size + 1, vector.length);
+        scales[size] = quantize(vector, codes, size * vector.length);
+        size++;
+    }
+
+    @Override
+    protected int codedRows() {
+        return size;
+    }
+
+    @Override
+    protected ShardedScanner.RowScorer candidateScorer(float[] query) {
+        int dimension = query.length;
+        byte[] queryCodes = new byte[dimension];
+        float queryScale = quantize(query, queryCodes, 0);
+        return row -> queryScale * scales[row] * EmbeddingUtil.dotInt8(queryCodes, 0, codes, row * dimension, dimension);
+    }
+
+    @Override
+    public long codeMemoryBytes() {
+        return codes.length + (long) scales.length * Float.BYTES;
+    }
+
+    @Override
+    public String type() {
+        return "int8";
+    }
+
+    /**
+     * Quantize a vector into dst[offset, offset + length) and return its scale
+     */
+    static float quantize(float[] vector, byte[] dst, int offset) {
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(dst, offset, offset + vector.length, (byte) 0);
+            return 0f;
+        }
+
+        float scale = maxAbs / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            dst[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+
+    private void ensureCapacity(int rows, int dimension) {
+        if (rows <= scales.length) {
+            return;
+        }
+        int capacity = Math.max(rows, Math.max(INITIAL_ROWS, scales.length + (scales.length >> 1)));
+        if ((long) capacity * dimension > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Int8 index is full: " + size + " rows of dimension " + dimension);
+        }
+        codes = Arrays.copyOf(codes, capacity * dimension);
+        scales = Arrays.copyOf(scales, capacity);
+    }
+}
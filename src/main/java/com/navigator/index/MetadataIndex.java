@@ -0,0 +1,295 @@
+package com.navigator.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from chunk metadata values to the set of chunk ordinals carrying them.
+ * One sorted ordinal list per (field, value), so a filter such as grade=3 AND subject=science resolves to
+ * the intersection of two lists before any vector is scored. A list costs 4 bytes per chunk carrying the
+ * value, so the many distinct values of identity fields (filename, content_hash) cost memory proportional to
+ * the chunks, not chunks x values as uncompressed bitmaps would.
+ * Chunks are added in ordinal order, so every list stays sorted and adding only appends.
+ */
+public class MetadataIndex {
+
+    private static final int MAGIC = 0x4D455441; // "META"
+    private static final int VERSION = 2;
+
+    private final Set<String> fields;
+    // field -> value -> ordinals
+    private final Map<String, Map<String, Ordinals>> postings = new LinkedHashMap<>();
+    // A snapshot shares its arrays with the live index and must never be added to
+    private boolean readOnly;
+
+    public MetadataIndex(Collection<String> fields) {
+        this.fields = Set.copyOf(fields);
+        for (String field : fields) {
+            postings.put(field, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Record the indexed metadata values of the chunk with the given ordinal
+     */
+    public void add(int ordinal, Map<String, Object> metadata) {
+        if (readOnly) {
+            throw new IllegalStateException("Metadata index snapshot is read-only");
+        }
+        if (metadata == null) {
+            return;
+        }
+        for (Map.Entry<String, Map<String, Ordinals>> field : postings.entrySet()) {
+            Object value = metadata.get(field.getKey());
+            if (value != null) {
+                field.getValue().computeIfAbsent(value.toString(), v -> new Ordinals(4)).add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * Ordinals matching every filter (AND across fields), or null when there are no filters.
+     * An unknown value yields an empty set; a field that is not indexed is rejected.
+     */
+    public BitSet match(Map<String, String> filters) {
+        return ShardedScanner.bitmap(matchOrdinals(filters));
+    }
+
+    /**
+     * Like {@link #match}, as ascending ordinals: the intersection as computed, which a filtered scan
+     * gathers its rows from without going through a bitmap
+     */
+    public int[] matchOrdinals(Map<String, String> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return null;
+        }
+
+        validate(filters);
+        List<Ordinals> lists = new ArrayList<>(filters.size());
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            Ordinals ordinals = postings.get(filter.getKey()).get(filter.getValue());
+            if (ordinals == null) {
+                return new int[0];
+            }
+            lists.add(ordinals);
+        }
+
+        // Intersect starting from the shortest list, so the work is bounded by the rarest value
+        lists.sort(Comparator.comparingInt(ordinals -> ordinals.count));
+        int[] result = Arrays.copyOf(lists.get(0).values, lists.get(0).count);
+        int size = result.length;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            size = intersect(result, size, lists.get(l));
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Read-only view of the index as of now, sharing the ordinal arrays (adds only append past the counts
+     * captured here); costs one map entry per value. The caller must hold whatever lock guards {@link #add}.
+     */
+    public MetadataIndex snapshot() {
+        MetadataIndex view = new MetadataIndex(fields);
+        postings.forEach((field, values) -> {
+            Map<String, Ordinals> copy = view.postings.get(field);
+            values.forEach((value, ordinals) -> copy.put(value, ordinals.view()));
+        });
+        view.readOnly = true;
+        return view;
+    }
+
+    /**
+     * Keep the first size entries of result that also occur in other, in place; returns the new size
+     */
+    private static int intersect(int[] result, int size, Ordinals other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < other.count; i++) {
+            while (j < other.count && other.values[j] < result[i]) {
+                j++;
+            }
+            if (j < other.count && other.values[j] == result[i]) {
+                result[kept++] = result[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Reject filters on fields without an index, before any work is done for the query
+     */
+    public void validate(Map<String, String> filters) {
+        if (filters == null) {
+            return;
+        }
+        for (String field : filters.keySet()) {
+            if (!postings.containsKey(field)) {
+                throw new IllegalArgumentException("Metadata field '" + field
+                        + "' is not filterable; indexed fields are " + fields);
+            }
+        }
+    }
+
+    /**
+     * Indexed field names
+     */
+    public Set<String> fields() {
+        return fields;
+    }
+
+    public boolean isIndexed(String field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * Distinct values seen for an indexed field
+     */
+    public Set<String> values(String field) {
+        Map<String, Ordinals> values = postings.get(field);
+        return values == null ? Set.of() : Set.copyOf(values.keySet());
+    }
+
+    /**
+     * Number of chunks per value of every indexed field
+     */
+    public Map<String, Map<String, Integer>> cardinalities() {
+        Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+        postings.forEach((field, values) -> {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            values.forEach((value, ordinals) -> counts.put(value, ordinals.count));
+            result.put(field, counts);
+        });
+        return result;
+    }
+
+    /**
+     * Serialize the ordinal lists
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(postings.size());
+        for (Map.Entry<String, Map<String, Ordinals>> field : postings.entrySet()) {
+            out.writeUTF(field.getKey());
+            out.writeInt(field.getValue().size());
+            for (Map.Entry<String, Ordinals> value : field.getValue().entrySet()) {
+                Ordinals ordinals = value.getValue();
+                out.writeUTF(value.getKey());
+                out.writeInt(ordinals.count);
+                for (int i = 0; i < ordinals.count; i++) {
+                    out.writeInt(ordinals.values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore an index written by {@link #writeTo(DataOutput)}; version 1 bitmaps are converted
+     */
+    public static MetadataIndex readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a metadata index");
+        }
+        int version = in.readInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported metadata index version " + version);
+        }
+
+        int fieldCount = in.readInt();
+        List<String> fields = new ArrayList<>(fieldCount);
+        Map<String, Map<String, Ordinals>> postings = new LinkedHashMap<>();
+        for (int f = 0; f < fieldCount; f++) {
+            String field = in.readUTF();
+            fields.add(field);
+            Map<String, Ordinals> values = new TreeMap<>();
+            int valueCount = in.readInt();
+            for (int v = 0; v < valueCount; v++) {
+                String value = in.readUTF();
+                values.put(value, version == 1 ? readBitmap(in) : readOrdinals(in));
+            }
+            postings.put(field, values);
+        }
+
+        MetadataIndex index = new MetadataIndex(fields);
+        index.postings.putAll(postings);
+        return index;
+    }
+
+    private static Ordinals readOrdinals(DataInput in) throws IOException {
+        int count = in.readInt();
+        Ordinals ordinals = new Ordinals(count);
+        for (int i = 0; i < count; i++) {
+            ordinals.add(in.readInt());
+        }
+        return ordinals;
+    }
+
+    private static Ordinals readBitmap(DataInput in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = in.readLong();
+        }
+        BitSet bitmap = BitSet.valueOf(words);
+        Ordinals ordinals = new Ordinals(bitmap.cardinality());
+        bitmap.stream().forEach(ordinals::add);
+        return ordinals;
+    }
+
+    /**
+     * Approximate heap footprint of the ordinal lists in bytes
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Map<String, Ordinals> values : postings.values()) {
+            for (Ordinals ordinals : values.values()) {
+                bytes += (long) ordinals.values.length * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Ascending chunk ordinals carrying one value
+     */
+    private static final class Ordinals {
+        private int[] values;
+        private int count;
+
+        Ordinals(int capacity) {
+            values = new int[Math.max(1, capacity)];
+        }
+
+        Ordinals view() {
+            Ordinals view = new Ordinals(0);
+            view.values = values;
+            view.count = count;
+            return view;
+        }
+
+        void add(int ordinal) {
+            if (count > 0 && ordinal <= values[count - 1]) {
+                if (ordinal == values[count - 1]) {
+                    return;
+                }
+                throw new IllegalArgumentException("Metadata must be added in ordinal order, got " + ordinal
+                        + " after " + values[count - 1]);
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = ordinal;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.navigator.index;
+
+import java.util.BitSet;
+
+/**
+ * Two-phase search over compressed vector codes: a scan of the codes shortlists
+ * k * oversample candidates, which are then rescored against the full-precision rows.
+ * Subclasses only decide how a vector is encoded and how codes are scored against a query.
+ */
+public abstract class QuantizedIndex implements TunableIndex {
+
+    protected final VectorMatrix vectors;
+    private final ShardedScanner scanner;
+    private final int oversample;
+
+    protected QuantizedIndex(VectorMatrix vectors, ShardedScanner scanner, int oversample) {
+        this.vectors = vectors;
+        this.scanner = scanner;
+        this.oversample = Math.max(1, oversample);
+    }
+
+    @Override
+    public void add(int ordinal) {
+        if (ordinal != codedRows()) {
+            throw new IllegalArgumentException("Quantized rows must be added in ordinal order, expected " + codedRows());
+        }
+        encode(vectors.get(ordinal));
+    }
+
+    @Override
+    public SearchHits search(float[] query, int k, float minScore) {
+        return search(query, k, minScore, oversample);
+    }
+
+    @Override
+    public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+        if (filter == null) {
+            return search(query, k, minScore, oversample);
+        }
+        return search(query, k, minScore, oversample, ShardedScanner.filteredRows(filter, codedRows()));
+    }
+
+    @Override
+    public SearchHits searchRows(float[] query, int k, float minScore, int[] rows) {
+        return search(query, k, minScore, oversample, rows);
+    }
+
+    /**
+     * Search rescoring k * oversample candidates from the code scan
+     */
+    @Override
+    public SearchHits search(float[] query, int k, float minScore, int oversample) {
+        return search(query, k, minScore, oversample, null);
+    }
+
+    /**
+     * Shortlist from the codes of the given rows (all rows when null), then rescore
+     */
+    private SearchHits search(float[] query, int k, float minScore, int oversample, int[] filteredRows) {
+        int rows = filteredRows == null ? codedRows() : filteredRows.length;
+        if (k <= 0 || rows == 0) {
+            return SearchHits.empty();
+        }
+        if (query.length != vectors.dimension()) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+
+        int candidates = (int) Math.min(rows, (long) k * Math.max(1, oversample));
+        ShardedScanner.RowScorer codeScorer = candidateScorer(query);
+        ShardedScanner.BlockScorer scorer = filteredRows == null
+                ? ShardedScanner.blocks(codeScorer)
+                : ShardedScanner.gather(filteredRows, codeScorer);
+        SearchHits shortlist = scanner == null
+                ? ShardedScanner.scanRange(0, rows, candidates, Float.NEGATIVE_INFINITY, scorer).drainDescending()
+                : scanner.search(rows, candidates, Float.NEGATIVE_INFINITY, scorer);
+        if (filteredRows != null) {
+            shortlist = shortlist.mapOrdinals(filteredRows);
+        }
+
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        for (int i = 0; i < shortlist.size(); i++) {
+            int ordinal = shortlist.ordinal(i);
+            float score = vectors.dot(query, ordinal);
+            if (score >= minScore) {
+                top.offer(ordinal, score, k);
+            }
+        }
+        return top.drainDescending();
+    }
+
+    @Override
+    public String tuningParameter() {
+        return "oversample";
+    }
+
+    @Override
+    public int tuningValue() {
+        return oversample;
+    }
+
+    @Override
+    public int[] defaultSweep() {
+        return new int[]{1, 2, 4, 8, 16};
+    }
+
+    /**
+     * Approximate heap footprint of the codes in bytes
+     */
+    public abstract long codeMemoryBytes();
+
+    /**
+     * Append the codes for the next row
+     */
+    protected abstract void encode(float[] vector);
+
+    /**
+     * Number of rows encoded so far
+     */
+    protected abstract int codedRows();
+
+    /**
+     * Scorer ranking encoded rows against the query; only the order of the scores matters
+     */
+    protected abstract ShardedScanner.RowScorer candidateScorer(float[] query);
+}
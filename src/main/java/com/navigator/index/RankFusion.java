@@ -0,0 +1,30 @@
+package com.navigator.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion (Cormack et al.): each ranking contributes 1 / (rrfK + rank) per result,
+ * so lists with incomparable scores (cosine vs BM25) can be merged by position alone.
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * Fuse the rankings and return the k best ordinals, with their fused scores, best first
+     */
+    public static SearchHits reciprocalRank(int k, int rrfK, SearchHits... rankings) {
+        Map<Integer, Float> fused = new HashMap<>();
+        for (SearchHits ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                fused.merge(ranking.ordinal(rank), 1f / (rrfK + rank + 1), Float::sum);
+            }
+        }
+
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        fused.forEach((ordinal, score) -> top.offer(ordinal, score, k));
+        return top.drainDescending();
+    }
+}
@@ -0,0 +1,128 @@
+package com.navigator.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures recall@k of an approximate index against the exact scan.
+ * Queries are distinct live rows sampled from the stored chunk vectors, so no embedding calls are needed.
+ * Each query row is held out: it is its own nearest neighbour, which any index finds, so counting it would
+ * overstate recall. Deleted rows are not part of the ground truth.
+ */
+public class RecallEvaluator {
+
+    private final VectorMatrix vectors;
+    private final TunableIndex approximate;
+    private final ExactIndex exact;
+    private final BitSet deletedRows;
+
+    public RecallEvaluator(VectorMatrix vectors, TunableIndex approximate) {
+        this(vectors, approximate, new BitSet());
+    }
+
+    /**
+     * @param deletedRows tombstoned rows, left out of the queries and of the ground truth
+     */
+    public RecallEvaluator(VectorMatrix vectors, TunableIndex approximate, BitSet deletedRows) {
+        this.vectors = vectors;
+        this.approximate = approximate;
+        this.exact = new ExactIndex(vectors);
+        this.deletedRows = deletedRows;
+    }
+
+    /**
+     * Evaluate recall@k for the given tuning values (the index's default sweep when none are given)
+     */
+    public Map<String, Object> evaluate(int k, int samples, int... tuningValues) {
+        int[] sweep = tuningValues == null || tuningValues.length == 0 ? approximate.defaultSweep() : tuningValues;
+        BitSet live = new BitSet(vectors.size());
+        live.set(0, vectors.size());
+        live.andNot(deletedRows);
+        int[] queryRows = sample(live.stream().toArray(), samples, new Random(7));
+        int queryCount = queryRows.length;
+
+        float[][] queries = new float[queryCount][];
+        int[][] truth = new int[queryCount][];
+        long exactNanos = 0;
+        for (int q = 0; q < queryCount; q++) {
+            queries[q] = vectors.get(queryRows[q]);
+            long start = System.nanoTime();
+            // One more than k, as the query row itself is dropped
+            truth[q] = heldOut(exact.search(queries[q], k + 1, Float.NEGATIVE_INFINITY, live), queryRows[q], k);
+            exactNanos += System.nanoTime() - start;
+        }
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (int value : sweep) {
+            long found = 0;
+            long expected = 0;
+            long nanos = 0;
+            for (int q = 0; q < queryCount; q++) {
+                long start = System.nanoTime();
+                SearchHits hits = approximate.search(queries[q], k + 1, Float.NEGATIVE_INFINITY, value);
+                nanos += System.nanoTime() - start;
+
+                // Deleted rows the index returns take up result slots, as they would in a real search
+                int[] returned = heldOut(hits, queryRows[q], k);
+                for (int ordinal : truth[q]) {
+                    for (int r : returned) {
+                        if (r == ordinal) {
+                            found++;
+                            break;
+                        }
+                    }
+                }
+                expected += truth[q].length;
+            }
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put(approximate.tuningParameter(), value);
+            run.put("recall", expected == 0 ? 1.0 : (double) found / expected);
+            run.put("avgLatencyMicros", queryCount == 0 ? 0 : nanos / 1000 / queryCount);
+            runs.add(run);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("indexType", approximate.type());
+        result.put("k", k);
+        result.put("samples", queryCount);
+        result.put("indexSize", live.cardinality());
+        result.put("configured", Map.of(approximate.tuningParameter(), approximate.tuningValue()));
+        result.put("exactAvgLatencyMicros", queryCount == 0 ? 0 : exactNanos / 1000 / queryCount);
+        result.put("runs", runs);
+        return result;
+    }
+
+    /**
+     * Up to count distinct rows, drawn without replacement
+     */
+    private static int[] sample(int[] rows, int count, Random random) {
+        int n = Math.min(Math.max(0, count), rows.length);
+        for (int i = 0; i < n; i++) {
+            int j = i + random.nextInt(rows.length - i);
+            int swap = rows[i];
+            rows[i] = rows[j];
+            rows[j] = swap;
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    /**
+     * The first k ordinals of hits other than the held-out query row
+     */
+    private static int[] heldOut(SearchHits hits, int queryRow, int k) {
+        int[] ordinals = new int[Math.min(k, hits.size())];
+        int n = 0;
+        for (int i = 0; i < hits.size() && n < ordinals.length; i++) {
+            if (hits.ordinal(i) != queryRow) {
+                ordinals[n++] = hits.ordinal(i);
+            }
+        }
+        return Arrays.copyOf(ordinals, n);
+    }
+}
@@ -0,0 +1,148 @@
+package com.navigator.index;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, score) pairs backed by primitive arrays.
+ * A min-heap keeps the lowest score on top (used for bounded result sets),
+ * a max-heap keeps the highest score on top (used for candidate queues).
+ * Equal scores rank the lower node first, so a top-k is the same whichever order the entries arrive in
+ * (e.g. a scan split into shards or segments).
+ */
+public final class ScoreHeap {
+
+    private final boolean minHeap;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    public ScoreHeap(int initialCapacity, boolean minHeap) {
+        int capacity = Math.max(1, initialCapacity);
+        this.minHeap = minHeap;
+        this.nodes = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    public static ScoreHeap min(int initialCapacity) {
+        return new ScoreHeap(initialCapacity, true);
+    }
+
+    public static ScoreHeap max(int initialCapacity) {
+        return new ScoreHeap(initialCapacity, false);
+    }
+
+    public void push(int node, float score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        nodes[size] = node;
+        scores[size] = score;
+        siftUp(size++);
+    }
+
+    /**
+     * Bounded insert for top-k selection on a min-heap: adds the entry while the heap holds fewer than
+     * maxSize entries, otherwise replaces the current minimum if the new entry ranks above it.
+     */
+    public void offer(int node, float score, int maxSize) {
+        if (size < maxSize) {
+            push(node, score);
+        } else if (score > scores[0] || (score == scores[0] && node < nodes[0])) {
+            nodes[0] = node;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Remove the top entry and return its node
+     */
+    public int pop() {
+        int node = nodes[0];
+        size--;
+        if (size > 0) {
+            nodes[0] = nodes[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return node;
+    }
+
+    public int topNode() {
+        return nodes[0];
+    }
+
+    public float topScore() {
+        return scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drain a min-heap into hits ordered best-first
+     */
+    public SearchHits drainDescending() {
+        int count = size;
+        int[] ordinals = new int[count];
+        float[] values = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            values[i] = topScore();
+            ordinals[i] = pop();
+        }
+        return new SearchHits(ordinals, values, count);
+    }
+
+    private boolean before(int i, int j) {
+        if (scores[i] != scores[j]) {
+            return minHeap ? scores[i] < scores[j] : scores[i] > scores[j];
+        }
+        // On a tie the higher node ranks lower, so it is the first to be evicted from a min-heap
+        return minHeap ? nodes[i] > nodes[j] : nodes[i] < nodes[j];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int child = left + 1 < size && before(left + 1, left) ? left + 1 : left;
+            if (!before(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
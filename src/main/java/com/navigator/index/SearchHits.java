@@ -0,0 +1,55 @@
+package com.navigator.index;
+
+/**
+ * Top-k result of a vector index lookup: chunk ordinals with their scores, best first.
+ */
+public class SearchHits {
+
+    private static final SearchHits EMPTY = new SearchHits(new int[0], new float[0], 0);
+
+    private final int[] ordinals;
+    private final float[] scores;
+    private final int count;
+
+    public SearchHits(int[] ordinals, float[] scores, int count) {
+        this.ordinals = ordinals;
+        this.scores = scores;
+        this.count = count;
+    }
+
+    public static SearchHits empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int ordinal(int i) {
+        return ordinals[i];
+    }
+
+    public float score(int i) {
+        return scores[i];
+    }
+
+    /**
+     * Translate positions into a row list (as produced by a filtered scan) back to row ordinals
+     */
+    public SearchHits mapOrdinals(int[] rows) {
+        int[] mapped = new int[count];
+        for (int i = 0; i < count; i++) {
+            mapped[i] = rows[ordinals[i]];
+        }
+        return new SearchHits(mapped, scores, count);
+    }
+
+    public boolean contains(int ordinal) {
+        for (int i = 0; i < count; i++) {
+            if (ordinals[i] == ordinal) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
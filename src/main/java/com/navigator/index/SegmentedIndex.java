@@ -0,0 +1,371 @@
+package com.navigator.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Log-structured vector index: a small mutable segment takes new chunks and is sealed once it holds
+ * maxMutableRows; sealed segments are immutable and are merged in the background ({@link #merge}).
+ * A search fans out over every segment and merges the per-segment top-k by score. With a {@link ShardedScanner}
+ * the segments are searched in parallel once their rows together reach the scanner's threshold, so an index
+ * made of segments below the threshold each is not scanned on a single thread.
+ * <p>
+ * Merging is size-tiered: segments of similar size (the same power of mergeFactor times maxMutableRows)
+ * are merged mergeFactor at a time, so each chunk is rewritten a logarithmic number of times and the
+ * segment count stays logarithmic in the number of chunks. A merge never produces a segment of more than
+ * maxSegmentBytes of vectors: a segment file section and an off-heap matrix both top out at 2 GB, so tiers
+ * whose merge would exceed it stay as they are. A segment whose tombstoned fraction reaches deleteRatio is
+ * rewritten on its own.
+ * Not synchronized: callers mutate under a write lock and search under a read lock.
+ */
+public class SegmentedIndex {
+
+    // Largest mappable segment section and direct buffer
+    public static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE - 8;
+
+    private final Supplier<VectorMatrix> matrixFactory;
+    private final Function<VectorMatrix, VectorIndex> indexFactory;
+    private final int maxMutableRows;
+    private final long maxSegmentBytes;
+    private final AtomicInteger nextSegmentId;
+    private final ShardedScanner scanner;
+
+    private List<IndexSegment> sealed = List.of();
+    private IndexSegment mutable;
+
+    /**
+     * Empty index whose segment ids start at firstSegmentId
+     *
+     * @param matrixFactory   new (empty) vector storage for a segment
+     * @param indexFactory    nearest-neighbour structure over a segment's vectors
+     * @param maxSegmentBytes largest vector data a merged segment may hold, capped at {@link #MAX_SEGMENT_BYTES}
+     */
+    public SegmentedIndex(Supplier<VectorMatrix> matrixFactory, Function<VectorMatrix, VectorIndex> indexFactory,
+                          int maxMutableRows, long maxSegmentBytes, int firstSegmentId) {
+        this(matrixFactory, indexFactory, maxMutableRows, maxSegmentBytes, firstSegmentId, null);
+    }
+
+    /**
+     * Empty index whose segments are searched in parallel on the scanner's pool
+     *
+     * @param scanner pool to fan segment searches out to, or null to search them one after another
+     */
+    public SegmentedIndex(Supplier<VectorMatrix> matrixFactory, Function<VectorMatrix, VectorIndex> indexFactory,
+                          int maxMutableRows, long maxSegmentBytes, int firstSegmentId, ShardedScanner scanner) {
+        this.matrixFactory = matrixFactory;
+        this.indexFactory = indexFactory;
+        this.maxMutableRows = Math.max(1, maxMutableRows);
+        this.maxSegmentBytes = Math.max(1, Math.min(maxSegmentBytes, MAX_SEGMENT_BYTES));
+        this.nextSegmentId = new AtomicInteger(firstSegmentId);
+        this.scanner = scanner;
+        this.mutable = newSegment();
+    }
+
+    /**
+     * Empty index continuing this one's segment ids, so files of the last checkpoint are never reused
+     */
+    public SegmentedIndex cleared() {
+        return new SegmentedIndex(matrixFactory, indexFactory, maxMutableRows, maxSegmentBytes, nextSegmentId.get(),
+                scanner);
+    }
+
+    /**
+     * Append a chunk vector to the mutable segment; returns true when that sealed the segment
+     */
+    public boolean add(int ordinal, float[] vector) {
+        mutable.add(ordinal, vector);
+        if (mutable.size() >= maxMutableRows) {
+            seal();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Seal the mutable segment (when it holds any rows) and start a new one
+     */
+    public void seal() {
+        if (mutable.size() == 0) {
+            return;
+        }
+        mutable.seal();
+        List<IndexSegment> next = new ArrayList<>(sealed);
+        next.add(mutable);
+        sealed = List.copyOf(next);
+        mutable = newSegment();
+    }
+
+    /**
+     * Add an already sealed segment, e.g. one restored from disk
+     */
+    public void addSealed(IndexSegment segment) {
+        List<IndexSegment> next = new ArrayList<>(sealed);
+        next.add(segment);
+        sealed = List.copyOf(next);
+        nextSegmentId.accumulateAndGet(segment.id() + 1, Math::max);
+    }
+
+    /**
+     * Tombstone a chunk; false when no segment holds it
+     */
+    public boolean delete(int ordinal) {
+        if (mutable.delete(ordinal)) {
+            return true;
+        }
+        for (IndexSegment segment : sealed) {
+            if (segment.delete(ordinal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Top-k chunks over all segments, best first
+     */
+    public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+        return merged(k, segment -> segment.search(query, k, minScore, filter));
+    }
+
+    /**
+     * Like {@link #search}, with the filter given as ascending ordinals (a metadata match), which each
+     * segment maps to its rows without going through a bitmap
+     */
+    public SearchHits searchOrdinals(float[] query, int k, float minScore, int[] filter) {
+        return merged(k, segment -> segment.searchOrdinals(query, k, minScore, filter));
+    }
+
+    /**
+     * Batch variant of {@link #search}: one shared scan per segment, merged per query
+     */
+    public SearchHits[] searchBatch(float[][] queries, int k, float minScore, BitSet filter) {
+        return mergedBatch(queries.length, k, segment -> segment.searchBatch(queries, k, minScore, filter));
+    }
+
+    /**
+     * Batch variant of {@link #searchOrdinals}
+     */
+    public SearchHits[] searchOrdinalsBatch(float[][] queries, int k, float minScore, int[] filter) {
+        return mergedBatch(queries.length, k, segment -> segment.searchOrdinalsBatch(queries, k, minScore, filter));
+    }
+
+    private SearchHits merged(int k, Function<IndexSegment, SearchHits> search) {
+        List<IndexSegment> segments = segments();
+        if (segments.size() == 1) {
+            return search.apply(segments.get(0));
+        }
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        for (SearchHits hits : searchSegments(segments, 1, search)) {
+            offerAll(top, hits, k);
+        }
+        return top.drainDescending();
+    }
+
+    private SearchHits[] mergedBatch(int queries, int k, Function<IndexSegment, SearchHits[]> search) {
+        List<IndexSegment> segments = segments();
+        if (segments.size() == 1) {
+            return search.apply(segments.get(0));
+        }
+        ScoreHeap[] tops = new ScoreHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            tops[q] = ScoreHeap.min(k + 1);
+        }
+        for (SearchHits[] hits : searchSegments(segments, queries, search)) {
+            for (int q = 0; q < queries; q++) {
+                offerAll(tops[q], hits[q], k);
+            }
+        }
+        SearchHits[] merged = new SearchHits[queries];
+        for (int q = 0; q < queries; q++) {
+            merged[q] = tops[q].drainDescending();
+        }
+        return merged;
+    }
+
+    /**
+     * Per-segment results in segment order, searched in parallel when a scanner is set
+     */
+    private <T> List<T> searchSegments(List<IndexSegment> segments, int queries, Function<IndexSegment, T> search) {
+        if (scanner == null) {
+            List<T> results = new ArrayList<>(segments.size());
+            for (IndexSegment segment : segments) {
+                results.add(search.apply(segment));
+            }
+            return results;
+        }
+        long rows = 0;
+        for (IndexSegment segment : segments) {
+            rows += segment.size();
+        }
+        return scanner.fanOut(segments, rows * queries, search);
+    }
+
+    private static void offerAll(ScoreHeap top, SearchHits hits, int k) {
+        for (int i = 0; i < hits.size(); i++) {
+            top.offer(hits.ordinal(i), hits.score(i), k);
+        }
+    }
+
+    /**
+     * Sealed segments followed by the mutable one
+     */
+    public List<IndexSegment> segments() {
+        List<IndexSegment> all = new ArrayList<>(sealed.size() + 1);
+        all.addAll(sealed);
+        all.add(mutable);
+        return all;
+    }
+
+    public List<IndexSegment> sealedSegments() {
+        return sealed;
+    }
+
+    public IndexSegment mutableSegment() {
+        return mutable;
+    }
+
+    /**
+     * Live (not tombstoned) chunks across all segments
+     */
+    public int liveCount() {
+        int count = mutable.liveCount();
+        for (IndexSegment segment : sealed) {
+            count += segment.liveCount();
+        }
+        return count;
+    }
+
+    /**
+     * Sealed segments that should be merged next, or an empty list when the index is in shape:
+     * a segment with too many tombstones, else mergeFactor segments of the smallest full size tier
+     * whose merged vectors fit in maxSegmentBytes
+     */
+    public List<IndexSegment> mergeCandidates(int mergeFactor, double deleteRatio) {
+        for (IndexSegment segment : sealed) {
+            int deleted = segment.deletedCount();
+            if (deleted > 0 && deleted >= deleteRatio * segment.size()) {
+                return List.of(segment);
+            }
+        }
+
+        int factor = Math.max(2, mergeFactor);
+        Map<Integer, List<IndexSegment>> tiers = new TreeMap<>();
+        for (IndexSegment segment : sealed) {
+            tiers.computeIfAbsent(tier(segment.liveCount(), factor), t -> new ArrayList<>()).add(segment);
+        }
+        for (List<IndexSegment> tier : tiers.values()) {
+            if (tier.size() >= factor) {
+                tier.sort(Comparator.comparingInt(IndexSegment::liveCount));
+                List<IndexSegment> smallest = tier.subList(0, factor);
+                if (liveBytes(smallest) <= maxSegmentBytes) {
+                    return List.copyOf(smallest);
+                }
+            }
+        }
+        return List.of();
+    }
+
+    private static long liveBytes(List<IndexSegment> segments) {
+        long bytes = 0;
+        for (IndexSegment segment : segments) {
+            bytes += (long) segment.liveCount() * segment.vectors().dimension() * Float.BYTES;
+        }
+        return bytes;
+    }
+
+    private int tier(int rows, int factor) {
+        int tier = 0;
+        long bound = maxMutableRows;
+        while (rows > bound) {
+            bound *= factor;
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Build one sealed segment from the live rows of the given sealed segments, in ordinal order, with a
+     * freshly built index. Runs without any lock: sealed vectors never change, and the tombstones are
+     * passed in as snapshots (see {@link #replace} for tombstones added meanwhile).
+     */
+    public IndexSegment merge(List<IndexSegment> segments, List<BitSet> deletedRows) {
+        int total = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            total += segments.get(s).size() - deletedRows.get(s).cardinality();
+        }
+
+        VectorMatrix vectors = matrixFactory.get();
+        VectorIndex index = indexFactory.apply(vectors);
+        int[] ordinals = new int[total];
+        // k-way merge of the live rows by ordinal; each segment's rows already ascend
+        int[] cursors = new int[segments.size()];
+        for (int i = 0; i < total; i++) {
+            int next = -1;
+            for (int s = 0; s < segments.size(); s++) {
+                cursors[s] = deletedRows.get(s).nextClearBit(cursors[s]);
+                if (cursors[s] < segments.get(s).size() && (next < 0
+                        || segments.get(s).ordinal(cursors[s]) < segments.get(next).ordinal(cursors[next]))) {
+                    next = s;
+                }
+            }
+            IndexSegment source = segments.get(next);
+            int row = vectors.add(source.vectors().get(cursors[next]));
+            index.add(row);
+            ordinals[i] = source.ordinal(cursors[next]++);
+        }
+        return new IndexSegment(nextSegmentId.getAndIncrement(), vectors, index, ordinals, true);
+    }
+
+    /**
+     * Swap merged segments for their merge result, carrying over tombstones set while the merge ran.
+     * Returns false (and changes nothing) when any of them is no longer part of this index.
+     */
+    public boolean replace(List<IndexSegment> merged, IndexSegment result) {
+        Set<IndexSegment> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        replaced.addAll(merged);
+        List<IndexSegment> next = new ArrayList<>(sealed.size());
+        int found = 0;
+        for (IndexSegment segment : sealed) {
+            if (!replaced.contains(segment)) {
+                next.add(segment);
+            } else if (found++ == 0 && result.size() > 0) {
+                // A merge that dropped every row leaves no segment behind
+                next.add(result);
+            }
+        }
+        if (found != replaced.size()) {
+            return false;
+        }
+
+        for (IndexSegment segment : merged) {
+            BitSet deleted = segment.deletedRows();
+            for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+                result.delete(segment.ordinal(row));
+            }
+        }
+        sealed = List.copyOf(next);
+        return true;
+    }
+
+    /**
+     * Id the next new segment will get
+     */
+    public int nextSegmentId() {
+        return nextSegmentId.get();
+    }
+
+    private IndexSegment newSegment() {
+        VectorMatrix vectors = matrixFactory.get();
+        return new IndexSegment(nextSegmentId.getAndIncrement(), vectors, indexFactory.apply(vectors));
+    }
+}
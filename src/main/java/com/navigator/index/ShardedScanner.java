@@ -0,0 +1,304 @@
+package com.navigator.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Exact top-k scan split into row shards that run on a dedicated ForkJoinPool.
+ * Each shard keeps a local bounded heap; the shard heaps are merged at the end, so results are
+ * identical to a sequential scan. Scans smaller than the threshold stay on the calling thread,
+ * and the pool size is capped so request threads are never starved of CPU.
+ * Searches made of independent parts (the segments of a {@link SegmentedIndex}) are fanned out over
+ * the same pool once their rows together reach the threshold, see {@link #fanOut}.
+ */
+public class ShardedScanner implements AutoCloseable {
+
+    private static final int BLOCK_ROWS = 256;
+
+    /**
+     * Scores rows [fromRow, toRow) into scores[0, toRow - fromRow)
+     */
+    @FunctionalInterface
+    public interface BlockScorer {
+        void score(int fromRow, int toRow, float[] scores);
+    }
+
+    /**
+     * Scores rows [fromRow, toRow) against every query of a batch into scores[query][0, toRow - fromRow)
+     */
+    @FunctionalInterface
+    public interface BatchScorer {
+        void score(int fromRow, int toRow, float[][] scores);
+    }
+
+    /**
+     * Scores a single row
+     */
+    @FunctionalInterface
+    public interface RowScorer {
+        float score(int row);
+    }
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int threshold;
+
+    private final LongAdder sequentialSearches = new LongAdder();
+    private final LongAdder parallelSearches = new LongAdder();
+    private final LongAdder fanOuts = new LongAdder();
+    private final LongAdder shardsScanned = new LongAdder();
+    private final LongAdder shardNanos = new LongAdder();
+    private final LongAccumulator maxShardNanos = new LongAccumulator(Math::max, 0);
+
+    public ShardedScanner(int parallelism, int threshold) {
+        this.parallelism = Math.max(1, parallelism);
+        this.threshold = Math.max(BLOCK_ROWS, threshold);
+        this.pool = new ForkJoinPool(this.parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("rag-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Top-k rows scoring at least minScore, best first
+     */
+    public SearchHits search(int rows, int k, float minScore, BlockScorer scorer) {
+        if (rows < threshold || parallelism == 1) {
+            sequentialSearches.increment();
+            return scanRange(0, rows, k, minScore, scorer).drainDescending();
+        }
+
+        parallelSearches.increment();
+        int shardRows = roundUpToBlock((rows + parallelism - 1) / parallelism);
+        List<ForkJoinTask<ScoreHeap>> shards = new ArrayList<>(parallelism);
+        for (int from = 0; from < rows; from += shardRows) {
+            int shardFrom = from;
+            int shardTo = Math.min(from + shardRows, rows);
+            shards.add(pool.submit(() -> timedScan(shardFrom, shardTo, k, minScore, scorer)));
+        }
+
+        ScoreHeap merged = ScoreHeap.min(k + 1);
+        for (ForkJoinTask<ScoreHeap> shard : shards) {
+            ScoreHeap local = shard.join();
+            while (!local.isEmpty()) {
+                float score = local.topScore();
+                merged.offer(local.pop(), score, k);
+            }
+        }
+        return merged.drainDescending();
+    }
+
+    /**
+     * Top-k rows per query for a batch of queries, best first. Every block of rows is scored against
+     * all queries while it is in cache; shards are split on total work (rows x queries).
+     */
+    public SearchHits[] searchBatch(int rows, int queries, int k, float minScore, BatchScorer scorer) {
+        if ((long) rows * queries < threshold || parallelism == 1 || rows < BLOCK_ROWS) {
+            sequentialSearches.increment();
+            return drainAll(scanRangeBatch(0, rows, queries, k, minScore, scorer));
+        }
+
+        parallelSearches.increment();
+        int shardRows = roundUpToBlock((rows + parallelism - 1) / parallelism);
+        List<ForkJoinTask<ScoreHeap[]>> shards = new ArrayList<>(parallelism);
+        for (int from = 0; from < rows; from += shardRows) {
+            int shardFrom = from;
+            int shardTo = Math.min(from + shardRows, rows);
+            shards.add(pool.submit(() -> {
+                long start = System.nanoTime();
+                ScoreHeap[] heaps = scanRangeBatch(shardFrom, shardTo, queries, k, minScore, scorer);
+                recordShard(System.nanoTime() - start);
+                return heaps;
+            }));
+        }
+
+        ScoreHeap[] merged = new ScoreHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            merged[q] = ScoreHeap.min(k + 1);
+        }
+        for (ForkJoinTask<ScoreHeap[]> shard : shards) {
+            ScoreHeap[] local = shard.join();
+            for (int q = 0; q < queries; q++) {
+                while (!local[q].isEmpty()) {
+                    float score = local[q].topScore();
+                    merged[q].offer(local[q].pop(), score, k);
+                }
+            }
+        }
+        return drainAll(merged);
+    }
+
+    /**
+     * Apply search to every part and return the results in part order. The parts run as parallel tasks
+     * when there are several and their work (rows scanned, times queries for a batch) reaches the threshold,
+     * so an index split into parts below the threshold each is still searched in parallel as a whole.
+     * The calling thread searches the first part itself.
+     */
+    public <P, T> List<T> fanOut(List<P> parts, long work, Function<P, T> search) {
+        List<T> results = new ArrayList<>(parts.size());
+        if (parts.size() < 2 || work < threshold || parallelism == 1) {
+            for (P part : parts) {
+                results.add(search.apply(part));
+            }
+            return results;
+        }
+
+        fanOuts.increment();
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(parts.size() - 1);
+        for (P part : parts.subList(1, parts.size())) {
+            tasks.add(pool.submit(() -> search.apply(part)));
+        }
+        results.add(search.apply(parts.get(0)));
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Sequential blocked scan of rows [from, to) for a batch of queries, one bounded min-heap per query
+     */
+    public static ScoreHeap[] scanRangeBatch(int from, int to, int queries, int k, float minScore, BatchScorer scorer) {
+        ScoreHeap[] top = new ScoreHeap[queries];
+        for (int q = 0; q < queries; q++) {
+            top[q] = ScoreHeap.min(k + 1);
+        }
+        if (k <= 0 || to <= from || queries == 0) {
+            return top;
+        }
+
+        float[][] scores = new float[queries][Math.min(BLOCK_ROWS, to - from)];
+        for (int block = from; block < to; block += BLOCK_ROWS) {
+            int blockEnd = Math.min(block + BLOCK_ROWS, to);
+            scorer.score(block, blockEnd, scores);
+            for (int q = 0; q < queries; q++) {
+                for (int i = 0; i < blockEnd - block; i++) {
+                    if (scores[q][i] >= minScore) {
+                        top[q].offer(block + i, scores[q][i], k);
+                    }
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Block scorer calling the row scorer for every row of the block
+     */
+    public static BlockScorer blocks(RowScorer scorer) {
+        return (from, to, scores) -> {
+            for (int row = from; row < to; row++) {
+                scores[row - from] = scorer.score(row);
+            }
+        };
+    }
+
+    /**
+     * Block scorer over positions into a row list; hits must be mapped back with {@link SearchHits#mapOrdinals}
+     */
+    public static BlockScorer gather(int[] rows, RowScorer scorer) {
+        return (from, to, scores) -> {
+            for (int i = from; i < to; i++) {
+                scores[i - from] = scorer.score(rows[i]);
+            }
+        };
+    }
+
+    /**
+     * Ordinals set in the filter that are below rows, ascending
+     */
+    public static int[] filteredRows(BitSet filter, int rows) {
+        return filter.stream().takeWhile(row -> row < rows).toArray();
+    }
+
+    /**
+     * Bitmap of the given ordinals, for searches that test membership; null stays null
+     */
+    public static BitSet bitmap(int[] ordinals) {
+        if (ordinals == null) {
+            return null;
+        }
+        BitSet bitmap = new BitSet(ordinals.length == 0 ? 0 : ordinals[ordinals.length - 1] + 1);
+        for (int ordinal : ordinals) {
+            bitmap.set(ordinal);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Sequential blocked scan of rows [from, to) into a bounded min-heap
+     */
+    public static ScoreHeap scanRange(int from, int to, int k, float minScore, BlockScorer scorer) {
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        if (k <= 0 || to <= from) {
+            return top;
+        }
+
+        float[] scores = new float[Math.min(BLOCK_ROWS, to - from)];
+        for (int block = from; block < to; block += BLOCK_ROWS) {
+            int blockEnd = Math.min(block + BLOCK_ROWS, to);
+            scorer.score(block, blockEnd, scores);
+            for (int i = 0; i < blockEnd - block; i++) {
+                if (scores[i] >= minScore) {
+                    top.offer(block + i, scores[i], k);
+                }
+            }
+        }
+        return top;
+    }
+
+    public Map<String, Object> stats() {
+        long shards = shardsScanned.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parallelism", parallelism);
+        stats.put("threshold", threshold);
+        stats.put("sequentialSearches", sequentialSearches.sum());
+        stats.put("parallelSearches", parallelSearches.sum());
+        stats.put("fanOuts", fanOuts.sum());
+        stats.put("shardsScanned", shards);
+        stats.put("avgShardScanMicros", shards == 0 ? 0 : shardNanos.sum() / shards / 1000);
+        stats.put("maxShardScanMicros", maxShardNanos.get() / 1000);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private ScoreHeap timedScan(int from, int to, int k, float minScore, BlockScorer scorer) {
+        long start = System.nanoTime();
+        ScoreHeap heap = scanRange(from, to, k, minScore, scorer);
+        recordShard(System.nanoTime() - start);
+        return heap;
+    }
+
+    private void recordShard(long elapsed) {
+        shardsScanned.increment();
+        shardNanos.add(elapsed);
+        maxShardNanos.accumulate(elapsed);
+    }
+
+    private static SearchHits[] drainAll(ScoreHeap[] heaps) {
+        SearchHits[] hits = new SearchHits[heaps.length];
+        for (int q = 0; q < heaps.length; q++) {
+            hits[q] = heaps[q].drainDescending();
+        }
+        return hits;
+    }
+
+    private static int roundUpToBlock(int rows) {
+        return (rows + BLOCK_ROWS - 1) / BLOCK_ROWS * BLOCK_ROWS;
+    }
+}
@@ -0,0 +1,28 @@
+package com.navigator.index;
+
+/**
+ * Approximate index with a single speed/recall knob (e.g. HNSW efSearch or the rescoring oversample factor),
+ * so its recall can be measured against the exact scan for several settings.
+ */
+public interface TunableIndex extends VectorIndex {
+
+    /**
+     * Name of the tuning parameter, as reported in recall measurements
+     */
+    String tuningParameter();
+
+    /**
+     * Currently configured value of the tuning parameter
+     */
+    int tuningValue();
+
+    /**
+     * Values swept when no explicit ones are requested
+     */
+    int[] defaultSweep();
+
+    /**
+     * Search with an explicit value of the tuning parameter
+     */
+    SearchHits search(float[] query, int k, float minScore, int tuning);
+}
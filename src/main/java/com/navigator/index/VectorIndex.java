@@ -0,0 +1,65 @@
+package com.navigator.index;
+
+import java.util.BitSet;
+
+/**
+ * Nearest-neighbour index over the rows of a {@link VectorMatrix}.
+ * Rows are appended to the matrix first and then registered with {@link #add(int)}.
+ * Rows and queries are unit-length, so similarity is a plain dot product (= cosine).
+ */
+public interface VectorIndex {
+
+    /**
+     * Register the matrix row with the given ordinal
+     */
+    void add(int ordinal);
+
+    /**
+     * Return up to k rows scoring at least minScore against the query, best first
+     */
+    SearchHits search(float[] query, int k, float minScore);
+
+    /**
+     * Like {@link #search(float[], int, float)}, restricted to the ordinals set in filter
+     * (e.g. a metadata match). A null filter means no restriction.
+     */
+    SearchHits search(float[] query, int k, float minScore, BitSet filter);
+
+    /**
+     * Like {@link #search(float[], int, float, BitSet)}, with the filter given as ascending rows. Scanning
+     * indexes score these rows directly; the default goes through a bitmap.
+     */
+    default SearchHits searchRows(float[] query, int k, float minScore, int[] rows) {
+        return search(query, k, minScore, ShardedScanner.bitmap(rows));
+    }
+
+    /**
+     * Batch variant of {@link #searchRows}
+     */
+    default SearchHits[] searchRowsBatch(float[][] queries, int k, float minScore, int[] rows) {
+        return searchBatch(queries, k, minScore, ShardedScanner.bitmap(rows));
+    }
+
+    /**
+     * Search a batch of queries; index types that can share a scan across queries override this
+     */
+    default SearchHits[] searchBatch(float[][] queries, int k, float minScore, BitSet filter) {
+        SearchHits[] hits = new SearchHits[queries.length];
+        for (int q = 0; q < queries.length; q++) {
+            hits[q] = search(queries[q], k, minScore, filter);
+        }
+        return hits;
+    }
+
+    /**
+     * Return the k rows most similar to the query, best first
+     */
+    default SearchHits search(float[] query, int k) {
+        return search(query, k, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Short name used in logs and status output
+     */
+    String type();
+}
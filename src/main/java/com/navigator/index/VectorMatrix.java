@@ -0,0 +1,211 @@
+package com.navigator.index;
+
+import com.navigator.util.EmbeddingUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Contiguous row-major store for embedding vectors.
+ * Row i occupies elements [i * dimension, (i + 1) * dimension), so a full scan
+ * walks memory sequentially instead of chasing boxed Floats.
+ * Rows live either in a heap float[] or, for quantized indexes that only touch full-precision
+ * vectors when rescoring, in an off-heap direct buffer (little-endian floats).
+ * A matrix can also wrap the vector region of a memory-mapped segment and score it in place.
+ */
+public class VectorMatrix {
+
+    private static final int INITIAL_ROWS = 64;
+    // Rows per tile of the batch kernel: about 128 KB, so a tile stays in L2 while every query is scored on it
+    private static final int TILE_BYTES = 128 * 1024;
+
+    private final boolean offHeap;
+    private boolean mapped;
+    private int dimension;
+    private float[] data;
+    private ByteBuffer buffer;
+    private int size;
+
+    public VectorMatrix() {
+        this(0);
+    }
+
+    /**
+     * @param dimension vector dimension, or 0 to take it from the first added vector
+     */
+    public VectorMatrix(int dimension) {
+        this(dimension, false);
+    }
+
+    /**
+     * @param dimension vector dimension, or 0 to take it from the first added vector
+     * @param offHeap   keep rows in a direct buffer outside the Java heap
+     */
+    public VectorMatrix(int dimension, boolean offHeap) {
+        this.dimension = dimension;
+        this.offHeap = offHeap;
+        this.data = new float[0];
+        this.buffer = ByteBuffer.allocateDirect(0).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Read-only view over little-endian rows in an existing buffer, e.g. a memory-mapped segment.
+     * Rows are scored in place; the first add copies them into a growable direct buffer.
+     */
+    public static VectorMatrix wrap(ByteBuffer rows, int dimension, int size) {
+        if ((long) dimension * size * Float.BYTES > rows.capacity()) {
+            throw new IllegalArgumentException("Buffer holds fewer than " + size + " rows of dimension " + dimension);
+        }
+        VectorMatrix matrix = new VectorMatrix(dimension, true);
+        matrix.buffer = rows.order(ByteOrder.LITTLE_ENDIAN);
+        matrix.size = size;
+        matrix.mapped = true;
+        return matrix;
+    }
+
+    /**
+     * Append a vector and return its row ordinal
+     */
+    public int add(float[] vector) {
+        if (dimension == 0) {
+            dimension = vector.length;
+        }
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    "Vector dimension " + vector.length + " does not match index dimension " + dimension);
+        }
+
+        ensureCapacity(size + 1);
+        if (offHeap) {
+            buffer.asFloatBuffer().put(offset(size), vector);
+        } else {
+            System.arraycopy(vector, 0, data, offset(size), dimension);
+        }
+        return size++;
+    }
+
+    /**
+     * Copy of the vector stored at the given row
+     */
+    public float[] get(int row) {
+        checkRow(row);
+        if (offHeap) {
+            float[] vector = new float[dimension];
+            buffer.asFloatBuffer().get(offset(row), vector);
+            return vector;
+        }
+        return Arrays.copyOfRange(data, offset(row), offset(row) + dimension);
+    }
+
+    /**
+     * Dot product of a query vector with the given row
+     */
+    public float dot(float[] query, int row) {
+        if (offHeap) {
+            return EmbeddingUtil.dot(query, buffer, offset(row) * Float.BYTES, dimension);
+        }
+        return EmbeddingUtil.dot(query, 0, data, offset(row), dimension);
+    }
+
+    /**
+     * Dot product of two rows
+     */
+    public float dot(int rowA, int rowB) {
+        if (offHeap) {
+            return EmbeddingUtil.dot(buffer, offset(rowA) * Float.BYTES, offset(rowB) * Float.BYTES, dimension);
+        }
+        return EmbeddingUtil.dot(data, offset(rowA), data, offset(rowB), dimension);
+    }
+
+    /**
+     * Batch kernel: scores[i] = query . row(fromRow + i) for rows [fromRow, toRow)
+     */
+    public void dotRows(float[] query, int fromRow, int toRow, float[] scores) {
+        if (!offHeap) {
+            EmbeddingUtil.dotRows(query, data, dimension, fromRow, toRow, scores);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            scores[row - fromRow] = EmbeddingUtil.dot(query, buffer, offset(row) * Float.BYTES, dimension);
+        }
+    }
+
+    /**
+     * Batch kernel for a query matrix: scores[q][i] = queries[q] . row(fromRow + i).
+     * The rows are processed in cache-sized tiles: each tile is read from memory once and every query runs
+     * over it in turn, so one query vector stays in L1 across the tile and the tile stays in L2 across queries.
+     */
+    public void dotRowsBatch(float[][] queries, int fromRow, int toRow, float[][] scores) {
+        int tileRows = Math.max(1, TILE_BYTES / (Math.max(1, dimension) * Float.BYTES));
+        for (int tileStart = fromRow; tileStart < toRow; tileStart += tileRows) {
+            int tileEnd = Math.min(toRow, tileStart + tileRows);
+            for (int q = 0; q < queries.length; q++) {
+                float[] query = queries[q];
+                float[] queryScores = scores[q];
+                for (int row = tileStart; row < tileEnd; row++) {
+                    queryScores[row - fromRow] = dot(query, row);
+                }
+            }
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * True while the rows are still read in place from a wrapped (mapped) buffer
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Approximate footprint of the vector data in bytes (off-heap when {@link #isOffHeap()})
+     */
+    public long memoryBytes() {
+        return offHeap ? buffer.capacity() : (long) data.length * Float.BYTES;
+    }
+
+    private int offset(int row) {
+        return row * dimension;
+    }
+
+    private void ensureCapacity(int rows) {
+        long required = (long) rows * dimension;
+        long capacity = offHeap ? buffer.capacity() / Float.BYTES : data.length;
+        if (required <= capacity && !mapped) {
+            return;
+        }
+        long limit = offHeap ? (Integer.MAX_VALUE - 8) / Float.BYTES : Integer.MAX_VALUE - 8;
+        if (required > limit) {
+            throw new IllegalStateException("Vector matrix is full: " + size + " rows of dimension " + dimension);
+        }
+
+        long grown = Math.max((long) INITIAL_ROWS * dimension, capacity + (capacity >> 1));
+        int newCapacity = (int) Math.min(Math.max(grown, required), limit);
+        if (offHeap) {
+            ByteBuffer grownBuffer = ByteBuffer.allocateDirect(newCapacity * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            grownBuffer.put(0, buffer, 0, (int) Math.min(buffer.capacity(), (long) size * dimension * Float.BYTES));
+            buffer = grownBuffer;
+            mapped = false;
+        } else {
+            data = Arrays.copyOf(data, newCapacity);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+}
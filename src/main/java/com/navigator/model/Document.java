@@ -4,18 +4,19 @@ import lombok.Data;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
 import java.util.Map;
 
 /**
  * Represents a document with text, embedding, and metadata.
+ * The embedding is kept as a primitive array; it serializes to the same JSON
+ * number array as the previous List&lt;Float&gt; form.
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Document {
     private String text;
-    private List<Float> embedding;
+    private float[] embedding;
     private Map<String, Object> metadata;
 
     public Document(String text, Map<String, Object> metadata) {
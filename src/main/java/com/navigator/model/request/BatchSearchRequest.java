@@ -0,0 +1,34 @@
+package com.navigator.model.request;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+/**
+ * Request model for batch search endpoint.
+ * The metadata filters apply to every query of the batch.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class BatchSearchRequest extends FilteredRequest {
+
+    @NotEmpty(message = "At least one query is required")
+    @Size(max = 1000, message = "At most 1000 queries per batch")
+    private List<@NotBlank(message = "Queries must not be blank") String> queries;
+
+    @Min(value = 1, message = "top_k must be at least 1")
+    private int topK = 4;
+
+    // Optional similarity cutoff; results scoring below it are dropped
+    @DecimalMax(value = "1.0", message = "min_score must be at most 1.0")
+    private Double minScore;
+
+    @NotBlank(message = "API key is required")
+    private String apiKey;
+}
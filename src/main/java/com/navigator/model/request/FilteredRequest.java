@@ -0,0 +1,32 @@
+package com.navigator.model.request;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base for request models that restrict retrieval by metadata.
+ */
+@Data
+public abstract class FilteredRequest {
+
+    // Optional metadata filters; only chunks with matching grade / subject are searched
+    private String grade;
+
+    private String subject;
+
+    /**
+     * Non-blank filters as metadata field -> value
+     */
+    public Map<String, String> toFilters() {
+        Map<String, String> filters = new LinkedHashMap<>();
+        if (grade != null && !grade.isBlank()) {
+            filters.put("grade", grade.trim());
+        }
+        if (subject != null && !subject.isBlank()) {
+            filters.put("subject", subject.trim());
+        }
+        return filters;
+    }
+}
@@ -1,13 +1,17 @@
 package com.navigator.model.request;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * Request model for RAG chat endpoint.
  */
 @Data
-public class RAGChatRequest {
+@EqualsAndHashCode(callSuper = true)
+public class RAGChatRequest extends FilteredRequest {
 
     @NotBlank(message = "User message is required")
     private String userMessage;
@@ -19,4 +23,11 @@ public class RAGChatRequest {
 
     @NotBlank(message = "User ID is required")
     private String userId;
+
+    // Optional retrieval overrides; server defaults apply when omitted
+    @Min(value = 1, message = "top_k must be at least 1")
+    private Integer topK;
+
+    @DecimalMax(value = "1.0", message = "min_score must be at most 1.0")
+    private Double minScore;
 }
@@ -1,14 +1,17 @@
 package com.navigator.model.request;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.Min;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * Request model for search endpoint.
  */
 @Data
-public class SearchRequest {
+@EqualsAndHashCode(callSuper = true)
+public class SearchRequest extends FilteredRequest {
 
     @NotBlank(message = "Query is required")
     private String query;
@@ -16,6 +19,10 @@ public class SearchRequest {
     @Min(value = 1, message = "top_k must be at least 1")
     private int topK = 4;
 
+    // Optional similarity cutoff; results scoring below it are dropped
+    @DecimalMax(value = "1.0", message = "min_score must be at most 1.0")
+    private Double minScore;
+
     @NotBlank(message = "API key is required")
     private String apiKey;
 }
@@ -0,0 +1,18 @@
+package com.navigator.model.response;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response model for one query of the batch search endpoint.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchSearchResponse {
+    private String query;
+    private List<SearchResponse> results;
+}
@@ -0,0 +1,21 @@
+package com.navigator.model.response;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of indexing, replacing or deleting one source document in the RAG index.
+ * A source is identified by its filename and the SHA-256 of its text (contentHash).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SourceUpdateResponse {
+    private String filename;
+    private String contentHash;
+    // "added", "replaced", "unchanged", "deleted" or "not_found"
+    private String status;
+    private int chunksAdded;
+    private int chunksRemoved;
+}
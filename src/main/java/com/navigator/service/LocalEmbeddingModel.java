@@ -0,0 +1,129 @@
+package com.navigator.service;
+
+import com.navigator.util.HashUtil;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sentence-embedding model run in-process on the CPU through ONNX Runtime (e.g. all-MiniLM-L6-v2 or
+ * bge-small exported to ONNX), so embeddings need no network, API key or rate limit.
+ * A single text is embedded on the calling thread; the texts of a batch are spread over the inference threads.
+ * The model is identified by the SHA-256 of its ONNX file and its pooling mode rather than by file name, so
+ * replacing model.onnx with another model changes every embedding cache key and rebuilds the RAG index.
+ */
+@Slf4j
+public class LocalEmbeddingModel implements AutoCloseable {
+
+    private final String name;
+    private final String identity;
+    private final EmbeddingModel model;
+    private final ExecutorService executor;
+    private final int dimension;
+
+    /**
+     * @param identity distinguishes models producing different vectors; see {@link #identity()}
+     */
+    public LocalEmbeddingModel(String name, String identity, EmbeddingModel model, ExecutorService executor) {
+        this.name = name;
+        this.identity = identity;
+        this.model = model;
+        this.executor = executor;
+        // Embeds a probe text, which also warms up the inference session
+        this.dimension = model.dimension();
+    }
+
+    /**
+     * Load an ONNX model and its HuggingFace tokenizer.json from the file system
+     *
+     * @param name    display name of the model; the model file name when blank
+     * @param pooling mean or cls, as the model was trained
+     * @param threads inference threads for batches; 0 for one per CPU core
+     */
+    public static LocalEmbeddingModel load(String modelPath, String tokenizerPath, String pooling, String name,
+                                           int threads) {
+        if (modelPath == null || modelPath.isBlank() || tokenizerPath == null || tokenizerPath.isBlank()) {
+            throw new IllegalArgumentException(
+                    "The local embedding provider needs openai.embedding.local.model-path and tokenizer-path");
+        }
+        Path model = Paths.get(modelPath);
+        Path tokenizer = Paths.get(tokenizerPath);
+        if (!Files.isReadable(model) || !Files.isReadable(tokenizer)) {
+            throw new IllegalArgumentException("Local embedding model files not found: " + model + ", " + tokenizer);
+        }
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "local-embeddings");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        try {
+            String displayName = name == null || name.isBlank() ? "local:" + model.getFileName() : name;
+            String identity = "local:" + HashUtil.sha256Hex(model).substring(0, 16) + "/" + pooling.toLowerCase(Locale.ROOT);
+            LocalEmbeddingModel loaded = new LocalEmbeddingModel(displayName, identity,
+                    new OnnxEmbeddingModel(model, tokenizer, PoolingMode.valueOf(pooling.toUpperCase(Locale.ROOT)),
+                            executor),
+                    executor);
+            log.info("✅ Local embedding model {} ({}) loaded from {} in {} ms ({} dimensions, {} threads)",
+                    loaded.name(), identity, model, System.currentTimeMillis() - start, loaded.dimension(), poolSize);
+            return loaded;
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw new UncheckedIOException("Could not read local embedding model " + model, e);
+        } catch (RuntimeException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * SHA-256 prefix of the model file plus the pooling mode: equal identities produce equal vectors
+     */
+    public String identity() {
+        return identity;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Embeddings of texts, in order
+     */
+    public List<float[]> embed(List<String> texts) {
+        List<TextSegment> segments = texts.stream().map(TextSegment::from).toList();
+        List<Embedding> embeddings = model.embedAll(segments).content();
+        List<float[]> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(embedding.vector());
+        }
+        return vectors;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
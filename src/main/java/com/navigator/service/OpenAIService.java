@@ -1,6 +1,14 @@
 package com.navigator.service;
 
 import com.navigator.config.OpenAIConfig;
+import com.navigator.storage.EmbeddingCache;
+import com.navigator.util.AimdLimiter;
+import com.navigator.util.HashUtil;
+import com.navigator.util.MicroBatcher;
+import com.navigator.util.SingleFlight;
+import com.navigator.util.TinyLfuCache;
+import com.navigator.util.TokenBucket;
+import dev.ai4j.openai4j.OpenAiHttpException;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
@@ -9,16 +17,35 @@ import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Service for OpenAI API interactions.
- * Handles chat completions, streaming, and embeddings.
+ * Handles chat completions, streaming, and embeddings. Embeddings come from the OpenAI API or, with
+ * openai.embedding.provider=local, from an ONNX model run in-process.
  */
 @Slf4j
 @Service
@@ -26,29 +53,332 @@ public class OpenAIService {
 
     private final OpenAIConfig config;
 
+    // In-process embedding model; null when embeddings come from the API
+    private final LocalEmbeddingModel localModel;
+
+    // Runs the batches of {@link #embedAll}; its size caps the embedding requests in flight across uploads
+    private final ExecutorService embeddingPool;
+
+    // Runs the micro-batches of query embeddings, so searches never queue behind a large upload's batches
+    private final ExecutorService queryEmbeddingPool;
+
+    // Content-addressed embedding cache, opened on first use; null when disabled or unavailable
+    private volatile EmbeddingCache embeddingCache;
+    private volatile boolean embeddingCacheOpened;
+
+    // Model clients by (API key hash, model, settings). Each wraps its own HTTP client and connection pool,
+    // so reusing it keeps connections (keep-alive, HTTP/2) warm from one call to the next
+    private final TinyLfuCache<String, ChatLanguageModel> chatModels;
+    private final TinyLfuCache<String, OpenAiEmbeddingModel> embeddingModels;
+    private final LongAdder clientsCreated = new LongAdder();
+
+    // Provider limits per (API key hash, model): requests and tokens per minute, adaptive concurrency per call type
+    private final Map<String, ProviderLimits> limits = new ConcurrentHashMap<>();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    // Recent query embeddings by model and normalized query, in front of the embedding cache on the search path
+    private final TinyLfuCache<String, float[]> queryCache;
+
+    // Identical texts embedded concurrently (e.g. a whole class asking the same question) share one request
+    private final SingleFlight<String, float[]> embeddingFlights = new SingleFlight<>();
+
+    // Collects concurrent single-text embedding requests into batched calls; null when disabled
+    private final MicroBatcher<EmbeddingRequest, float[]> embeddingBatcher;
+
+    // Embedding API usage, to estimate what cache hits save
+    private final LongAdder embeddedTexts = new LongAdder();
+    private final LongAdder embeddingNanos = new LongAdder();
+    private final LongAdder cachedTexts = new LongAdder();
+    private final LongAdder cachedTokens = new LongAdder();
+
+    @Autowired
     public OpenAIService(OpenAIConfig config) {
+        this(config, loadLocalModel(config));
+    }
+
+    /**
+     * @param localModel embeds texts in-process instead of calling the API; null to use the API
+     */
+    public OpenAIService(OpenAIConfig config, LocalEmbeddingModel localModel) {
         this.config = config;
+        this.localModel = localModel;
+        this.embeddingPool = Executors.newFixedThreadPool(Math.max(1, config.getEmbeddingConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "openai-embeddings");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queryEmbeddingPool = Executors.newFixedThreadPool(Math.max(1, config.getMicroBatchConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "openai-query-embeddings");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queryCache = new TinyLfuCache<>(config.getQueryCacheMaxEntries(),
+                Duration.ofSeconds(config.getQueryCacheTtlSeconds()));
+        this.chatModels = new TinyLfuCache<>(config.getClientMaxEntries(), Duration.ofSeconds(config.getClientTtlSeconds()));
+        this.embeddingModels = new TinyLfuCache<>(config.getClientMaxEntries(),
+                Duration.ofSeconds(config.getClientTtlSeconds()));
+        // A local model embeds a single query in milliseconds, waiting for a batch would only add latency
+        this.embeddingBatcher = config.getMicroBatchWindowMillis() <= 0 || localModel != null ? null
+                : new MicroBatcher<>("openai-embedding-batcher", Duration.ofMillis(config.getMicroBatchWindowMillis()),
+                config.getMicroBatchMaxSize(), queryEmbeddingPool, EmbeddingRequest::apiKey, this::embedBatch);
+    }
+
+    private static LocalEmbeddingModel loadLocalModel(OpenAIConfig config) {
+        if (!config.isLocalEmbeddings()) {
+            if (!"openai".equalsIgnoreCase(config.getEmbeddingProvider())) {
+                throw new IllegalArgumentException("Unknown embedding provider: " + config.getEmbeddingProvider());
+            }
+            return null;
+        }
+        return LocalEmbeddingModel.load(config.getLocalModelPath(), config.getLocalTokenizerPath(),
+                config.getLocalPooling(), config.getLocalModelName(), config.getLocalThreads());
+    }
+
+    /**
+     * Name of the active embedding model, for logs and stats
+     */
+    public String embeddingModelName() {
+        return localModel != null ? localModel.name() : config.getEmbeddingModel();
+    }
+
+    /**
+     * Identity of the active embedding model and its settings: embeddings are only interchangeable under equal ids.
+     * Part of every embedding cache key, and recorded with the RAG index, which is rebuilt when it changes.
+     */
+    public String embeddingModelId() {
+        if (localModel != null) {
+            return localModel.identity();
+        }
+        return config.getEmbeddingDimension() > 0
+                ? config.getEmbeddingModel() + "/" + config.getEmbeddingDimension()
+                : config.getEmbeddingModel();
+    }
+
+    /**
+     * Vector size of the active embedding model; vector indexes and the Qdrant collection are sized from it
+     */
+    public int embeddingDimension() {
+        if (localModel != null) {
+            return localModel.dimension();
+        }
+        if (config.getEmbeddingDimension() > 0) {
+            return config.getEmbeddingDimension();
+        }
+        return "text-embedding-3-large".equals(config.getEmbeddingModel()) ? 3072 : 1536;
+    }
+
+    /**
+     * Chat language model for the given API key, reused while it stays in the client registry
+     */
+    ChatLanguageModel createChatModel(String apiKey) {
+        String key = clientKey(apiKey, config.getModel(), config.getMaxTokens());
+        ChatLanguageModel model = chatModels.get(key);
+        if (model == null) {
+            model = OpenAiChatModel.builder()
+                    .apiKey(apiKey)
+                    .modelName(config.getModel())
+                    .maxTokens(config.getMaxTokens())
+                    .timeout(Duration.ofSeconds(config.getTimeoutSeconds()))
+                    // Retries happen in callProvider, under the rate limits
+                    .maxRetries(0)
+                    .build();
+            chatModels.put(key, model);
+            clientsCreated.increment();
+        }
+        return model;
     }
 
     /**
-     * Create a chat language model with the given API key
+     * Embedding model for the given API key, reused while it stays in the client registry
      */
-    private ChatLanguageModel createChatModel(String apiKey) {
-        return OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(config.getModel())
-                .maxTokens(config.getMaxTokens())
-                .build();
+    OpenAiEmbeddingModel createEmbeddingModel(String apiKey) {
+        String key = clientKey(apiKey, config.getEmbeddingModel(), config.getEmbeddingDimension());
+        OpenAiEmbeddingModel model = embeddingModels.get(key);
+        if (model == null) {
+            model = OpenAiEmbeddingModel.builder()
+                    .apiKey(apiKey)
+                    .modelName(config.getEmbeddingModel())
+                    // Shortened text-embedding-3 vectors; the model's full size when not configured
+                    .dimensions(config.getEmbeddingDimension() > 0 ? config.getEmbeddingDimension() : null)
+                    .timeout(Duration.ofSeconds(config.getTimeoutSeconds()))
+                    // Retries happen in callProvider, under the rate limits
+                    .maxRetries(0)
+                    .build();
+            embeddingModels.put(key, model);
+            clientsCreated.increment();
+        }
+        return model;
+    }
+
+    /**
+     * Registry key: the API key is only kept as a hash
+     */
+    String clientKey(String apiKey, Object... settings) {
+        StringBuilder key = new StringBuilder(HashUtil.sha256Hex(apiKey));
+        for (Object setting : settings) {
+            key.append('\n').append(setting);
+        }
+        return key.append('\n').append(config.getTimeoutSeconds()).toString();
     }
 
     /**
-     * Create an embedding model with the given API key
+     * Client registry counters (reuse versus clients built) and the rate limiter state per API key
      */
-    private OpenAiEmbeddingModel createEmbeddingModel(String apiKey) {
-        return OpenAiEmbeddingModel.builder()
-                .apiKey(apiKey)
-                .modelName(config.getEmbeddingModel())
-                .build();
+    public Map<String, Object> clientStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clientsCreated", clientsCreated.sum());
+        stats.put("chatModels", chatModels.stats());
+        stats.put("embeddingModels", embeddingModels.stats());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("retries", retries.sum());
+        Map<String, Object> perKey = new LinkedHashMap<>();
+        limits.forEach((key, modelLimits) -> perKey.put(key.substring(0, 8) + '/' + key.substring(key.indexOf('\n') + 1),
+                modelLimits.stats()));
+        stats.put("limits", perKey);
+        return stats;
+    }
+
+    /**
+     * Run a provider call under its limits: first the request and token buckets of its (API key, model), then a
+     * slot under the adaptive concurrency limit of its call type, so that the latency baseline of small query
+     * embeddings is not mixed with that of chat completions or large ingestion batches. A rate-limited call
+     * (HTTP 429) halves the limit; rate-limited and server-error calls are retried with exponential backoff,
+     * up to rate-limit max-retries times. Interactive calls give up with a {@link RateLimitedException} rather
+     * than wait (or back off) longer than rate-limit max-wait-millis in total.
+     */
+    private <T> T callProvider(String apiKey, String model, CallType type, long tokens, Supplier<T> call) {
+        ProviderLimits modelLimits = limits.computeIfAbsent(HashUtil.sha256Hex(apiKey) + '\n' + model,
+                key -> new ProviderLimits(new TokenBucket(config.getRequestsPerMinute()),
+                        new TokenBucket(config.getTokensPerMinute()), new ConcurrentHashMap<>()));
+        AimdLimiter concurrency = modelLimits.concurrency().computeIfAbsent(type, t -> new AimdLimiter(
+                config.getConcurrencyInitial(), config.getConcurrencyMin(), config.getConcurrencyMax(),
+                config.getConcurrencyLatencyTolerance()));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMillis());
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (type.interactive) {
+                    acquireWithin(modelLimits, concurrency, tokens, deadline);
+                } else {
+                    modelLimits.requests().acquire(1);
+                    modelLimits.tokens().acquire(tokens);
+                    concurrency.acquire();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the OpenAI rate limit", e);
+            }
+
+            long start = System.nanoTime();
+            boolean released = false;
+            RuntimeException failure;
+            int status;
+            try {
+                T result = call.get();
+                released = true;
+                concurrency.onSuccess(System.nanoTime() - start);
+                return result;
+            } catch (RuntimeException e) {
+                failure = e;
+                status = httpStatus(e);
+                released = true;
+                if (status == 429) {
+                    rateLimited.increment();
+                    concurrency.onOverload();
+                } else {
+                    concurrency.onFailure();
+                }
+                if ((status != 429 && status < 500) || attempt >= config.getRateLimitMaxRetries()) {
+                    throw e;
+                }
+            } finally {
+                // An Error thrown by the call must not keep its slot forever
+                if (!released) {
+                    concurrency.onFailure();
+                }
+            }
+
+            long backoffMillis = (500L << attempt) + ThreadLocalRandom.current().nextLong(250);
+            if (type.interactive && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis) > deadline) {
+                if (status == 429) {
+                    throw new RateLimitedException("OpenAI rate limit reached for " + model + ", try again later",
+                            failure);
+                }
+                throw failure;
+            }
+            retries.increment();
+            log.warn("⚠️  OpenAI call failed with HTTP {}, retrying in {} ms", status, backoffMillis);
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while backing off from OpenAI", e);
+            }
+        }
+    }
+
+    /**
+     * Take the buckets and a concurrency slot by the deadline, or nothing (refunding what was taken) and fail
+     */
+    private void acquireWithin(ProviderLimits modelLimits, AimdLimiter concurrency, long tokens, long deadline)
+            throws InterruptedException {
+        if (!modelLimits.requests().tryAcquire(1, deadline - System.nanoTime())) {
+            throw rateLimitReached("requests per minute");
+        }
+        if (!modelLimits.tokens().tryAcquire(tokens, deadline - System.nanoTime())) {
+            modelLimits.requests().refund(1);
+            throw rateLimitReached("tokens per minute");
+        }
+        if (!concurrency.tryAcquire(deadline - System.nanoTime())) {
+            modelLimits.requests().refund(1);
+            modelLimits.tokens().refund(tokens);
+            throw rateLimitReached("concurrent requests");
+        }
+    }
+
+    private RateLimitedException rateLimitReached(String limit) {
+        rateLimited.increment();
+        return new RateLimitedException("OpenAI " + limit + " limit reached, try again later");
+    }
+
+    /**
+     * HTTP status of a failed provider call, or 0 when it did not fail with an HTTP error
+     */
+    private static int httpStatus(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiHttpException http) {
+                return http.code();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Provider calls with separate concurrency limits; only interactive ones are bounded by max-wait-millis
+     */
+    private enum CallType {
+        CHAT(true), QUERY_EMBEDDINGS(true), BATCH_EMBEDDINGS(false);
+
+        private final boolean interactive;
+
+        CallType(boolean interactive) {
+            this.interactive = interactive;
+        }
+    }
+
+    private record ProviderLimits(TokenBucket requests, TokenBucket tokens, Map<CallType, AimdLimiter> concurrency) {
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            concurrency.forEach((type, limiter) -> stats.put(type.name().toLowerCase(), limiter.stats()));
+            if (!requests.isUnlimited()) {
+                stats.put("requestsAvailable", (long) requests.available());
+            }
+            if (!tokens.isUnlimited()) {
+                stats.put("tokensAvailable", (long) tokens.available());
+            }
+            return stats;
+        }
     }
 
     /**
@@ -57,7 +387,12 @@ public class OpenAIService {
     public String chatCompletion(List<ChatMessage> messages, String apiKey) {
         try {
             ChatLanguageModel model = createChatModel(apiKey);
-            AiMessage response = model.generate(messages).content();
+            long tokens = config.getMaxTokens();
+            for (ChatMessage message : messages) {
+                tokens += estimateTokens(String.valueOf(message));
+            }
+            AiMessage response = callProvider(apiKey, config.getModel(), CallType.CHAT, tokens,
+                    () -> model.generate(messages).content());
             return response.text();
         } catch (Exception e) {
             log.error("Error generating chat completion: {}", e.getMessage());
@@ -88,28 +423,338 @@ public class OpenAIService {
     }
 
     /**
-     * Generate embedding for text
+     * Embedding of a search query, served from the in-memory query cache when the same question (up to
+     * whitespace and Unicode normalization) was asked recently
+     */
+    public float[] embedQuery(String query, String apiKey) {
+        String key = queryKey(query);
+        float[] cached = queryCache.get(key);
+        if (cached != null) {
+            return cached.clone();
+        }
+        float[] vector = createEmbedding(query, apiKey);
+        queryCache.put(key, vector.clone());
+        return vector;
+    }
+
+    /**
+     * Embeddings of several search queries, in order; only the ones missing from the query cache are embedded
+     */
+    public List<float[]> embedQueries(List<String> queries, String apiKey) {
+        float[][] vectors = new float[queries.size()][];
+        List<String> missing = new ArrayList<>();
+        for (int q = 0; q < queries.size(); q++) {
+            float[] cached = queryCache.get(queryKey(queries.get(q)));
+            if (cached != null) {
+                vectors[q] = cached.clone();
+            } else {
+                missing.add(queries.get(q));
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<float[]> embedded = embedAll(missing, apiKey, CallType.QUERY_EMBEDDINGS);
+            for (int q = 0, m = 0; q < vectors.length; q++) {
+                if (vectors[q] == null) {
+                    vectors[q] = embedded.get(m);
+                    queryCache.put(queryKey(missing.get(m++)), vectors[q].clone());
+                }
+            }
+        }
+        return Arrays.asList(vectors);
+    }
+
+    public Map<String, Object> queryCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(queryCache.stats());
+        stats.put("coalescing", embeddingFlights.stats());
+        stats.put("batching", embeddingBatcher == null ? Map.of("enabled", false) : embeddingBatcher.stats());
+        return stats;
+    }
+
+    private String queryKey(String query) {
+        return embeddingModelId() + '\n' + EmbeddingCache.normalize(query);
+    }
+
+    /**
+     * Generate embedding for text, served from the embedding cache when this text was embedded before.
+     * Concurrent calls for the same text and API key share one request. Throws when the embedding cannot
+     * be generated.
+     */
+    public float[] createEmbedding(String text, String apiKey) {
+        EmbeddingCache cache = embeddingCache();
+        byte[] key = cache == null ? null : EmbeddingCache.key(embeddingModelId(), text);
+        float[] cached = cachedEmbedding(cache, key, text);
+        if (cached != null) {
+            return cached;
+        }
+        String flightKey = queryKey(text) + '\n' + HashUtil.sha256Hex(apiKey);
+        return embeddingFlights.execute(flightKey, () -> requestEmbedding(text, apiKey, cache, key)).clone();
+    }
+
+    private float[] requestEmbedding(String text, String apiKey, EmbeddingCache cache, byte[] key) {
+        float[] vector;
+        if (embeddingBatcher != null) {
+            try {
+                vector = embeddingBatcher.submit(new EmbeddingRequest(text, apiKey)).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause
+                        : new RuntimeException("Error generating embedding: " + e.getCause().getMessage(), e.getCause());
+            }
+        } else {
+            vector = createEmbeddings(List.of(text), apiKey, CallType.QUERY_EMBEDDINGS).get(0);
+        }
+        cacheEmbedding(cache, key, vector);
+        return vector;
+    }
+
+    /**
+     * One micro-batch of single-text requests sharing an API key (the batcher partitions by key):
+     * one API call, results in request order
+     */
+    private List<float[]> embedBatch(List<EmbeddingRequest> requests) {
+        return createEmbeddings(requests.stream().map(EmbeddingRequest::text).toList(), requests.get(0).apiKey(),
+                CallType.QUERY_EMBEDDINGS);
+    }
+
+    private record EmbeddingRequest(String text, String apiKey) {
+    }
+
+    /**
+     * Generate embeddings for several texts in one API call (or one local model run), in input order
      */
-    public List<Float> createEmbedding(String text, String apiKey) {
+    public List<float[]> createEmbeddings(List<String> texts, String apiKey) {
+        return createEmbeddings(texts, apiKey, CallType.BATCH_EMBEDDINGS);
+    }
+
+    private List<float[]> createEmbeddings(List<String> texts, String apiKey, CallType type) {
         try {
+            if (localModel != null) {
+                long start = System.nanoTime();
+                List<float[]> vectors = localModel.embed(texts);
+                recordRequest(texts.size(), start);
+                return vectors;
+            }
             OpenAiEmbeddingModel embeddingModel = createEmbeddingModel(apiKey);
-            Embedding embedding = embeddingModel.embed(text).content();
+            List<TextSegment> segments = texts.stream().map(TextSegment::from).toList();
+            long tokens = texts.stream().mapToLong(OpenAIService::estimateTokens).sum();
+            long start = System.nanoTime();
+            List<Embedding> embeddings = callProvider(apiKey, config.getEmbeddingModel(), type, tokens,
+                    () -> embeddingModel.embedAll(segments).content());
+            recordRequest(texts.size(), start);
 
-            // Convert float[] to List<Float>
-            float[] vector = embedding.vector();
-            List<Float> result = new ArrayList<>(vector.length);
-            for (float v : vector) {
-                result.add(v);
+            List<float[]> vectors = new ArrayList<>(embeddings.size());
+            for (Embedding embedding : embeddings) {
+                vectors.add(embedding.vector());
             }
-            return result;
+            return vectors;
         } catch (Exception e) {
-            log.error("Error generating embedding: {}", e.getMessage());
-            // Return default embedding size (1536 for text-embedding-3-small)
-            List<Float> defaultEmbedding = new ArrayList<>(1536);
-            for (int i = 0; i < 1536; i++) {
-                defaultEmbedding.add(0.0f);
+            log.error("Error generating {} embeddings: {}", texts.size(), e.getMessage());
+            throw new RuntimeException("Error generating embeddings: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Generate embeddings for any number of texts, in input order.
+     * Cached texts are not sent again, nor are duplicates within texts. The rest are grouped into requests of
+     * at most embedding batch-size inputs and batch-tokens (estimated) tokens, and up to embedding concurrency
+     * requests run at once, so a document costs a handful of round trips instead of one per chunk.
+     * Fails as a whole if any batch fails.
+     */
+    public List<float[]> embedAll(List<String> texts, String apiKey) {
+        return embedAll(texts, apiKey, CallType.BATCH_EMBEDDINGS);
+    }
+
+    private List<float[]> embedAll(List<String> texts, String apiKey, CallType type) {
+        EmbeddingCache cache = embeddingCache();
+        float[][] vectors = new float[texts.size()][];
+        byte[][] keys = new byte[texts.size()][];
+        // Texts still to embed, each once, with the positions waiting for it
+        Map<String, List<Integer>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (cache != null) {
+                keys[i] = EmbeddingCache.key(embeddingModelId(), texts.get(i));
+                vectors[i] = cachedEmbedding(cache, keys[i], texts.get(i));
+            }
+            if (vectors[i] == null) {
+                pending.computeIfAbsent(texts.get(i), text -> new ArrayList<>()).add(i);
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<String> missing = new ArrayList<>(pending.keySet());
+            List<float[]> embedded = requestAll(missing, apiKey, type);
+            for (int j = 0; j < missing.size(); j++) {
+                List<Integer> positions = pending.get(missing.get(j));
+                for (int position : positions) {
+                    vectors[position] = embedded.get(j);
+                }
+                cacheEmbedding(cache, keys[positions.get(0)], embedded.get(j));
+            }
+        }
+        log.debug("Embedded {} texts, {} sent to the API", texts.size(), pending.size());
+        return Arrays.asList(vectors);
+    }
+
+    /**
+     * Embed texts through the API in batched, concurrent requests, in input order
+     */
+    private List<float[]> requestAll(List<String> texts, String apiKey, CallType type) {
+        if (localModel != null) {
+            // The local model spreads the texts over its own inference threads
+            return texts.isEmpty() ? List.of() : createEmbeddings(texts, apiKey, type);
+        }
+        List<List<String>> batches = batches(texts);
+        if (batches.size() <= 1) {
+            return batches.isEmpty() ? List.of() : createEmbeddings(batches.get(0), apiKey, type);
+        }
+
+        List<CompletableFuture<List<float[]>>> futures = new ArrayList<>(batches.size());
+        for (List<String> batch : batches) {
+            futures.add(CompletableFuture.supplyAsync(() -> createEmbeddings(batch, apiKey, type), embeddingPool));
+        }
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        try {
+            for (CompletableFuture<List<float[]>> future : futures) {
+                vectors.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            // Batches not yet sent are dropped; the caller gets the first failure
+            futures.forEach(future -> future.cancel(false));
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        }
+        if (vectors.size() != texts.size()) {
+            throw new RuntimeException("Expected " + texts.size() + " embeddings, got " + vectors.size());
+        }
+        return vectors;
+    }
+
+    /**
+     * Consecutive runs of texts that fit the per-request input and token limits
+     */
+    private List<List<String>> batches(List<String> texts) {
+        int maxInputs = Math.max(1, config.getEmbeddingBatchSize());
+        long maxTokens = Math.max(1, config.getEmbeddingBatchTokens());
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        long tokens = 0;
+        for (String text : texts) {
+            long estimate = estimateTokens(text);
+            if (!batch.isEmpty() && (batch.size() >= maxInputs || tokens + estimate > maxTokens)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                tokens = 0;
+            }
+            batch.add(text);
+            tokens += estimate;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Rough token count (about four characters per token for English text), rounded up
+     */
+    private static long estimateTokens(String text) {
+        return text.length() / 4 + 1;
+    }
+
+    /**
+     * Embedding cache counters, plus the API calls and (estimated) tokens and time its hits saved
+     */
+    public Map<String, Object> embeddingCacheStats() {
+        EmbeddingCache cache = embeddingCache();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        stats.put("provider", localModel != null ? "local" : "openai");
+        stats.put("model", embeddingModelName());
+        stats.put("modelId", embeddingModelId());
+        stats.put("dimension", embeddingDimension());
+        if (cache != null) {
+            stats.putAll(cache.stats());
+        }
+        long texts = embeddedTexts.sum();
+        long nanos = embeddingNanos.sum();
+        stats.put("embeddedTexts", texts);
+        stats.put("embeddingApiMillis", nanos / 1_000_000);
+        stats.put("cachedTexts", cachedTexts.sum());
+        stats.put("estimatedTokensSaved", cachedTokens.sum());
+        // Hits times the average API time per embedded text (batched requests amortize it)
+        stats.put("estimatedApiMillisSaved", texts == 0 ? 0 : cachedTexts.sum() * nanos / texts / 1_000_000);
+        return stats;
+    }
+
+    private EmbeddingCache embeddingCache() {
+        if (!embeddingCacheOpened) {
+            synchronized (this) {
+                if (!embeddingCacheOpened) {
+                    if (config.isEmbeddingCacheEnabled()) {
+                        try {
+                            embeddingCache = EmbeddingCache.open(Paths.get(config.getEmbeddingCacheFile()),
+                                    config.getEmbeddingCacheMemoryEntries());
+                            log.info("📦 Embedding cache opened at {} ({} embeddings)",
+                                    embeddingCache.path(), embeddingCache.size());
+                        } catch (IOException e) {
+                            log.warn("⚠️  Embedding cache unavailable, embeddings will not be cached: {}", e.getMessage());
+                        }
+                    }
+                    embeddingCacheOpened = true;
+                }
+            }
+        }
+        return embeddingCache;
+    }
+
+    private float[] cachedEmbedding(EmbeddingCache cache, byte[] key, String text) {
+        if (cache == null) {
+            return null;
+        }
+        try {
+            float[] vector = cache.get(key);
+            if (vector != null) {
+                cachedTexts.increment();
+                cachedTokens.add(estimateTokens(text));
+            }
+            return vector;
+        } catch (IOException e) {
+            log.warn("Could not read the embedding cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void cacheEmbedding(EmbeddingCache cache, byte[] key, float[] vector) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.put(key, vector);
+        } catch (IOException e) {
+            log.warn("Could not write to the embedding cache: {}", e.getMessage());
+        }
+    }
+
+    private void recordRequest(int texts, long startNanos) {
+        embeddedTexts.add(texts);
+        embeddingNanos.add(System.nanoTime() - startNanos);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (embeddingBatcher != null) {
+            embeddingBatcher.close();
+        }
+        embeddingPool.shutdownNow();
+        queryEmbeddingPool.shutdownNow();
+        if (localModel != null) {
+            localModel.close();
+        }
+        EmbeddingCache cache = embeddingCache;
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                log.warn("Could not close embedding cache: {}", e.getMessage());
             }
-            return defaultEmbedding;
         }
     }
 
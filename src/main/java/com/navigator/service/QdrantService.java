@@ -2,6 +2,12 @@ package com.navigator.service;
 
 import com.navigator.config.QdrantConfig;
 import com.navigator.model.Document;
+import com.navigator.model.response.SearchResponse;
+import com.navigator.storage.EmbeddingCache;
+import com.navigator.util.EmbeddingUtil;
+import com.navigator.util.HashUtil;
+import com.navigator.util.SingleFlight;
+import io.qdrant.client.ConditionFactory;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.ValueFactory;
 import io.qdrant.client.grpc.Collections.CollectionInfo;
@@ -10,6 +16,8 @@ import io.qdrant.client.grpc.Collections.Distance;
 import io.qdrant.client.grpc.Collections.VectorParams;
 import io.qdrant.client.grpc.Collections.VectorsConfig;
 import io.qdrant.client.grpc.JsonWithInt.Value;
+import io.qdrant.client.grpc.Points.BatchResult;
+import io.qdrant.client.grpc.Points.Filter;
 import io.qdrant.client.grpc.Points.PointId;
 import io.qdrant.client.grpc.Points.PointStruct;
 import io.qdrant.client.grpc.Points.ScoredPoint;
@@ -21,10 +29,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -38,6 +48,8 @@ public class QdrantService {
     private final QdrantClient qdrantClient;
     private final QdrantConfig qdrantConfig;
     private final OpenAIService openAIService;
+    // Searches in flight, by normalized query, parameters and API key hash
+    private final SingleFlight<String, List<SearchResponse>> searchFlights = new SingleFlight<>();
 
     public QdrantService(@Autowired(required = false) QdrantClient qdrantClient, 
                          QdrantConfig qdrantConfig, 
@@ -69,11 +81,14 @@ public class QdrantService {
             // Check if collection exists
             boolean exists = collectionExists(collectionName);
 
+            // Sized for the active embedding model
+            int vectorSize = openAIService.embeddingDimension();
+
             if (!exists) {
-                log.info("Creating Qdrant collection: {}", collectionName);
+                log.info("Creating Qdrant collection: {} ({} dimensions)", collectionName, vectorSize);
 
                 VectorParams vectorParams = VectorParams.newBuilder()
-                        .setSize(qdrantConfig.getVectorSize())
+                        .setSize(vectorSize)
                         .setDistance(Distance.Cosine)
                         .build();
 
@@ -88,6 +103,13 @@ public class QdrantService {
                 log.info("✅ Collection created: {}", collectionName);
             } else {
                 log.info("✅ Collection already exists: {}", collectionName);
+                VectorsConfig existing = qdrantClient.getCollectionInfoAsync(collectionName).get()
+                        .getConfig().getParams().getVectorsConfig();
+                if (existing.hasParams() && existing.getParams().getSize() != vectorSize) {
+                    log.warn("⚠️  Collection {} holds {}-dimensional vectors but {} produces {}; recreate it "
+                                    + "and re-upload the documents", collectionName, existing.getParams().getSize(),
+                            openAIService.embeddingModelName(), vectorSize);
+                }
             }
         } catch (Exception e) {
             log.error("Error initializing Qdrant collection: {}", e.getMessage());
@@ -111,7 +133,7 @@ public class QdrantService {
     }
 
     /**
-     * Upsert documents into Qdrant
+     * Upsert documents into Qdrant; throws when the points could not be written
      */
     public void upsertDocuments(List<Document> documents, String apiKey) {
         if (!isAvailable()) {
@@ -123,22 +145,27 @@ public class QdrantService {
             String collectionName = qdrantConfig.getCollectionName();
             List<PointStruct> points = new ArrayList<>();
 
+            // Generate missing embeddings in batched requests
+            List<Document> missing = documents.stream()
+                    .filter(doc -> doc.getEmbedding() == null || doc.getEmbedding().length == 0)
+                    .toList();
+            if (!missing.isEmpty()) {
+                List<float[]> embeddings = openAIService.embedAll(missing.stream().map(Document::getText).toList(), apiKey);
+                for (int i = 0; i < missing.size(); i++) {
+                    missing.get(i).setEmbedding(embeddings.get(i));
+                }
+            }
+
             for (int i = 0; i < documents.size(); i++) {
                 Document doc = documents.get(i);
-
-                // Generate embedding if not present
-                List<Float> embedding = doc.getEmbedding();
-                if (embedding == null || embedding.isEmpty()) {
-                    embedding = openAIService.createEmbedding(doc.getText(), apiKey);
-                    doc.setEmbedding(embedding);
-                }
+                float[] embedding = doc.getEmbedding();
 
                 // Create point
                 PointStruct point = PointStruct.newBuilder()
-                        .setId(PointId.newBuilder().setUuid(UUID.randomUUID().toString()).build())
+                        .setId(PointId.newBuilder().setUuid(pointId(doc, i)).build())
                         .setVectors(Vectors.newBuilder()
                                 .setVector(Vector.newBuilder()
-                                        .addAllData(embedding)
+                                        .addAllData(EmbeddingUtil.toList(embedding))
                                         .build())
                                 .build())
                         .putAllPayload(convertMetadataToPayload(doc.getMetadata()))
@@ -152,42 +179,97 @@ public class QdrantService {
             log.info("✅ Upserted {} documents to Qdrant", documents.size());
         } catch (Exception e) {
             log.error("Error upserting documents to Qdrant: {}", e.getMessage());
+            throw new RuntimeException("Error upserting documents to Qdrant: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Replace a source document's points: upsert the new version's chunks, then delete the points of
+     * every other version with the same filename. Chunks of the same version keep their point ids,
+     * so re-indexing an unchanged document overwrites rather than duplicates.
+     * A failed upsert throws before anything is deleted, so the previous version stays searchable.
+     */
+    public void replaceSource(String filename, String contentHash, List<Document> chunks, String apiKey) {
+        if (!isAvailable()) {
+            log.warn("Qdrant not available, cannot replace source {}", filename);
+            return;
+        }
+
+        for (Document chunk : chunks) {
+            Map<String, Object> metadata = chunk.getMetadata() == null ? new HashMap<>() : new HashMap<>(chunk.getMetadata());
+            metadata.put(RAGService.FILENAME, filename);
+            metadata.put(RAGService.CONTENT_HASH, contentHash);
+            chunk.setMetadata(metadata);
+        }
+        upsertDocuments(chunks, apiKey);
+        deletePoints(Filter.newBuilder()
+                .addMust(ConditionFactory.matchKeyword(RAGService.FILENAME, filename))
+                .addMustNot(ConditionFactory.matchKeyword(RAGService.CONTENT_HASH, contentHash))
+                .build(), filename);
+    }
+
+    /**
+     * Delete the points of a source document by payload filter (only the given version when contentHash is set)
+     */
+    public void deleteSource(String filename, String contentHash) {
+        if (!isAvailable()) {
+            log.warn("Qdrant not available, cannot delete source {}", filename);
+            return;
+        }
+
+        Filter.Builder filter = Filter.newBuilder()
+                .addMust(ConditionFactory.matchKeyword(RAGService.FILENAME, filename));
+        if (contentHash != null) {
+            filter.addMust(ConditionFactory.matchKeyword(RAGService.CONTENT_HASH, contentHash));
+        }
+        deletePoints(filter.build(), filename);
+    }
+
+    private void deletePoints(Filter filter, String filename) {
+        try {
+            qdrantClient.deleteAsync(qdrantConfig.getCollectionName(), filter).get();
+            log.info("✅ Deleted Qdrant points of source {}", filename);
+        } catch (Exception e) {
+            log.error("Error deleting source {} from Qdrant: {}", filename, e.getMessage());
+            throw new RuntimeException("Error deleting source from Qdrant: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stable id for chunks that carry a content hash (same version, same position -> same point), random otherwise
+     */
+    private static String pointId(Document doc, int position) {
+        Object contentHash = doc.getMetadata() == null ? null : doc.getMetadata().get(RAGService.CONTENT_HASH);
+        if (contentHash == null) {
+            return UUID.randomUUID().toString();
+        }
+        String key = doc.getMetadata().get(RAGService.FILENAME) + "/" + contentHash + "/" + position;
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
     /**
      * Search for similar vectors
      */
     public List<Document> searchTopK(String query, int k, String apiKey) {
+        return searchTopK(query, k, null, apiKey);
+    }
+
+    /**
+     * Search for similar vectors among points whose payload matches every filter (e.g. grade=3)
+     */
+    public List<Document> searchTopK(String query, int k, Map<String, String> filters, String apiKey) {
         if (!isAvailable()) {
             log.warn("Qdrant not available, returning empty results");
             return new ArrayList<>();
         }
 
         try {
-            // Generate query embedding
-            List<Float> queryEmbedding = openAIService.createEmbedding(query, apiKey);
-
-            // Search
-            String collectionName = qdrantConfig.getCollectionName();
-            SearchPoints searchPoints = SearchPoints.newBuilder()
-                    .setCollectionName(collectionName)
-                    .addAllVector(queryEmbedding)
-                    .setLimit(k)
-                    .setWithPayload(WithPayloadSelector.newBuilder().setEnable(true).build())
-                    .build();
-
-            List<ScoredPoint> results = qdrantClient.searchAsync(searchPoints).get();
-
             // Convert results to documents
             List<Document> documents = new ArrayList<>();
-            for (ScoredPoint result : results) {
-                Map<String, Value> payload = result.getPayloadMap();
-                String text = payload.containsKey("text") ? payload.get("text").getStringValue() : "";
-
+            for (SearchResponse result : search(query, k, null, filters, apiKey)) {
                 Document doc = new Document();
-                doc.setText(text);
-                doc.setMetadata(convertPayloadToMetadata(payload));
+                doc.setText(result.getText());
+                doc.setMetadata(result.getMetadata());
                 documents.add(doc);
             }
 
@@ -198,6 +280,70 @@ public class QdrantService {
         }
     }
 
+    /**
+     * Retrieval-only lookup returning the top-k points with their cosine scores and payload metadata.
+     * Points scoring below minScore (when given) are dropped by Qdrant.
+     */
+    public List<SearchResponse> search(String query, int k, Double minScore, Map<String, String> filters,
+                                       String apiKey) {
+        if (!isAvailable()) {
+            log.warn("Qdrant not available, returning empty results");
+            return new ArrayList<>();
+        }
+
+        // Identical searches in flight at the same time (a class asking one question) share one round trip
+        String key = String.join("\n", EmbeddingCache.normalize(query), String.valueOf(k), String.valueOf(minScore),
+                String.valueOf(filters == null ? null : new TreeMap<>(filters)), HashUtil.sha256Hex(apiKey));
+        return new ArrayList<>(searchFlights.execute(key, () -> searchPoints(query, k, minScore, filters, apiKey)));
+    }
+
+    private List<SearchResponse> searchPoints(String query, int k, Double minScore, Map<String, String> filters,
+                                              String apiKey) {
+        try {
+            // Generate query embedding (cached for repeated questions)
+            float[] queryEmbedding = openAIService.embedQuery(query, apiKey);
+
+            // Search
+            List<ScoredPoint> results = qdrantClient.searchAsync(buildSearch(queryEmbedding, k, minScore, filters)).get();
+            return toSearchResponses(results);
+        } catch (Exception e) {
+            log.error("Error searching Qdrant: {}", e.getMessage());
+            throw new RuntimeException("Error searching Qdrant: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Search several queries with one embedding call and one Qdrant batch request.
+     * Returns the top-k points per query, with their scores, in query order.
+     */
+    public List<List<SearchResponse>> searchBatch(List<String> queries, int k, Double minScore,
+                                                  Map<String, String> filters, String apiKey) {
+        List<List<SearchResponse>> responses = new ArrayList<>(queries.size());
+        if (!isAvailable()) {
+            log.warn("Qdrant not available, returning empty results");
+            queries.forEach(q -> responses.add(new ArrayList<>()));
+            return responses;
+        }
+
+        try {
+            List<float[]> embeddings = openAIService.embedQueries(queries, apiKey);
+            List<SearchPoints> searches = new ArrayList<>(embeddings.size());
+            for (float[] embedding : embeddings) {
+                searches.add(buildSearch(embedding, k, minScore, filters));
+            }
+
+            List<BatchResult> results = qdrantClient
+                    .searchBatchAsync(qdrantConfig.getCollectionName(), searches, null).get();
+            for (BatchResult result : results) {
+                responses.add(toSearchResponses(result.getResultList()));
+            }
+            return responses;
+        } catch (Exception e) {
+            log.error("Error batch searching Qdrant: {}", e.getMessage());
+            throw new RuntimeException("Error batch searching Qdrant: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Get collection info
      */
@@ -220,6 +366,43 @@ public class QdrantService {
         }
     }
 
+    private SearchPoints buildSearch(float[] queryEmbedding, int k, Double minScore, Map<String, String> filters) {
+        SearchPoints.Builder searchPoints = SearchPoints.newBuilder()
+                .setCollectionName(qdrantConfig.getCollectionName())
+                .addAllVector(EmbeddingUtil.toList(queryEmbedding))
+                .setLimit(k)
+                .setWithPayload(WithPayloadSelector.newBuilder().setEnable(true).build());
+        if (minScore != null) {
+            searchPoints.setScoreThreshold(minScore.floatValue());
+        }
+        if (filters != null && !filters.isEmpty()) {
+            searchPoints.setFilter(toFilter(filters));
+        }
+        return searchPoints.build();
+    }
+
+    /**
+     * Convert scored points to search results carrying the real similarity score
+     */
+    private List<SearchResponse> toSearchResponses(List<ScoredPoint> points) {
+        List<SearchResponse> responses = new ArrayList<>(points.size());
+        for (ScoredPoint point : points) {
+            Map<String, Value> payload = point.getPayloadMap();
+            String text = payload.containsKey("text") ? payload.get("text").getStringValue() : "";
+            responses.add(new SearchResponse(text, point.getScore(), convertPayloadToMetadata(payload)));
+        }
+        return responses;
+    }
+
+    /**
+     * Convert metadata filters to a Qdrant filter requiring every field to match
+     */
+    private Filter toFilter(Map<String, String> filters) {
+        Filter.Builder filter = Filter.newBuilder();
+        filters.forEach((field, value) -> filter.addMust(ConditionFactory.matchKeyword(field, value)));
+        return filter.build();
+    }
+
     /**
      * Convert Qdrant payload to metadata
      */
@@ -1,9 +1,36 @@
 package com.navigator.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.navigator.config.RAGConfig;
+import com.navigator.index.BinaryIndex;
+import com.navigator.index.Bm25Index;
+import com.navigator.index.ExactIndex;
+import com.navigator.index.HnswIndex;
+import com.navigator.index.IndexSegment;
+import com.navigator.index.Int8Index;
+import com.navigator.index.MetadataIndex;
+import com.navigator.index.QuantizedIndex;
+import com.navigator.index.RankFusion;
+import com.navigator.index.RecallEvaluator;
+import com.navigator.index.SearchHits;
+import com.navigator.index.SegmentedIndex;
+import com.navigator.index.ShardedScanner;
+import com.navigator.index.TunableIndex;
+import com.navigator.index.VectorIndex;
+import com.navigator.index.VectorMatrix;
 import com.navigator.model.Document;
+import com.navigator.model.response.SearchResponse;
+import com.navigator.model.response.SourceUpdateResponse;
+import com.navigator.storage.BlobStore;
+import com.navigator.storage.ChunkStore;
+import com.navigator.storage.SegmentFile;
+import com.navigator.storage.WriteAheadLog;
 import com.navigator.util.EmbeddingUtil;
+import com.navigator.util.HashUtil;
 import com.navigator.util.TextSplitter;
+import jakarta.annotation.PreDestroy;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
@@ -11,83 +38,409 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
  * RAG (Retrieval Augmented Generation) Service.
  * Manages document ingestion, embedding generation, and context-aware querying.
+ * Thread-safe: searches run concurrently under a shared read lock while uploads insert chunk by chunk.
+ * Vectors are kept in a {@link SegmentedIndex}: uploads only touch a small mutable segment, and sealed
+ * segments are merged by a background compactor, so no write ever rebuilds the whole index.
+ * Chunks carry the identity of their source document (filename + SHA-256 of its text), so a source can be
+ * replaced or deleted on its own: its chunks are tombstoned and skipped by search until a merge drops them.
  */
 @Slf4j
 @Service
 public class RAGService {
 
     private final OpenAIService openAIService;
+    private final RAGConfig ragConfig;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Chunk metadata identifying the source document; always bitmap-indexed so a source resolves to its chunks
+    public static final String FILENAME = "filename";
+    public static final String CONTENT_HASH = "content_hash";
+
+    // Legacy JSON state, imported into a segment when no segment exists yet
     @Value("${storage.rag-index-file:/tmp/rag_index.json}")
     private String ragIndexFile;
 
-    private List<Document> documents = new ArrayList<>();
+    @Value("${storage.rag-segment-file:/tmp/rag_index.seg}")
+    private String ragSegmentFile;
+
+    @Value("${storage.rag-wal-file:/tmp/rag_index.wal}")
+    private String ragWalFile;
+
+    // Mutations since the last checkpoint, opened on first use
+    private WriteAheadLog writeAheadLog;
+    // Checkpoint generation of the segment the in-memory state was loaded from or last saved to
+    private volatile long segmentGeneration;
+    // Write-ahead log generation and offset that segment covers (-1 when it does not record them)
+    private volatile long checkpointLogGeneration = -1;
+    private volatile long checkpointLogOffset = -1;
+
+    // Everything a search reads, published as one unit
+    private volatile IndexState state;
+    // Searches share the read lock; appending a chunk or publishing a new state takes the write lock briefly
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Checkpoints run one at a time; they take the write lock only to capture what they write
+    private final Object checkpointMonitor = new Object();
+
+    // Indexing, replacing and deleting the same source run one at a time. Sources share a fixed set of
+    // lock stripes, so names sent by clients never accumulate; two sources on one stripe just take turns.
+    private static final int SOURCE_LOCK_STRIPES = 64;
+    private final Object[] sourceLocks = new Object[SOURCE_LOCK_STRIPES];
+
+    // Ids of the sealed vector segments that have a file (<segment-file>.<id>) from a checkpoint
+    private final Set<Integer> persistedSegments = ConcurrentHashMap.newKeySet();
 
-    public RAGService(OpenAIService openAIService) {
+    // Dedicated pool for sharded exact scans
+    private final ShardedScanner scanner;
+
+    // Background merging of sealed segments, one merge at a time
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rag-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    // Background checkpoints once the write-ahead log is large, one at a time
+    private final ExecutorService checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rag-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong compactedChunks = new AtomicLong();
+    private final AtomicLong droppedChunks = new AtomicLong();
+    private volatile long lastCompactionMillis;
+
+    /**
+     * Chunk store, vector segments and the indexes over them. Adds extend the current state in place under
+     * the write lock; clear and load build a new state off to the side and publish it in one write, so a
+     * reader never sees chunks from one state and vectors from another. The version counts applied mutations.
+     */
+    private static final class IndexState {
+        // Chunk text and metadata on disk; the embedding of chunk i is in the segment holding ordinal i
+        final ChunkStore chunks;
+        final SegmentedIndex segments;
+        final MetadataIndex metadataIndex;
+        final Bm25Index bm25Index;
+        // Ordinals of deleted chunks; segments hold the same tombstones for their rows
+        final BitSet tombstones;
+        long version;
+
+        IndexState(ChunkStore chunks, SegmentedIndex segments, MetadataIndex metadataIndex, Bm25Index bm25Index,
+                   BitSet tombstones) {
+            this.chunks = chunks;
+            this.segments = segments;
+            this.metadataIndex = metadataIndex;
+            this.bm25Index = bm25Index;
+            this.tombstones = tombstones;
+        }
+
+        int liveCount() {
+            return chunks.size() - tombstones.cardinality();
+        }
+    }
+
+    public RAGService(OpenAIService openAIService, RAGConfig ragConfig) {
         this.openAIService = openAIService;
+        this.ragConfig = ragConfig;
+        this.scanner = new ShardedScanner(ragConfig.resolveSearchParallelism(), ragConfig.getSearchParallelThreshold());
+        Arrays.setAll(sourceLocks, stripe -> new Object());
+        try {
+            // Above any existing chunk file: the manifest on disk may reference one until the next checkpoint
+            this.state = emptyState(ChunkStore.inNewEpoch(Paths.get(ragConfig.getChunkFile()), BlobStore.Compression.of(
+                    ragConfig.getChunkCompression()), ragConfig.getChunkBlockBytes(), ragConfig.getChunkCacheBlocks()),
+                    newSegmentedIndex(0));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the RAG chunk files " + ragConfig.getChunkFile(), e);
+        }
+
+        EmbeddingUtil.setSimdEnabled(ragConfig.isSimdEnabled());
+        if (EmbeddingUtil.isSimdEnabled()) {
+            log.info("Similarity kernels: SIMD ({} float lanes)", EmbeddingUtil.simdLanes());
+        } else {
+            log.info("Similarity kernels: scalar (SIMD {})",
+                    EmbeddingUtil.isSimdAvailable() ? "disabled" : "unavailable, start with --add-modules jdk.incubator.vector");
+        }
     }
 
     /**
-     * Add a document to the RAG system with chunking
+     * Add a document to the RAG system with chunking.
+     * Chunks are appended to the write-ahead log, so the cost is proportional to the document,
+     * not to the index; segment files are only written when the log is checkpointed.
+     * Embeddings are computed in batches without holding any lock; each chunk is then inserted under the write lock,
+     * which also assigns its ordinal (chunk_index), so concurrent uploads never collide.
+     * Returns the number of chunks added.
      */
-    public void addDocument(String text, Map<String, Object> metadata, String apiKey) {
+    public int addDocument(String text, Map<String, Object> metadata, String apiKey) {
         // Split text into chunks
         TextSplitter splitter = new TextSplitter(1000, 200);
-        List<String> chunks = splitter.splitText(text);
+        List<String> textChunks = splitter.splitText(text);
+
+        log.info("Adding {} chunks to RAG system", textChunks.size());
 
-        log.info("Adding {} chunks to RAG system", chunks.size());
+        // Embed all chunks up front in batched, concurrent requests; nothing is logged if that fails
+        List<float[]> embeddings = openAIService.embedAll(textChunks, apiKey);
 
-        for (String chunk : chunks) {
-            // Generate embedding for each chunk
-            List<Float> embedding = openAIService.createEmbedding(chunk, apiKey);
+        try {
+            WriteAheadLog wal = writeAheadLog();
+            for (int i = 0; i < textChunks.size(); i++) {
+                // Store unit-length vectors so that search is a plain dot product
+                float[] vector = EmbeddingUtil.normalize(embeddings.get(i));
 
-            // Create document with metadata
-            Map<String, Object> chunkMetadata = new HashMap<>(metadata);
-            chunkMetadata.put("chunk_index", documents.size());
+                lock.writeLock().lock();
+                try {
+                    // Create document with metadata
+                    Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+                    chunkMetadata.put("chunk_index", state.chunks.size());
+                    Document document = new Document(textChunks.get(i), chunkMetadata);
 
-            Document doc = new Document(chunk, embedding, chunkMetadata);
-            documents.add(doc);
+                    wal.appendAdd(document, vector);
+                    applyAdd(document, vector);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // Outside the lock: one sync covers every record appended so far, including other uploads'
+            wal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the RAG write-ahead log", e);
         }
+        checkpointIfNeeded();
+        return textChunks.size();
     }
 
     /**
-     * Query the RAG system and return context-aware response
+     * Index a source document, replacing any earlier version with the same filename.
+     * An upload whose text hashes to the version already indexed is skipped, so re-uploading a file costs
+     * no embeddings. Otherwise the new chunks are added before the old ones are tombstoned, so searches
+     * never see the source missing.
      */
-    public String query(String question, String apiKey) {
-        if (documents.isEmpty()) {
-            return "No documents have been added to the RAG system yet.";
+    public SourceUpdateResponse indexSource(String filename, String text, Map<String, Object> metadata,
+                                            String apiKey) {
+        String contentHash = HashUtil.sha256Hex(text);
+        synchronized (sourceLock(filename)) {
+            IndexState before;
+            BitSet previous;
+            BitSet unchanged;
+            lock.readLock().lock();
+            try {
+                before = state;
+                previous = liveChunks(before, filename, null);
+                unchanged = liveChunks(before, filename, contentHash);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            int added = 0;
+            if (unchanged.isEmpty()) {
+                Map<String, Object> sourceMetadata = new HashMap<>(metadata);
+                sourceMetadata.put(FILENAME, filename);
+                sourceMetadata.put(CONTENT_HASH, contentHash);
+                added = addDocument(text, sourceMetadata, apiKey);
+            }
+            previous.andNot(unchanged);
+            int removed = deleteChunks(before, previous);
+
+            String status = removed > 0 ? "replaced" : added > 0 ? "added" : "unchanged";
+            log.info("📚 Source {} {} ({} chunks added, {} removed)", filename, status, added, removed);
+            return new SourceUpdateResponse(filename, contentHash, status, added, removed);
+        }
+    }
+
+    /**
+     * Tombstone every chunk of a source; with a contentHash only that version of it.
+     * The chunks disappear from search immediately; their vectors are dropped when their segment is merged.
+     */
+    public SourceUpdateResponse deleteSource(String filename, String contentHash) {
+        synchronized (sourceLock(filename)) {
+            IndexState current;
+            BitSet chunks;
+            lock.readLock().lock();
+            try {
+                current = state;
+                chunks = liveChunks(current, filename, contentHash);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            int removed = deleteChunks(current, chunks);
+            log.info("📚 Source {} deleted ({} chunks)", filename, removed);
+            return new SourceUpdateResponse(filename, contentHash, removed > 0 ? "deleted" : "not_found", 0, removed);
+        }
+    }
+
+    /**
+     * Indexed sources with their content hash and live chunk count
+     */
+    public List<Map<String, Object>> listSources() {
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            List<Map<String, Object>> sources = new ArrayList<>();
+            for (String filename : new TreeSet<>(current.metadataIndex.values(FILENAME))) {
+                BitSet chunks = liveChunks(current, filename, null);
+                if (chunks.isEmpty()) {
+                    continue;
+                }
+                Map<String, Object> metadata = current.chunks.get(chunks.nextSetBit(0)).getMetadata();
+                Map<String, Object> source = new LinkedHashMap<>();
+                source.put(FILENAME, filename);
+                source.put(CONTENT_HASH, metadata.get(CONTENT_HASH));
+                source.put("chunks", chunks.cardinality());
+                source.put("upload_time", metadata.getOrDefault("upload_time", metadata.get("loaded_at")));
+                sources.add(source);
+            }
+            return sources;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies of the live chunks of one version of a source, in chunk order, without embeddings.
+     * Used to mirror a source into Qdrant; re-embedding them is served by the embedding cache.
+     */
+    public List<Document> sourceChunks(String filename, String contentHash) {
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            List<Document> documents = new ArrayList<>();
+            liveChunks(current, filename, contentHash).stream().forEach(ordinal -> {
+                Document chunk = current.chunks.get(ordinal);
+                documents.add(new Document(chunk.getText(), new HashMap<>(chunk.getMetadata())));
+            });
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Object sourceLock(String filename) {
+        return sourceLocks[Math.floorMod(filename.hashCode(), SOURCE_LOCK_STRIPES)];
+    }
+
+    /**
+     * Live chunks of a source (all versions when contentHash is null); the caller holds the lock
+     */
+    private static BitSet liveChunks(IndexState current, String filename, String contentHash) {
+        BitSet chunks = current.metadataIndex.match(contentHash == null
+                ? Map.of(FILENAME, filename)
+                : Map.of(FILENAME, filename, CONTENT_HASH, contentHash));
+        chunks.andNot(current.tombstones);
+        return chunks;
+    }
+
+    /**
+     * Log and apply the deletion of the given chunks, unless the state they were resolved against has been
+     * replaced (cleared or reloaded) meanwhile. Returns the number of chunks tombstoned.
+     */
+    private int deleteChunks(IndexState resolvedAgainst, BitSet chunks) {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        try {
+            WriteAheadLog wal = writeAheadLog();
+            int[] ordinals;
+            lock.writeLock().lock();
+            try {
+                if (state != resolvedAgainst) {
+                    return 0;
+                }
+                BitSet live = (BitSet) chunks.clone();
+                live.andNot(state.tombstones);
+                ordinals = live.stream().toArray();
+                if (ordinals.length == 0) {
+                    return 0;
+                }
+                wal.appendDelete(ordinals);
+                applyDelete(ordinals);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            wal.sync();
+            return ordinals.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the RAG write-ahead log", e);
+        }
+    }
+
+    /**
+     * Tombstone chunks in the current state; the caller holds the write lock
+     */
+    private void applyDelete(int[] ordinals) {
+        IndexState current = state;
+        for (int ordinal : ordinals) {
+            if (ordinal < current.chunks.size() && !current.tombstones.get(ordinal)) {
+                current.tombstones.set(ordinal);
+                current.segments.delete(ordinal);
+                current.bm25Index.delete(ordinal, current.chunks.get(ordinal).getText());
+            }
+        }
+        current.version++;
+        scheduleCompaction();
+    }
+
+    /**
+     * Insert one chunk into the current state; the caller holds the write lock
+     */
+    private void applyAdd(Document document, float[] vector) {
+        IndexState current = state;
+        int ordinal = current.chunks.add(document);
+        boolean sealed = current.segments.add(ordinal, vector);
+        current.metadataIndex.add(ordinal, document.getMetadata());
+        current.bm25Index.add(ordinal, document.getText());
+        current.version++;
+        if (sealed) {
+            scheduleCompaction();
         }
+    }
 
-        // Get embedding for the question
-        List<Float> questionEmbedding = openAIService.createEmbedding(question, apiKey);
+    /**
+     * Query the RAG system and return context-aware response
+     */
+    public String query(String question, String apiKey) {
+        return query(question, null, null, null, apiKey);
+    }
 
-        // Find most similar documents
-        List<DocumentSimilarity> similarities = new ArrayList<>();
-        for (int i = 0; i < documents.size(); i++) {
-            Document doc = documents.get(i);
-            double similarity = EmbeddingUtil.cosineSimilarity(questionEmbedding, doc.getEmbedding());
-            similarities.add(new DocumentSimilarity(i, similarity));
+    /**
+     * Query the RAG system using the topK most similar chunks scoring at least minScore.
+     * Null parameters fall back to rag.search.top-k / rag.search.min-score.
+     * Filters (metadata field -> value, e.g. grade=3) restrict the chunks that are searched.
+     */
+    public String query(String question, Integer topK, Double minScore, Map<String, String> filters,
+                        String apiKey) {
+        if (getDocumentCount() == 0) {
+            return "No documents have been added to the RAG system yet.";
         }
 
-        // Sort by similarity and get top 3
-        similarities.sort((a, b) -> Double.compare(b.similarity, a.similarity));
-        List<Document> topDocs = similarities.stream()
-                .limit(3)
-                .map(s -> documents.get(s.index))
-                .collect(Collectors.toList());
+        // Find the most similar chunks
+        List<SearchResponse> topDocs = search(question, topK, minScore, filters, apiKey);
 
         // Create context from top documents
         String context = topDocs.stream()
-                .map(Document::getText)
+                .map(SearchResponse::getText)
                 .collect(Collectors.joining("\n\n"));
 
         // Generate response using OpenAI with context
@@ -103,79 +456,950 @@ public class RAGService {
     }
 
     /**
-     * Get the number of documents in the system
+     * Retrieval-only lookup: the topK chunks scoring at least minScore, with their scores and metadata,
+     * straight from the in-memory index (no LLM call). Null parameters fall back to the rag.search defaults.
+     * Scores are cosine similarities, or reciprocal-rank-fusion scores in hybrid mode.
+     */
+    public List<SearchResponse> search(String query, Integer topK, Double minScore, Map<String, String> filters,
+                                       String apiKey) {
+        if (getDocumentCount() == 0) {
+            return new ArrayList<>();
+        }
+
+        int k = topK != null ? topK : ragConfig.getSearchTopK();
+        float threshold = (float) (minScore != null ? minScore : ragConfig.getSearchMinScore());
+        state.metadataIndex.validate(filters);
+
+        // Get (normalized) embedding for the query
+        float[] queryEmbedding = EmbeddingUtil.normalize(openAIService.embedQuery(query, apiKey));
+
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            int[] filter = current.metadataIndex.matchOrdinals(filters);
+            return toSearchResponses(current, retrieve(current, query, queryEmbedding, k, threshold, filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search several queries at once: one embedding call for the whole batch and one shared scan
+     * of the chunk matrix (query matrix x chunk matrix) instead of a scan per query.
+     * Returns the top-k chunks per query, in query order.
+     */
+    public List<List<SearchResponse>> searchBatch(List<String> queries, Integer topK, Double minScore,
+                                                  Map<String, String> filters, String apiKey) {
+        List<List<SearchResponse>> results = new ArrayList<>(queries.size());
+        if (getDocumentCount() == 0 || queries.isEmpty()) {
+            queries.forEach(q -> results.add(new ArrayList<>()));
+            return results;
+        }
+
+        int k = topK != null ? topK : ragConfig.getSearchTopK();
+        float threshold = (float) (minScore != null ? minScore : ragConfig.getSearchMinScore());
+        state.metadataIndex.validate(filters);
+
+        List<float[]> embeddings = openAIService.embedQueries(queries, apiKey);
+        float[][] queryMatrix = new float[embeddings.size()][];
+        for (int q = 0; q < queryMatrix.length; q++) {
+            queryMatrix[q] = EmbeddingUtil.normalize(embeddings.get(q));
+        }
+
+        int candidates = ragConfig.isHybridSearch() ? Math.max(k, ragConfig.getHybridCandidates()) : k;
+        lock.readLock().lock();
+        try {
+            IndexState current = state;
+            int[] filter = current.metadataIndex.matchOrdinals(filters);
+            SearchHits[] vectorHits = current.segments.searchOrdinalsBatch(queryMatrix, candidates, threshold, filter);
+            // BM25 tests membership per posting, so it gets the match as a bitmap
+            BitSet keywordFilter = ragConfig.isHybridSearch() ? ShardedScanner.bitmap(filter) : null;
+            for (int q = 0; q < queries.size(); q++) {
+                SearchHits hits = ragConfig.isHybridSearch()
+                        ? RankFusion.reciprocalRank(k, ragConfig.getHybridRrfK(), vectorHits[q],
+                                current.bm25Index.search(queries.get(q), candidates, keywordFilter))
+                        : vectorHits[q];
+                results.add(toSearchResponses(current, hits));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    private List<SearchResponse> toSearchResponses(IndexState current, SearchHits hits) {
+        List<SearchResponse> responses = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            Document doc = current.chunks.get(hits.ordinal(i));
+            responses.add(new SearchResponse(doc.getText(), hits.score(i), doc.getMetadata()));
+        }
+        return responses;
+    }
+
+    /**
+     * Top-k chunk ordinals for a question. In hybrid mode the vector ranking (cut at minScore) is fused
+     * with the BM25 ranking, so chunks sharing the question's exact vocabulary surface even when their
+     * embedding similarity is lower.
+     */
+    private SearchHits retrieve(IndexState current, String question, float[] questionEmbedding, int k, float minScore,
+                                int[] filter) {
+        if (!ragConfig.isHybridSearch()) {
+            return current.segments.searchOrdinals(questionEmbedding, k, minScore, filter);
+        }
+        int candidates = Math.max(k, ragConfig.getHybridCandidates());
+        SearchHits vectorHits = current.segments.searchOrdinals(questionEmbedding, candidates, minScore, filter);
+        SearchHits keywordHits = current.bm25Index.search(question, candidates, ShardedScanner.bitmap(filter));
+        return RankFusion.reciprocalRank(k, ragConfig.getHybridRrfK(), vectorHits, keywordHits);
+    }
+
+    /**
+     * Get the number of documents in the system (live chunks, deleted ones excluded)
      */
     public int getDocumentCount() {
-        return documents.size();
+        lock.readLock().lock();
+        try {
+            return state.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
-     * Save RAG state to file
+     * Index internals for monitoring: sizes, memory footprint and scan metrics
      */
-    public void saveState() {
+    public Map<String, Object> getIndexStats() {
+        lock.readLock().lock();
         try {
-            File file = new File(ragIndexFile);
-            file.getParentFile().mkdirs();
+            IndexState current = state;
+            List<IndexSegment> segments = current.segments.segments();
+            int dimension = 0;
+            long vectorBytes = 0;
+            long floatBytes = 0;
+            long graphBytes = 0;
+            long codeBytes = 0;
+            boolean offHeap = false;
+            boolean mapped = false;
+            List<Map<String, Object>> segmentStats = new ArrayList<>();
+            for (IndexSegment segment : segments) {
+                VectorMatrix vectors = segment.vectors();
+                dimension = Math.max(dimension, vectors.dimension());
+                vectorBytes += vectors.memoryBytes();
+                floatBytes += (long) vectors.size() * vectors.dimension() * Float.BYTES;
+                offHeap |= vectors.isOffHeap();
+                mapped |= vectors.isMapped();
+                if (segment.index() instanceof HnswIndex hnsw) {
+                    graphBytes += hnsw.memoryBytes();
+                }
+                if (segment.index() instanceof QuantizedIndex quantized) {
+                    codeBytes += quantized.codeMemoryBytes();
+                }
 
-            Map<String, Object> state = new HashMap<>();
-            state.put("documents", documents);
+                Map<String, Object> segmentStat = new LinkedHashMap<>();
+                segmentStat.put("id", segment.id());
+                segmentStat.put("chunks", segment.size());
+                segmentStat.put("deleted", segment.deletedCount());
+                segmentStat.put("sealed", segment.isSealed());
+                segmentStat.put("persisted", persistedSegments.contains(segment.id()));
+                segmentStat.put("mapped", vectors.isMapped());
+                segmentStats.add(segmentStat);
+            }
 
-            objectMapper.writeValue(file, state);
-            log.info("📚 RAG state saved to {}", ragIndexFile);
-        } catch (IOException e) {
-            log.error("Error saving RAG state: {}", e.getMessage());
+            VectorIndex index = current.segments.mutableSegment().index();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("indexType", index.type());
+            stats.put("chunks", current.liveCount());
+            stats.put("deletedChunks", current.tombstones.cardinality());
+            stats.put("dimension", dimension);
+            stats.put("vectorMemoryBytes", vectorBytes);
+            stats.put("vectorsOffHeap", offHeap);
+            stats.put("vectorsMapped", mapped);
+            stats.put("chunkStore", current.chunks.stats());
+            if (index instanceof HnswIndex) {
+                stats.put("graphMemoryBytes", graphBytes);
+            }
+            if (index instanceof QuantizedIndex quantized) {
+                stats.put("codeMemoryBytes", codeBytes);
+                stats.put("compressionRatio", codeBytes == 0 ? 0.0 : (double) floatBytes / codeBytes);
+                stats.put("oversample", quantized.tuningValue());
+            }
+            stats.put("segments", segmentStats);
+            stats.put("compaction", Map.of(
+                    "merges", compactions.get(),
+                    "mergedChunks", compactedChunks.get(),
+                    "droppedChunks", droppedChunks.get(),
+                    "lastMergeMillis", lastCompactionMillis,
+                    "scheduled", compactionScheduled.get()));
+            stats.put("searchMode", ragConfig.isHybridSearch() ? "hybrid" : "vector");
+            stats.put("bm25Terms", current.bm25Index.termCount());
+            stats.put("bm25MemoryBytes", current.bm25Index.memoryBytes());
+            stats.put("metadata", current.metadataIndex.cardinalities());
+            stats.put("metadataMemoryBytes", current.metadataIndex.memoryBytes());
+            stats.put("stateVersion", current.version);
+            stats.put("segmentGeneration", segmentGeneration);
+            WriteAheadLog wal = writeAheadLog;
+            if (wal != null) {
+                stats.put("walRecords", wal.records());
+                stats.put("walBytes", wal.sizeBytes());
+            }
+            stats.put("simd", EmbeddingUtil.isSimdEnabled());
+            stats.put("scan", scanner.stats());
+            stats.put("embeddingCache", openAIService.embeddingCacheStats());
+            stats.put("queryCache", openAIService.queryCacheStats());
+            stats.put("modelClients", openAIService.clientStats());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
     /**
-     * Load RAG state from file
+     * Compare the approximate index's recall@k against the exact scan, sampling live stored chunks as held-out
+     * queries.
+     * tuningValues are efSearch values for hnsw and oversample factors for quantized indexes;
+     * without them the index's default sweep is run. Measured on the largest segment.
      */
-    public boolean loadState() {
+    public Map<String, Object> evaluateRecall(int k, int samples, int... tuningValues) {
+        lock.readLock().lock();
         try {
-            File file = new File(ragIndexFile);
-            if (file.exists()) {
-                Map<String, Object> state = objectMapper.readValue(file,
-                        new com.fasterxml.jackson.core.type.TypeReference<Map<String, Object>>() {
-                        });
+            IndexSegment largest = state.segments.segments().stream()
+                    .max(Comparator.comparingInt(IndexSegment::size))
+                    .orElseThrow();
+            VectorIndex index = largest.index();
+            if (!(index instanceof TunableIndex tunable)) {
+                return Map.of(
+                        "indexType", index.type(),
+                        "message", "Recall evaluation requires an approximate index; the exact index always has recall 1.0");
+            }
+            if (largest.liveCount() == 0) {
+                return Map.of("indexType", index.type(), "message", "No documents have been added to the RAG system yet.");
+            }
+            Map<String, Object> result = new LinkedHashMap<>(new RecallEvaluator(largest.vectors(), tunable,
+                    largest.deletedRows()).evaluate(k, samples, tuningValues));
+            result.put("segment", largest.id());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> docMaps = (List<Map<String, Object>>) state.get("documents");
+    /**
+     * Checkpoint: seal the mutable segment, write a file for every sealed segment that does not have one
+     * yet (files are immutable, so earlier segments are not rewritten), then the manifest (chunk references,
+     * segment list, keyword and metadata indexes) to a temporary file atomically renamed over the previous
+     * one, then drop the checkpointed records from the write-ahead log.
+     * The write lock is held only to seal and capture a snapshot (sealed segments, copies of the chunk
+     * references and tombstones, read-only views of the keyword and metadata indexes) and the log position
+     * it matches; the files are written from that snapshot while searches and uploads continue. The manifest
+     * records the log position, so a crash before the log is trimmed is repaired at the next replay.
+     */
+    public void saveState() {
+        synchronized (checkpointMonitor) {
+            IndexState current;
+            List<IndexSegment> sealed;
+            int nextSegmentId;
+            BitSet tombstones;
+            SegmentFile.SectionWriter chunkRefs;
+            Bm25Index bm25;
+            MetadataIndex metadata;
+            int chunkCount;
+            long generation;
+            long logGeneration;
+            long logOffset;
+            WriteAheadLog wal = writeAheadLog();
+            lock.writeLock().lock();
+            try {
+                current = state;
+                current.segments.seal();
+                sealed = current.segments.sealedSegments();
+                nextSegmentId = current.segments.nextSegmentId();
+                tombstones = (BitSet) current.tombstones.clone();
+                chunkRefs = current.chunks.snapshotRefs();
+                bm25 = current.bm25Index.snapshot();
+                metadata = current.metadataIndex.snapshot();
+                chunkCount = current.chunks.size();
+                // Every append takes the write lock, so the log holds exactly the snapshot's records up to here
+                logGeneration = wal.generation();
+                logOffset = wal.sizeBytes();
+                generation = Math.max(segmentGeneration, logGeneration) + 1;
+            } finally {
+                lock.writeLock().unlock();
+            }
 
-                documents = new ArrayList<>();
-                for (Map<String, Object> docMap : docMaps) {
-                    Document doc = objectMapper.convertValue(docMap, Document.class);
-                    documents.add(doc);
+            try {
+                int dimension = 0;
+                for (IndexSegment segment : sealed) {
+                    if (!persistedSegments.contains(segment.id())) {
+                        writeVectorSegment(segment, generation);
+                        persistedSegments.add(segment.id());
+                    }
+                    dimension = Math.max(dimension, segment.vectors().dimension());
                 }
 
-                log.info("📚 RAG state loaded from {}. Documents: {}", ragIndexFile, documents.size());
-                return true;
-            } else {
-                log.info("📚 No RAG state file found at {}", ragIndexFile);
-                return false;
+                Map<SegmentFile.Section, SegmentFile.SectionWriter> sections = new EnumMap<>(SegmentFile.Section.class);
+                sections.put(SegmentFile.Section.CHUNK_REFS, chunkRefs);
+                sections.put(SegmentFile.Section.SEGMENTS, out -> writeSegmentList(out, nextSegmentId, sealed));
+                sections.put(SegmentFile.Section.TOMBSTONES, out -> writeTombstones(out, tombstones));
+                sections.put(SegmentFile.Section.BM25, bm25::writeTo);
+                sections.put(SegmentFile.Section.METADATA, metadata::writeTo);
+                sections.put(SegmentFile.Section.MODEL, out -> out.writeUTF(openAIService.embeddingModelId()));
+                sections.put(SegmentFile.Section.LOG_POSITION, out -> {
+                    out.writeLong(logGeneration);
+                    out.writeLong(logOffset);
+                });
+                SegmentFile.write(Paths.get(ragSegmentFile), null, dimension, chunkCount, sections, generation);
+                segmentGeneration = generation;
+                checkpointLogGeneration = logGeneration;
+                checkpointLogOffset = logOffset;
+                wal.truncateHead(logOffset, generation);
+
+                lock.readLock().lock();
+                try {
+                    // After a clear the files of the new state are not in this manifest; the next checkpoint cleans up
+                    if (state == current) {
+                        current.chunks.deleteOtherEpochs();
+                        deleteUnreferencedSegments(sealed);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                log.info("📚 RAG state saved to {} ({} chunks in {} segments, generation {})", ragSegmentFile,
+                        chunkCount, sealed.size(), generation);
+            } catch (IOException e) {
+                // Also when the state was cleared while writing: its chunk file is closed, the next checkpoint retries
+                log.error("Error saving RAG state: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writeVectorSegment(IndexSegment segment, long generation) throws IOException {
+        Map<SegmentFile.Section, SegmentFile.SectionWriter> sections = new EnumMap<>(SegmentFile.Section.class);
+        sections.put(SegmentFile.Section.ORDINALS, out -> {
+            out.writeInt(segment.size());
+            for (int row = 0; row < segment.size(); row++) {
+                out.writeInt(segment.ordinal(row));
+            }
+        });
+        if (segment.index() instanceof HnswIndex hnsw) {
+            sections.put(SegmentFile.Section.HNSW, hnsw::writeTo);
+        }
+        VectorMatrix vectors = segment.vectors();
+        SegmentFile.write(segmentFile(segment.id()), vectors, vectors.dimension(), segment.size(), sections,
+                generation);
+    }
+
+    private static void writeSegmentList(DataOutput out, int nextSegmentId, List<IndexSegment> sealed)
+            throws IOException {
+        out.writeInt(nextSegmentId);
+        out.writeInt(sealed.size());
+        for (IndexSegment segment : sealed) {
+            out.writeInt(segment.id());
+            out.writeInt(segment.size());
+        }
+    }
+
+    private static void writeTombstones(DataOutput out, BitSet tombstones) throws IOException {
+        long[] words = tombstones.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readTombstones(DataInput section) throws IOException {
+        if (section == null) {
+            return new BitSet();
+        }
+        long[] words = new long[section.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = section.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Delete segment files that the manifest just written no longer lists (merged away or cleared)
+     */
+    private void deleteUnreferencedSegments(List<IndexSegment> listed) throws IOException {
+        Set<Integer> ids = new HashSet<>();
+        listed.forEach(segment -> ids.add(segment.id()));
+        persistedSegments.retainAll(ids);
+
+        Path base = Paths.get(ragSegmentFile).toAbsolutePath();
+        Path directory = base.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String prefix = base.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d{1,9}") && !ids.contains(Integer.parseInt(suffix))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private Path segmentFile(int id) {
+        Path base = Paths.get(ragSegmentFile);
+        return base.resolveSibling(base.getFileName() + "." + id);
+    }
+
+    /**
+     * Schedule a background checkpoint once the write-ahead log has grown past rag.wal.checkpoint-bytes;
+     * the upload that crossed the threshold does not wait for it
+     */
+    public void checkpointIfNeeded() {
+        if (writeAheadLog().sizeBytes() < ragConfig.getWalCheckpointBytes()) {
+            return;
+        }
+        if (checkpointScheduled.compareAndSet(false, true)) {
+            checkpointer.execute(this::checkpoint);
+        }
+    }
+
+    private void checkpoint() {
+        checkpointScheduled.set(false);
+        try {
+            // Re-check: an explicit save may have checkpointed since this was scheduled
+            long logBytes = writeAheadLog().sizeBytes();
+            if (logBytes >= ragConfig.getWalCheckpointBytes()) {
+                log.info("📚 Write-ahead log reached {} KB, checkpointing", logBytes / 1024);
+                saveState();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error checkpointing RAG state: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Re-apply the mutations logged since the last checkpoint on top of the loaded segment.
+     * Call after {@link #loadState()}; returns the number of records replayed. A log newer than the loaded
+     * segment (whose segment failed to load) is moved aside instead, so the knowledge base is reloaded.
+     */
+    public int replayWriteAheadLog() {
+        lock.writeLock().lock();
+        try {
+            WriteAheadLog wal = writeAheadLog();
+            if (wal.generation() < segmentGeneration && wal.generation() == checkpointLogGeneration) {
+                // The checkpoint was written but the log not trimmed: drop the records it holds, replay the rest
+                log.info("📚 Write-ahead log generation {} is in segment generation {} up to offset {}, trimming",
+                        wal.generation(), segmentGeneration, checkpointLogOffset);
+                wal.truncateHead(checkpointLogOffset, segmentGeneration);
             }
+            if (wal.generation() < segmentGeneration) {
+                log.info("📚 Write-ahead log generation {} is already in segment generation {}, discarding",
+                        wal.generation(), segmentGeneration);
+                wal.reset(segmentGeneration);
+                return 0;
+            }
+            if (wal.records() == 0) {
+                return 0;
+            }
+            if (wal.generation() > segmentGeneration) {
+                // The segment of that generation did not load: the records would land on the wrong base state
+                long walGeneration = wal.generation();
+                Path rejected = wal.setAside(segmentGeneration);
+                log.warn("⚠️  Write-ahead log generation {} is newer than segment generation {}; not replaying it. "
+                        + "Its records were moved to {}", walGeneration, segmentGeneration, rejected);
+                return 0;
+            }
+            String model = openAIService.embeddingModelId();
+            if (wal.loggedModel() != null && !wal.loggedModel().equals(model)) {
+                // Embeddings of another model (or model file), logged before the embedding model was switched
+                String loggedModel = wal.loggedModel();
+                Path rejected = wal.setAside(segmentGeneration);
+                log.warn("⚠️  Write-ahead log holds embeddings of {} but the active model is {}; not replaying it. "
+                        + "Its records were moved to {}", loggedModel, model, rejected);
+                return 0;
+            }
+            // A version 1 log names no model: at least the vector size must match
+            int dimension = openAIService.embeddingDimension();
+            Set<Integer> logged = wal.embeddingDimensions();
+            if (logged.stream().anyMatch(d -> d != dimension)) {
+                // Embeddings of another model, logged before the embedding provider was switched
+                Path rejected = wal.setAside(segmentGeneration);
+                log.warn("⚠️  Write-ahead log holds {}-dimensional embeddings but {} produces {}; not replaying it. "
+                        + "Its records were moved to {}", logged, openAIService.embeddingModelName(), dimension,
+                        rejected);
+                return 0;
+            }
+
+            long start = System.currentTimeMillis();
+            int replayed = wal.replay(new WriteAheadLog.Replayer() {
+                @Override
+                public void add(Document chunk, float[] embedding) {
+                    applyAdd(chunk, embedding);
+                }
+
+                @Override
+                public void clear() {
+                    publish(emptyState(state.chunks.cleared(), state.segments.cleared()));
+                }
+
+                @Override
+                public void delete(int[] ordinals) {
+                    applyDelete(ordinals);
+                }
+            });
+            log.info("📚 Replayed {} write-ahead log records from {} in {} ms. Chunks: {}",
+                    replayed, ragWalFile, System.currentTimeMillis() - start, state.chunks.size());
+            return replayed;
         } catch (IOException e) {
+            // Not truncated: the log stays as it is for the next start or for the operator
+            throw new UncheckedIOException("Could not replay the RAG write-ahead log " + ragWalFile, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized WriteAheadLog writeAheadLog() {
+        if (writeAheadLog == null) {
+            try {
+                writeAheadLog = WriteAheadLog.open(Paths.get(ragWalFile), ragConfig.isWalFsync(),
+                        openAIService.embeddingModelId());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the RAG write-ahead log " + ragWalFile, e);
+            }
+        }
+        return writeAheadLog;
+    }
+
+    /**
+     * Load RAG state.
+     * Segment files are memory-mapped and searched in place: vectors stay in the page cache, chunk text in
+     * the chunk file, and only the index structures are read onto the heap. A legacy JSON state is imported once.
+     * The new state is built without blocking searches and published in one step.
+     */
+    public boolean loadState() {
+        try {
+            Path segmentPath = Paths.get(ragSegmentFile);
+            if (Files.exists(segmentPath)) {
+                loadSegment(segmentPath);
+                return true;
+            }
+
+            File legacyFile = new File(ragIndexFile);
+            if (legacyFile.exists()) {
+                loadLegacyJson(legacyFile);
+                saveState();
+                log.info("📚 Imported legacy RAG state {} into segment {}", ragIndexFile, ragSegmentFile);
+                return true;
+            }
+
+            log.info("📚 No RAG state file found at {}", ragSegmentFile);
+            return false;
+        } catch (IOException | IllegalArgumentException e) {
             log.error("Error loading RAG state: {}", e.getMessage());
             return false;
         }
     }
 
+    private void loadSegment(Path segmentPath) throws IOException {
+        long start = System.currentTimeMillis();
+        SegmentFile manifest = SegmentFile.open(segmentPath);
+        DataInput model = manifest.section(SegmentFile.Section.MODEL);
+        if (model != null) {
+            String indexed = model.readUTF();
+            if (!indexed.equals(openAIService.embeddingModelId())) {
+                throw new IOException("The RAG index holds embeddings of " + indexed + ", but the active model is "
+                        + openAIService.embeddingModelId() + "; the index will be rebuilt");
+            }
+        }
+        ChunkStore loadedChunks = manifest.hasInlineChunks()
+                ? importInlineChunks(manifest)
+                : ChunkStore.readRefs(manifest.section(SegmentFile.Section.CHUNK_REFS), Paths.get(ragConfig.getChunkFile()),
+                BlobStore.Compression.of(ragConfig.getChunkCompression()), ragConfig.getChunkBlockBytes(),
+                ragConfig.getChunkCacheBlocks());
+
+        SegmentedIndex loadedSegments;
+        Set<Integer> loadedFiles = new HashSet<>();
+        long mappedBytes = manifest.mappedBytes();
+        if (manifest.hasVectors()) {
+            // Version 3 and older: a single vector segment inside the manifest, written out at the next checkpoint
+            loadedSegments = newSegmentedIndex(1);
+            VectorMatrix vectors = manifest.vectors();
+            int[] ordinals = new int[vectors.size()];
+            Arrays.setAll(ordinals, i -> i);
+            loadedSegments.addSealed(new IndexSegment(0, vectors,
+                    loadOrBuildIndex(vectors, manifest.section(SegmentFile.Section.HNSW)), ordinals, true));
+        } else {
+            DataInput list = manifest.section(SegmentFile.Section.SEGMENTS);
+            loadedSegments = newSegmentedIndex(list.readInt());
+            int count = list.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = list.readInt();
+                int rows = list.readInt();
+                SegmentFile file = SegmentFile.open(segmentFile(id));
+                if (file.size() != rows) {
+                    throw new IOException("Segment file " + file.path() + " has " + file.size() + " rows, expected " + rows);
+                }
+                VectorMatrix vectors = file.vectors();
+                loadedSegments.addSealed(new IndexSegment(id, vectors,
+                        loadOrBuildIndex(vectors, file.section(SegmentFile.Section.HNSW)),
+                        readOrdinals(file.section(SegmentFile.Section.ORDINALS)), true));
+                loadedFiles.add(id);
+                mappedBytes += file.mappedBytes();
+            }
+        }
+
+        for (IndexSegment segment : loadedSegments.sealedSegments()) {
+            if (segment.vectors().size() > 0 && segment.vectors().dimension() != openAIService.embeddingDimension()) {
+                throw new IOException("Segment " + segment.id() + " holds " + segment.vectors().dimension()
+                        + "-dimensional embeddings, but " + openAIService.embeddingModelName() + " produces "
+                        + openAIService.embeddingDimension() + "; the index will be rebuilt");
+            }
+        }
+
+        BitSet tombstones = readTombstones(manifest.section(SegmentFile.Section.TOMBSTONES));
+        for (int ordinal = tombstones.nextSetBit(0); ordinal >= 0; ordinal = tombstones.nextSetBit(ordinal + 1)) {
+            // Merged segments no longer hold most of these
+            loadedSegments.delete(ordinal);
+        }
+        MetadataIndex loadedMetadata = loadOrBuildMetadataIndex(loadedChunks,
+                manifest.section(SegmentFile.Section.METADATA));
+        Bm25Index loadedBm25 = loadOrBuildBm25(loadedChunks, manifest.section(SegmentFile.Section.BM25), tombstones);
+        DataInput logSection = manifest.section(SegmentFile.Section.LOG_POSITION);
+        long[] logPosition = logSection == null ? new long[] {-1, -1}
+                : new long[] {logSection.readLong(), logSection.readLong()};
+
+        lock.writeLock().lock();
+        try {
+            publish(new IndexState(loadedChunks, loadedSegments, loadedMetadata, loadedBm25, tombstones));
+            segmentGeneration = manifest.generation();
+            checkpointLogGeneration = logPosition[0];
+            checkpointLogOffset = logPosition[1];
+            persistedSegments.clear();
+            persistedSegments.addAll(loadedFiles);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompaction();
+
+        log.info("📚 RAG segments mapped from {} in {} ms. Chunks: {}, segments: {}, mapped: {} KB",
+                segmentPath, System.currentTimeMillis() - start, loadedChunks.size(),
+                loadedSegments.sealedSegments().size(), mappedBytes / 1024);
+    }
+
+    private static int[] readOrdinals(DataInput section) throws IOException {
+        if (section == null) {
+            throw new IOException("Vector segment has no ORDINALS section");
+        }
+        int[] ordinals = new int[section.readInt()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = section.readInt();
+        }
+        return ordinals;
+    }
+
+    /**
+     * Copy the text of a version 1 / 2 segment into a chunk file; the next checkpoint drops it from the segment
+     */
+    private ChunkStore importInlineChunks(SegmentFile segment) {
+        ChunkStore imported = state.chunks.cleared();
+        for (int i = 0; i < segment.size(); i++) {
+            imported.add(segment.document(i));
+        }
+        log.info("📚 Moved {} inline chunks from {} into a chunk file", segment.size(), segment.path());
+        return imported;
+    }
+
+    /**
+     * Import the legacy {"documents": [...]} JSON state.
+     * Streams the documents array so embeddings go straight into the vector matrix
+     * without an intermediate Map/List&lt;Float&gt; copy of the whole index.
+     */
+    private void loadLegacyJson(File file) throws IOException {
+        ChunkStore loadedChunks = state.chunks.cleared();
+        SegmentedIndex loadedSegments = state.segments.cleared();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object at the start of " + file);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (!"documents".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    Document doc = objectMapper.readValue(parser, Document.class);
+                    float[] vector = EmbeddingUtil.normalize(doc.getEmbedding());
+                    doc.setEmbedding(null);
+                    loadedSegments.add(loadedChunks.add(doc), vector);
+                }
+            }
+        }
+
+        IndexState loaded = new IndexState(loadedChunks, loadedSegments, loadOrBuildMetadataIndex(loadedChunks, null),
+                loadOrBuildBm25(loadedChunks, null, new BitSet()), new BitSet());
+        lock.writeLock().lock();
+        try {
+            publish(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompaction();
+
+        log.info("📚 RAG state loaded from {}. Documents: {}, segments: {}",
+                file, loadedChunks.size(), loadedSegments.segments().size());
+    }
+
     /**
      * Clear all documents
      */
     public void clearDocuments() {
-        documents.clear();
+        try {
+            WriteAheadLog wal = writeAheadLog();
+            lock.writeLock().lock();
+            try {
+                wal.appendClear();
+                // A new chunk file epoch and new segment ids: the current files may still be referenced by the last checkpoint
+                publish(emptyState(state.chunks.cleared(), state.segments.cleared()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            wal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the RAG write-ahead log", e);
+        }
+    }
+
+    private IndexState emptyState(ChunkStore chunks, SegmentedIndex segments) {
+        return new IndexState(chunks, segments, new MetadataIndex(metadataFields()), newBm25Index(), new BitSet());
+    }
+
+    /**
+     * The configured filterable fields plus the source identity fields
+     */
+    private Set<String> metadataFields() {
+        Set<String> fields = new LinkedHashSet<>(ragConfig.getMetadataIndexedFields());
+        fields.add(FILENAME);
+        fields.add(CONTENT_HASH);
+        return fields;
+    }
+
+    private SegmentedIndex newSegmentedIndex(int firstSegmentId) {
+        return new SegmentedIndex(this::newMatrix, this::createIndex, ragConfig.getSegmentMaxMutableChunks(),
+                ragConfig.getSegmentMaxBytes(), firstSegmentId, scanner);
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
     }
 
     /**
-     * Helper class for document similarity
+     * Merge sealed segments until the merge policy (rag.segments.*) is satisfied. Each merge is built
+     * without holding the lock, from immutable vectors and a snapshot of the tombstones, and swapped in
+     * under the write lock; it is discarded if the state was cleared or reloaded in the meantime.
+     * The merged segment gets its file at the next checkpoint, which also deletes the files it replaces.
      */
-    private static class DocumentSimilarity {
-        int index;
-        double similarity;
+    void compact() {
+        compactionScheduled.set(false);
+        try {
+            while (true) {
+                IndexState current;
+                List<IndexSegment> candidates;
+                List<BitSet> deleted = new ArrayList<>();
+                lock.readLock().lock();
+                try {
+                    current = state;
+                    candidates = current.segments.mergeCandidates(ragConfig.getSegmentMergeFactor(),
+                            ragConfig.getSegmentDeleteRatio());
+                    candidates.forEach(segment -> deleted.add(segment.deletedRows()));
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (candidates.isEmpty()) {
+                    return;
+                }
+
+                long start = System.currentTimeMillis();
+                IndexSegment merged = current.segments.merge(candidates, deleted);
+                boolean replaced;
+                lock.writeLock().lock();
+                try {
+                    replaced = state == current && current.segments.replace(candidates, merged);
+                    if (replaced) {
+                        current.version++;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!replaced) {
+                    log.info("📚 Segment merge discarded: the index changed while it ran");
+                    return;
+                }
+
+                int dropped = deleted.stream().mapToInt(BitSet::cardinality).sum();
+                lastCompactionMillis = System.currentTimeMillis() - start;
+                compactions.incrementAndGet();
+                compactedChunks.addAndGet(merged.size());
+                droppedChunks.addAndGet(dropped);
+                log.info("📚 Merged {} segments into segment {} ({} chunks, {} deleted dropped) in {} ms",
+                        candidates.size(), merged.id(), merged.size(), dropped, lastCompactionMillis);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error merging RAG segments: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Swap in a new state; the caller holds the write lock, so no reader still uses the previous one
+     */
+    private void publish(IndexState next) {
+        IndexState previous = state;
+        next.version = previous.version + 1;
+        state = next;
+        try {
+            previous.chunks.close();
+        } catch (IOException e) {
+            log.warn("Could not close chunk file: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactor.shutdownNow();
+        checkpointer.shutdownNow();
+        scanner.close();
+        try {
+            state.chunks.close();
+        } catch (IOException e) {
+            log.warn("Could not close chunk file: {}", e.getMessage());
+        }
+        if (writeAheadLog != null) {
+            try {
+                writeAheadLog.close();
+            } catch (IOException e) {
+                log.warn("Could not close the RAG write-ahead log: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Restore the metadata bitmaps from a segment section, rebuilding them when missing or stale
+     */
+    private MetadataIndex loadOrBuildMetadataIndex(ChunkStore source, DataInput section) {
+        Set<String> fields = metadataFields();
+        if (section != null) {
+            try {
+                MetadataIndex restored = MetadataIndex.readFrom(section);
+                if (restored.fields().equals(fields)) {
+                    return restored;
+                }
+                log.info("Metadata index was built for fields {}, rebuilding for {}", restored.fields(), fields);
+            } catch (IOException e) {
+                log.warn("Could not load metadata index: {}. Rebuilding.", e.getMessage());
+            }
+        }
+
+        MetadataIndex metadata = new MetadataIndex(fields);
+        for (int i = 0; i < source.size(); i++) {
+            metadata.add(i, source.get(i).getMetadata());
+        }
+        return metadata;
+    }
+
+    private Bm25Index newBm25Index() {
+        return new Bm25Index(ragConfig.getBm25K1(), ragConfig.getBm25B());
+    }
+
+    /**
+     * Restore the BM25 postings from a segment section, rebuilding them when missing or stale.
+     * Tombstoned chunks the postings still count (a rebuild, or a section written before deletes were
+     * tracked) are deleted from them.
+     */
+    private Bm25Index loadOrBuildBm25(ChunkStore source, DataInput section, BitSet tombstones) {
+        Bm25Index bm25 = null;
+        if (section != null) {
+            try {
+                Bm25Index restored = Bm25Index.readFrom(section, ragConfig.getBm25K1(), ragConfig.getBm25B());
+                if (restored.size() == source.size()) {
+                    log.info("📚 BM25 index loaded ({} terms)", restored.termCount());
+                    bm25 = restored;
+                } else {
+                    log.info("BM25 index has {} chunks but the state has {}, rebuilding", restored.size(),
+                            source.size());
+                }
+            } catch (IOException e) {
+                log.warn("Could not load BM25 index: {}. Rebuilding.", e.getMessage());
+            }
+        }
+
+        if (bm25 == null) {
+            bm25 = newBm25Index();
+            for (int i = 0; i < source.size(); i++) {
+                bm25.add(i, source.get(i).getText());
+            }
+            log.info("📚 BM25 index built for {} chunks ({} terms)", source.size(), bm25.termCount());
+        }
+        for (int ordinal = tombstones.nextSetBit(0); ordinal >= 0; ordinal = tombstones.nextSetBit(ordinal + 1)) {
+            if (!bm25.isDeleted(ordinal)) {
+                bm25.delete(ordinal, source.get(ordinal).getText());
+            }
+        }
+        return bm25;
+    }
+
+    private VectorMatrix newMatrix() {
+        return new VectorMatrix(openAIService.embeddingDimension(), ragConfig.isQuantizedIndex());
+    }
+
+    private VectorIndex createIndex(VectorMatrix matrix) {
+        String type = ragConfig.getIndexType() == null ? "" : ragConfig.getIndexType().toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "exact" -> new ExactIndex(matrix, scanner);
+            case "hnsw" -> new HnswIndex(matrix, ragConfig.getHnswM(), ragConfig.getHnswEfConstruction(),
+                    ragConfig.getHnswEfSearch());
+            case "int8" -> new Int8Index(matrix, scanner, ragConfig.getQuantizedOversample());
+            case "binary" -> new BinaryIndex(matrix, scanner, ragConfig.getBinaryOversample());
+            // Thrown by the constructor's first segment, so a typo fails the startup
+            default -> throw new IllegalStateException("Unknown rag.index.type '" + ragConfig.getIndexType()
+                    + "', expected one of exact, hnsw, int8, binary");
+        };
+    }
+
+    /**
+     * Restore the HNSW graph from a segment section, rebuilding it when missing or stale
+     */
+    private VectorIndex loadOrBuildIndex(VectorMatrix matrix, DataInput graphSection) {
+        VectorIndex fresh = createIndex(matrix);
+        if (fresh instanceof ExactIndex) {
+            return fresh;
+        }
+        if (fresh instanceof QuantizedIndex) {
+            // Codes are cheap to derive from the stored vectors, so they are not persisted
+            for (int i = 0; i < matrix.size(); i++) {
+                fresh.add(i);
+            }
+            log.info("📚 {} codes built for {} chunks", fresh.type(), matrix.size());
+            return fresh;
+        }
+
+        if (graphSection != null) {
+            try {
+                HnswIndex restored = HnswIndex.readFrom(graphSection, matrix, ragConfig.getHnswEfConstruction(),
+                        ragConfig.getHnswEfSearch());
+                if (restored.getM() == ragConfig.getHnswM()) {
+                    log.info("📚 HNSW graph loaded ({} nodes)", restored.size());
+                    return restored;
+                }
+                log.info("HNSW graph was built with M={}, rebuilding with M={}", restored.getM(), ragConfig.getHnswM());
+            } catch (IOException e) {
+                log.warn("Could not load HNSW graph: {}. Rebuilding.", e.getMessage());
+            }
+        }
 
-        DocumentSimilarity(int index, double similarity) {
-            this.index = index;
-            this.similarity = similarity;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < matrix.size(); i++) {
+            fresh.add(i);
         }
+        log.info("📚 HNSW graph built for {} chunks in {} ms", matrix.size(), System.currentTimeMillis() - start);
+        return fresh;
     }
 }
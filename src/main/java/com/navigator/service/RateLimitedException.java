@@ -0,0 +1,28 @@
+package com.navigator.service;
+
+/**
+ * An interactive provider call that was not made, or not retried, because the API key's rate or concurrency
+ * limit could not admit it within the configured wait. Controllers answer it with HTTP 429.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    public RateLimitedException(String message) {
+        super(message);
+    }
+
+    public RateLimitedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Whether error is, or was caused by, a RateLimitedException
+     */
+    public static boolean isCause(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RateLimitedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
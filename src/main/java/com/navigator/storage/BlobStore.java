@@ -0,0 +1,275 @@
+package com.navigator.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only file of variable-length records packed into blocks, each optionally deflate-compressed.
+ * <pre>
+ * block   stored length (int), raw length (int), codec (byte), stored bytes
+ * raw     per record: int length, record bytes
+ * </pre>
+ * A record is addressed by a long reference: the file offset of its block (high 40 bits) and its offset
+ * within the uncompressed block (low 24 bits). The block being filled stays in memory until it is full
+ * or {@link #commit()} is called; decompressed blocks are kept in a small LRU cache.
+ */
+public class BlobStore implements AutoCloseable {
+
+    public enum Compression {
+        NONE, DEFLATE;
+
+        public static Compression of(String name) {
+            return "deflate".equalsIgnoreCase(name) ? DEFLATE : NONE;
+        }
+    }
+
+    private static final int BLOCK_HEADER_BYTES = 2 * Integer.BYTES + 1;
+    private static final int OFFSET_BITS = 24;
+    private static final int MAX_BLOCK_BYTES = 1 << OFFSET_BITS;
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Compression compression;
+    private final int blockBytes;
+    private final Map<Long, byte[]> blockCache;
+
+    // Block being filled, not yet on disk; it will be written at pendingOffset
+    private byte[] pending = new byte[0];
+    private int pendingSize;
+    private long pendingOffset;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private BlobStore(Path path, FileChannel channel, Compression compression, int blockBytes, int cacheBlocks)
+            throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.compression = compression;
+        this.blockBytes = Math.max(1024, Math.min(blockBytes, MAX_BLOCK_BYTES / 2));
+        this.blockCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > cacheBlocks;
+            }
+        };
+        this.pendingOffset = channel.size();
+    }
+
+    /**
+     * Open the store at path, discarding anything written after committedLength
+     * (blocks appended after the last checkpoint are rebuilt from the write-ahead log)
+     */
+    public static BlobStore open(Path path, long committedLength, Compression compression, int blockBytes,
+                                 int cacheBlocks) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() < committedLength) {
+            channel.close();
+            throw new IOException("Chunk file " + path + " has " + channel.size() + " bytes, expected at least "
+                    + committedLength);
+        }
+        if (channel.size() > committedLength) {
+            channel.truncate(committedLength);
+        }
+        return new BlobStore(path, channel, compression, blockBytes, cacheBlocks);
+    }
+
+    /**
+     * Append a record and return its reference
+     */
+    public synchronized long append(byte[] record) throws IOException {
+        int length = Integer.BYTES + record.length;
+        if (length >= MAX_BLOCK_BYTES) {
+            throw new IOException("Record of " + record.length + " bytes exceeds the block limit");
+        }
+        if (pendingSize > 0 && pendingSize + length > blockBytes) {
+            flushBlock();
+        }
+        if (pendingSize + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingSize + length, Math.min(blockBytes, 2 * pending.length + length)));
+        }
+
+        long reference = pendingOffset << OFFSET_BITS | pendingSize;
+        ByteBuffer.wrap(pending, pendingSize, Integer.BYTES).putInt(record.length);
+        System.arraycopy(record, 0, pending, pendingSize + Integer.BYTES, record.length);
+        pendingSize += length;
+        return reference;
+    }
+
+    /**
+     * Read the record with the given reference
+     */
+    public byte[] read(long reference) throws IOException {
+        long blockOffset = reference >>> OFFSET_BITS;
+        int offset = (int) (reference & (MAX_BLOCK_BYTES - 1));
+        byte[] block;
+        synchronized (this) {
+            if (blockOffset == pendingOffset) {
+                return record(pending, offset);
+            }
+            block = blockCache.get(blockOffset);
+        }
+        if (block == null) {
+            cacheMisses.increment();
+            block = readBlock(blockOffset);
+            synchronized (this) {
+                blockCache.put(blockOffset, block);
+            }
+        } else {
+            cacheHits.increment();
+        }
+        return record(block, offset);
+    }
+
+    /**
+     * Write out the partially filled block and force the file to disk; returns the committed length
+     */
+    public synchronized long commit() throws IOException {
+        if (pendingSize > 0) {
+            flushBlock();
+        }
+        channel.force(false);
+        return pendingOffset;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public Compression compression() {
+        return compression;
+    }
+
+    /**
+     * Bytes on disk, excluding the block still being filled
+     */
+    public long fileBytes() {
+        return pendingOffset;
+    }
+
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void flushBlock() throws IOException {
+        byte[] stored = pending;
+        int storedLength = pendingSize;
+        byte codec = CODEC_NONE;
+        if (compression == Compression.DEFLATE) {
+            byte[] compressed = deflate(pending, pendingSize);
+            if (compressed.length < pendingSize) {
+                stored = compressed;
+                storedLength = compressed.length;
+                codec = CODEC_DEFLATE;
+            }
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_BYTES + storedLength);
+        block.putInt(storedLength).putInt(pendingSize).put(codec).put(stored, 0, storedLength).flip();
+        long position = pendingOffset;
+        while (block.hasRemaining()) {
+            position += channel.write(block, position);
+        }
+
+        blockCache.put(pendingOffset, Arrays.copyOf(pending, pendingSize));
+        pendingOffset = position;
+        pendingSize = 0;
+    }
+
+    private byte[] readBlock(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        readFully(header, offset);
+        header.flip();
+        int storedLength = header.getInt();
+        int rawLength = header.getInt();
+        byte codec = header.get();
+
+        ByteBuffer stored = ByteBuffer.allocate(storedLength);
+        readFully(stored, offset + BLOCK_HEADER_BYTES);
+        if (codec == CODEC_NONE) {
+            return stored.array();
+        }
+        return inflate(stored.array(), rawLength);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of chunk file " + path + " at " + position);
+            }
+        }
+    }
+
+    private static byte[] record(byte[] block, int offset) {
+        int length = ByteBuffer.wrap(block, offset, Integer.BYTES).getInt();
+        return Arrays.copyOfRange(block, offset + Integer.BYTES, offset + Integer.BYTES + length);
+    }
+
+    private static byte[] deflate(byte[] data, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] data, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, n, rawLength - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != rawLength) {
+                throw new IOException("Corrupt compressed block in chunk file " + path);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block in chunk file " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.navigator.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.navigator.model.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Chunk text and metadata by ordinal, kept out of the search index in a disk-backed {@link BlobStore}.
+ * Only a long reference per chunk stays on the heap; text is read (and decompressed) for the final hits.
+ * <p>
+ * Chunk files are named {@code <base>.<epoch>}. Clearing starts a new epoch so the file referenced by the
+ * last checkpoint stays intact until the next one; the segment stores the epoch, the committed file length
+ * and the references ({@link #writeRefs}). A store created before any state is loaded takes an epoch above
+ * every existing file ({@link #inNewEpoch}), so it never truncates a file a manifest on disk still references.
+ */
+public class ChunkStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x43484E4B; // "CHNK"
+    private static final int VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final Path base;
+    private final int epoch;
+    private final BlobStore.Compression compression;
+    private final int blockBytes;
+    private final int cacheBlocks;
+
+    // Opened on the first add, so an unused empty store never truncates a file
+    private BlobStore blob;
+    private long[] refs = new long[0];
+    private int size;
+
+    /**
+     * Empty store writing to {@code <base>.<epoch>}
+     *
+     * @param blockBytes  uncompressed size of a block; smaller blocks make single-chunk reads cheaper
+     * @param cacheBlocks decompressed blocks kept in memory
+     */
+    public ChunkStore(Path base, int epoch, BlobStore.Compression compression, int blockBytes, int cacheBlocks) {
+        this.base = base;
+        this.epoch = epoch;
+        this.compression = compression;
+        this.blockBytes = blockBytes;
+        this.cacheBlocks = cacheBlocks;
+    }
+
+    /**
+     * Empty store in an epoch above every chunk file that already exists next to base
+     */
+    public static ChunkStore inNewEpoch(Path base, BlobStore.Compression compression, int blockBytes,
+                                        int cacheBlocks) throws IOException {
+        int epoch = epochFiles(base).keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        return new ChunkStore(base, epoch, compression, blockBytes, cacheBlocks);
+    }
+
+    /**
+     * Restore a store from the references written by {@link #writeRefs}, dropping uncommitted file contents
+     */
+    public static ChunkStore readRefs(DataInput in, Path base, BlobStore.Compression compression, int blockBytes,
+                                      int cacheBlocks) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a chunk reference section");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported chunk reference version " + version);
+        }
+
+        ChunkStore store = new ChunkStore(base, in.readInt(), compression, blockBytes, cacheBlocks);
+        long committed = in.readLong();
+        int count = in.readInt();
+        store.refs = new long[count];
+        for (int i = 0; i < count; i++) {
+            store.refs[i] = in.readLong();
+        }
+        store.size = count;
+        store.blob = BlobStore.open(store.file(), committed, compression, blockBytes, cacheBlocks);
+        return store;
+    }
+
+    /**
+     * Commit the chunk file and write the epoch, committed length and references
+     */
+    public void writeRefs(DataOutput out) throws IOException {
+        writeRefs(out, blob, refs, size);
+    }
+
+    /**
+     * Writer for the references of the chunks added so far, to run later without blocking adds.
+     * The caller must hold whatever lock guards {@link #add}. The commit happens when the writer runs and may
+     * cover chunks added after this call, which the references do not point to.
+     */
+    public SegmentFile.SectionWriter snapshotRefs() {
+        BlobStore capturedBlob = blob;
+        long[] capturedRefs = Arrays.copyOf(refs, size);
+        int capturedSize = size;
+        return out -> writeRefs(out, capturedBlob, capturedRefs, capturedSize);
+    }
+
+    private void writeRefs(DataOutput out, BlobStore blob, long[] refs, int size) throws IOException {
+        long committed = blob == null ? 0 : blob.commit();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(epoch);
+        out.writeLong(committed);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(refs[i]);
+        }
+    }
+
+    /**
+     * Text and metadata of the chunk with the given ordinal
+     */
+    public Document get(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Chunk " + ordinal + " out of bounds for size " + size);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(blob.read(refs[ordinal])));
+            byte[] text = new byte[in.readInt()];
+            in.readFully(text);
+            byte[] metadata = new byte[in.readInt()];
+            in.readFully(metadata);
+            return new Document(new String(text, StandardCharsets.UTF_8), MAPPER.readValue(metadata, METADATA_TYPE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read chunk " + ordinal + " from " + file(), e);
+        }
+    }
+
+    /**
+     * Append a chunk and return its ordinal
+     */
+    public int add(Document document) {
+        try {
+            byte[] text = document.getText() == null ? new byte[0] : document.getText().getBytes(StandardCharsets.UTF_8);
+            byte[] metadata = MAPPER.writeValueAsBytes(document.getMetadata() == null ? Map.of() : document.getMetadata());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length + metadata.length + 2 * Integer.BYTES);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(text.length);
+            out.write(text);
+            out.writeInt(metadata.length);
+            out.write(metadata);
+
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, Math.max(64, refs.length + (refs.length >> 1)));
+            }
+            refs[size] = blob().append(bytes.toByteArray());
+            return size++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append chunk to " + file(), e);
+        }
+    }
+
+    /**
+     * Empty store in the next epoch; this store's file is left for the last checkpoint
+     */
+    public ChunkStore cleared() {
+        return new ChunkStore(base, epoch + 1, compression, blockBytes, cacheBlocks);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int epoch() {
+        return epoch;
+    }
+
+    /**
+     * Delete chunk files of other epochs, once a checkpoint no longer references them
+     */
+    public void deleteOtherEpochs() throws IOException {
+        for (Map.Entry<Integer, Path> file : epochFiles(base).entrySet()) {
+            if (file.getKey() != epoch) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+    }
+
+    /**
+     * Existing chunk files by epoch
+     */
+    private static Map<Integer, Path> epochFiles(Path base) throws IOException {
+        Map<Integer, Path> epochs = new TreeMap<>();
+        Path directory = base.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return epochs;
+        }
+        String prefix = base.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d{1,9}")) {
+                    epochs.put(Integer.parseInt(suffix), file);
+                }
+            }
+        }
+        return epochs;
+    }
+
+    /**
+     * Heap, disk and block cache figures for monitoring
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("file", file().toString());
+        stats.put("refMemoryBytes", (long) refs.length * Long.BYTES);
+        stats.put("compression", compression.name().toLowerCase());
+        if (blob != null) {
+            stats.put("fileBytes", blob.fileBytes());
+            stats.put("blockCacheHits", blob.cacheHits());
+            stats.put("blockCacheMisses", blob.cacheMisses());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (blob != null) {
+            blob.close();
+        }
+    }
+
+    private BlobStore blob() throws IOException {
+        if (blob == null) {
+            // A fresh epoch: whatever an earlier, uncheckpointed run left in this file is discarded
+            blob = BlobStore.open(file(), 0, compression, blockBytes, cacheBlocks);
+        }
+        return blob;
+    }
+
+    private Path file() {
+        return base.resolveSibling(base.getFileName() + "." + epoch);
+    }
+}
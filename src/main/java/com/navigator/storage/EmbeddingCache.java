@@ -0,0 +1,297 @@
+package com.navigator.storage;
+
+import com.navigator.util.HashUtil;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent, content-addressed cache of embeddings. The key is the SHA-256 of the embedding model name and
+ * the normalized text, so a text is embedded once per model whichever upload, restart or re-sync asks for it.
+ * <pre>
+ * header  magic "EMBC", version                                               [8 bytes]
+ * record  key (32 bytes), int dimension, dimension x float32, CRC32C of the preceding bytes (int)
+ * </pre>
+ * Records are only appended. Opening scans the file once into a map from key to record offset; vectors are
+ * read from disk on demand, and the most recently used ones are kept in a bounded in-memory front.
+ * A torn or corrupt tail is truncated on open: the records lost that way are simply embedded again.
+ */
+public class EmbeddingCache implements AutoCloseable {
+
+    private static final int MAGIC = 0x454D4243; // "EMBC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 32;
+    private static final int RECORD_HEADER_BYTES = KEY_BYTES + Integer.BYTES;
+    private static final int MAX_DIMENSION = 1 << 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<Key, Long> offsets = new HashMap<>();
+    private final Map<Key, float[]> front;
+    private long end;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private EmbeddingCache(Path path, FileChannel channel, int memoryEntries) {
+        this.path = path;
+        this.channel = channel;
+        this.front = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Open (or create) the cache file at path
+     *
+     * @param memoryEntries vectors kept in memory, most recently used first
+     */
+    public static EmbeddingCache open(Path path, int memoryEntries) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        EmbeddingCache cache = new EmbeddingCache(path, channel, Math.max(0, memoryEntries));
+        try {
+            cache.load();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    /**
+     * Cache key of a text embedded with the given model. Texts differing only in Unicode normalization form
+     * or whitespace share a key.
+     */
+    public static byte[] key(String model, String text) {
+        return HashUtil.sha256((model + '\n' + normalize(text)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Text in Unicode NFC with runs of whitespace collapsed to one space and trimmed
+     */
+    public static String normalize(String text) {
+        return Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFC)
+                .replaceAll("\\s+", " ")
+                .strip();
+    }
+
+    /**
+     * The cached embedding for key, or null
+     */
+    public float[] get(byte[] key) throws IOException {
+        Key k = Key.of(key);
+        Long offset;
+        synchronized (this) {
+            float[] vector = front.get(k);
+            if (vector != null) {
+                memoryHits.increment();
+                return vector.clone();
+            }
+            offset = offsets.get(k);
+        }
+        if (offset == null) {
+            misses.increment();
+            return null;
+        }
+
+        float[] vector = read(offset, key);
+        synchronized (this) {
+            if (vector == null) {
+                // Damaged on disk since it was opened: drop it, the text is embedded again
+                offsets.remove(k);
+                misses.increment();
+                return null;
+            }
+            front.put(k, vector);
+        }
+        diskHits.increment();
+        return vector.clone();
+    }
+
+    /**
+     * Store the embedding for key, unless one is cached already
+     */
+    public synchronized void put(byte[] key, float[] vector) throws IOException {
+        Key k = Key.of(key);
+        if (offsets.containsKey(k)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + vector.length * Float.BYTES + Integer.BYTES);
+        record.put(key).putInt(vector.length);
+        for (float value : vector) {
+            record.putFloat(value);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue()).flip();
+
+        long position = end;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        offsets.put(k, end);
+        front.put(k, vector.clone());
+        end = position;
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public Map<String, Object> stats() {
+        long memory = memoryHits.sum();
+        long disk = diskHits.sum();
+        long missed = misses.sum();
+        long lookups = memory + disk + missed;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("file", path.toString());
+        synchronized (this) {
+            stats.put("entries", offsets.size());
+            stats.put("memoryEntries", front.size());
+            stats.put("fileBytes", end);
+        }
+        stats.put("memoryHits", memory);
+        stats.put("diskHits", disk);
+        stats.put("misses", missed);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) (memory + disk) / lookups);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    /**
+     * Read the header and index every intact record, truncating whatever follows the last one
+     */
+    private void load() throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            end = HEADER_BYTES;
+            return;
+        }
+
+        long valid = HEADER_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an embedding cache file: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported embedding cache version " + version);
+            }
+
+            byte[] key = new byte[KEY_BYTES];
+            while (true) {
+                try {
+                    in.readFully(key);
+                    int dimension = in.readInt();
+                    if (dimension <= 0 || dimension > MAX_DIMENSION) {
+                        break;
+                    }
+                    byte[] floats = new byte[dimension * Float.BYTES];
+                    in.readFully(floats);
+                    int checksum = in.readInt();
+
+                    CRC32C crc = new CRC32C();
+                    crc.update(key);
+                    crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(dimension).array());
+                    crc.update(floats);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    offsets.put(Key.of(key), valid);
+                    valid += RECORD_HEADER_BYTES + floats.length + Integer.BYTES;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        if (channel.size() > valid) {
+            channel.truncate(valid);
+        }
+        end = valid;
+    }
+
+    /**
+     * The vector of the record at offset, or null when it is not an intact record for key
+     */
+    private float[] read(long offset, byte[] key) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        if (!readFully(header, offset)) {
+            return null;
+        }
+        header.flip();
+        byte[] stored = new byte[KEY_BYTES];
+        header.get(stored);
+        int dimension = header.getInt();
+        if (!Arrays.equals(stored, key) || dimension <= 0 || dimension > MAX_DIMENSION) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(dimension * Float.BYTES + Integer.BYTES);
+        if (!readFully(body, offset + RECORD_HEADER_BYTES)) {
+            return null;
+        }
+        body.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(header.array());
+        crc.update(body.array(), 0, dimension * Float.BYTES);
+        float[] vector = new float[dimension];
+        body.asFloatBuffer().get(vector);
+        return body.getInt(dimension * Float.BYTES) == (int) crc.getValue() ? vector : null;
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * SHA-256 key as four longs, so the offset map does not hold a byte array per entry
+     */
+    private record Key(long a, long b, long c, long d) {
+        static Key of(byte[] key) {
+            ByteBuffer buffer = ByteBuffer.wrap(key);
+            return new Key(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
+    }
+}
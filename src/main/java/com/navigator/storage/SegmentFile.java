@@ -0,0 +1,330 @@
+package com.navigator.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.navigator.index.VectorMatrix;
+import com.navigator.model.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Binary on-disk segment holding the RAG index, opened with {@link FileChannel#map} and read in place.
+ * <pre>
+ * header      magic "RAGS", version, dimension, row count, checkpoint generation, section count,
+ *             then (section id, offset, length) per section           [256 bytes, little-endian]
+ * VECTORS     count x dimension little-endian float32, unit length      [fixed stride]
+ * ORDINALS    global chunk ordinal of every vector row
+ * CHUNK_REFS  references into the external chunk file ({@link ChunkStore#writeRefs})
+ * SEGMENTS    ids of the vector segment files making up the index
+ * TOMBSTONES  ordinals of deleted chunks
+ * MODEL       id of the embedding model the vectors come from (modified UTF-8)
+ * LOG_POSITION  write-ahead log generation and offset the checkpoint covers (long, long)
+ * HNSW / BM25 / METADATA  optional index sections in their own writeTo format
+ * </pre>
+ * Since version 4 the index is split into files of the same format: a manifest (CHUNK_REFS, SEGMENTS,
+ * TOMBSTONES, BM25, METADATA, MODEL, LOG_POSITION) and one immutable file per vector segment (VECTORS, ORDINALS, HNSW).
+ * Version 3 and older segments hold a single vector segment next to the chunk references.
+ * Version 1 and 2 segments carried the chunk text inline (OFFSETS + CHUNKS); they are still readable
+ * through {@link #document(int)} so the text can be moved into a chunk file.
+ * Sections start on 64-byte boundaries. Files are written to a temporary file and atomically renamed.
+ * The generation identifies the checkpoint, so the {@link WriteAheadLog} written after it can be matched up.
+ */
+public final class SegmentFile {
+
+    private static final int MAGIC = 0x52414753; // "RAGS"
+    private static final int VERSION = 4;
+    private static final int HEADER_BYTES = 256;
+    private static final int ALIGNMENT = 64;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    public enum Section {
+        VECTORS(1), OFFSETS(2), CHUNKS(3), HNSW(4), BM25(5), METADATA(6), CHUNK_REFS(7), ORDINALS(8), SEGMENTS(9),
+        TOMBSTONES(10), MODEL(11), LOG_POSITION(12);
+
+        private final int id;
+
+        Section(int id) {
+            this.id = id;
+        }
+
+        static Section of(int id) {
+            for (Section section : values()) {
+                if (section.id == id) {
+                    return section;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes an index section in its own serialization format
+     */
+    @FunctionalInterface
+    public interface SectionWriter {
+        void writeTo(DataOutput out) throws IOException;
+    }
+
+    private final Path path;
+    private final int dimension;
+    private final int count;
+    private final long generation;
+    private final Map<Section, ByteBuffer> sections;
+
+    private SegmentFile(Path path, int dimension, int count, long generation, Map<Section, ByteBuffer> sections) {
+        this.path = path;
+        this.dimension = dimension;
+        this.count = count;
+        this.generation = generation;
+        this.sections = sections;
+    }
+
+    /**
+     * Map an existing segment. Only the header is read eagerly; pages are faulted in on access.
+     */
+    public static SegmentFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the full header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a RAG segment file: " + path);
+            }
+            int version = header.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported RAG segment version " + version);
+            }
+
+            int dimension = header.getInt();
+            int count = header.getInt();
+            // Version 1 segments predate the write-ahead log
+            long generation = version == 1 ? 0 : header.getLong();
+            int sectionCount = header.getInt();
+            Map<Section, ByteBuffer> sections = new EnumMap<>(Section.class);
+            for (int i = 0; i < sectionCount; i++) {
+                Section section = Section.of(header.getInt());
+                long offset = header.getLong();
+                long length = header.getLong();
+                if (section == null) {
+                    continue;
+                }
+                if (length > Integer.MAX_VALUE || offset + length > channel.size()) {
+                    throw new IOException("Segment section " + section + " is out of bounds in " + path);
+                }
+                sections.put(section, channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                        .order(ByteOrder.LITTLE_ENDIAN));
+            }
+            if (!sections.containsKey(Section.VECTORS) && !sections.containsKey(Section.SEGMENTS)) {
+                throw new IOException("Segment " + path + " has neither vectors nor a segment list");
+            }
+            return new SegmentFile(path, dimension, count, generation, sections);
+        }
+    }
+
+    /**
+     * Write a segment with the given vectors (null for a manifest without any) and sections as checkpoint
+     * generation. A CHUNK_REFS section commits the chunk file first, so the references never point past
+     * its durable end.
+     *
+     * @param count rows, or chunks for a manifest
+     */
+    public static void write(Path path, VectorMatrix vectors, int dimension, int count,
+                             Map<Section, SectionWriter> sections, long generation) throws IOException {
+        if (vectors != null && vectors.size() != count) {
+            throw new IllegalArgumentException("Vector count " + vectors.size() + " does not match row count " + count);
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Section, long[]> table = new EnumMap<>(Section.class);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+
+            if (vectors != null) {
+                table.put(Section.VECTORS, writeVectors(channel, vectors));
+            }
+            for (Map.Entry<Section, SectionWriter> section : sections.entrySet()) {
+                table.put(section.getKey(), writeStream(channel, section.getValue()));
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(count)
+                    .putLong(generation).putInt(table.size());
+            table.forEach((section, extent) -> header.putInt(section.id).putLong(extent[0]).putLong(extent[1]));
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public boolean hasVectors() {
+        return sections.containsKey(Section.VECTORS);
+    }
+
+    /**
+     * The vector region as a read-only matrix, scored in place
+     */
+    public VectorMatrix vectors() {
+        return VectorMatrix.wrap(sections.get(Section.VECTORS).duplicate().order(ByteOrder.LITTLE_ENDIAN),
+                dimension, count);
+    }
+
+    /**
+     * True for version 1 / 2 segments that hold the chunk text themselves
+     */
+    public boolean hasInlineChunks() {
+        return sections.containsKey(Section.CHUNKS);
+    }
+
+    /**
+     * Decode the text and metadata of one inline chunk
+     */
+    public Document document(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IndexOutOfBoundsException("Chunk " + ordinal + " out of bounds for size " + count);
+        }
+        ByteBuffer chunks = sections.get(Section.CHUNKS);
+        int position = (int) sections.get(Section.OFFSETS).getLong(ordinal * Long.BYTES);
+
+        int textLength = chunks.getInt(position);
+        byte[] text = new byte[textLength];
+        chunks.get(position + Integer.BYTES, text);
+        position += Integer.BYTES + textLength;
+
+        int metadataLength = chunks.getInt(position);
+        byte[] metadata = new byte[metadataLength];
+        chunks.get(position + Integer.BYTES, metadata);
+        try {
+            return new Document(new String(text, StandardCharsets.UTF_8), MAPPER.readValue(metadata, METADATA_TYPE));
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt metadata for chunk " + ordinal + " in " + path, e);
+        }
+    }
+
+    /**
+     * Reader over an optional index section, or null when the segment does not contain it
+     */
+    public DataInput section(Section section) {
+        ByteBuffer buffer = sections.get(section);
+        return buffer == null ? null : new DataInputStream(new BufferInputStream(buffer.duplicate()));
+    }
+
+    /**
+     * Bytes of the mapped file (outside the Java heap)
+     */
+    public long mappedBytes() {
+        long bytes = HEADER_BYTES;
+        for (ByteBuffer buffer : sections.values()) {
+            bytes += buffer.capacity();
+        }
+        return bytes;
+    }
+
+    private static long[] writeVectors(FileChannel channel, VectorMatrix vectors) throws IOException {
+        long offset = align(channel);
+        int rowBytes = vectors.dimension() * Float.BYTES;
+        int rowsPerWrite = Math.max(1, (1 << 20) / Math.max(1, rowBytes));
+        ByteBuffer buffer = ByteBuffer.allocate(rowsPerWrite * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int row = 0; row < vectors.size(); row++) {
+            buffer.asFloatBuffer().put(vectors.get(row));
+            buffer.position(buffer.position() + rowBytes);
+            if (!buffer.hasRemaining() || row == vectors.size() - 1) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+        }
+        return new long[]{offset, channel.position() - offset};
+    }
+
+    private static long[] writeStream(FileChannel channel, SectionWriter writer) throws IOException {
+        long offset = align(channel);
+        // Not closed: closing would close the channel
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        writer.writeTo(out);
+        out.flush();
+        return new long[]{offset, channel.position() - offset};
+    }
+
+    private static long align(FileChannel channel) throws IOException {
+        long position = channel.position();
+        long aligned = (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        if (aligned > position) {
+            writeFully(channel, ByteBuffer.allocate((int) (aligned - position)));
+        }
+        return aligned;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * InputStream over a mapped section, so index sections can be read with their DataInput readers
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.navigator.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.navigator.model.Document;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of RAG index mutations since the last checkpoint into the segment.
+ * <pre>
+ * header  magic "RWAL", version, generation (long), embedding model id (modified UTF-8, version 2)
+ * record  payload length (int), CRC32C of the payload (int), payload
+ * payload ADD_CHUNK: type, int text length, UTF-8 text, int metadata length, metadata JSON,
+ *                    int dimension, dimension x float32 (unit-length embedding)
+ *         CLEAR:     type
+ *         DELETE:    type, int count, count x int chunk ordinal (tombstoned chunks)
+ * </pre>
+ * The generation ties the log to the segment it applies on top of: a checkpoint writes the segment with
+ * generation g + 1 and then resets the log to g + 1, so a crash in between leaves a stale log that is ignored.
+ * A checkpoint taken while appends continue covers the log up to an offset instead; it drops only those
+ * records ({@link #truncateHead}) and records the offset in the segment, so a crash in between can trim then.
+ * The model id names the embedding model whose vectors the log holds, so a log written before the model was
+ * switched is recognised before replay. A version 1 log has no model id.
+ * A torn or corrupt record ends the log; it and anything after it are truncated on open.
+ * Methods are synchronized so a sync from one upload can run while another upload appends.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x5257414C; // "RWAL"
+    private static final int VERSION = 2;
+    private static final int V1_HEADER_BYTES = 16;
+    private static final byte ADD_CHUNK = 1;
+    private static final byte CLEAR = 2;
+    private static final byte DELETE = 3;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * Receives the logged mutations in order during {@link #replay}
+     */
+    public interface Replayer {
+        void add(Document chunk, float[] embedding);
+
+        void clear();
+
+        void delete(int[] ordinals);
+    }
+
+    private final Path path;
+    private final boolean fsync;
+    // Model id written into new headers, and the one read from the header (null for version 1)
+    private final String model;
+    private String loggedModel;
+    private long headerBytes;
+    private long generation;
+    private long sizeBytes;
+    private int records;
+    // Dimensions of the embeddings in the ADD records, so a log of another model is recognised before replay
+    private final Set<Integer> embeddingDimensions = new TreeSet<>();
+    private FileOutputStream file;
+    private DataOutputStream out;
+
+    private WriteAheadLog(Path path, boolean fsync, String model) {
+        this.path = path;
+        this.fsync = fsync;
+        this.model = model;
+    }
+
+    /**
+     * Open (or create with generation 0) the log at path, dropping a torn tail left by a crash
+     *
+     * @param fsync force appended records to disk on every {@link #sync()}
+     * @param model id of the embedding model whose vectors are appended; written into the header on every reset
+     */
+    public static WriteAheadLog open(Path path, boolean fsync, String model) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(path, fsync, model);
+        if (!Files.exists(path) || Files.size(path) < V1_HEADER_BYTES) {
+            log.writeHeader(0);
+        }
+        log.validate();
+        log.openForAppend();
+        return log;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Embedding model id of the logged records, or null for a version 1 log
+     */
+    public synchronized String loggedModel() {
+        return loggedModel;
+    }
+
+    /**
+     * Bytes in the log, header included
+     */
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Records appended since the last reset
+     */
+    public synchronized int records() {
+        return records;
+    }
+
+    /**
+     * Dimensions of the embeddings logged since the last reset (empty without ADD records)
+     */
+    public synchronized Set<Integer> embeddingDimensions() {
+        return Set.copyOf(embeddingDimensions);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public synchronized void appendAdd(Document chunk, float[] embedding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(embedding.length * Float.BYTES + 2048);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        byte[] text = chunk.getText() == null ? new byte[0] : chunk.getText().getBytes(StandardCharsets.UTF_8);
+        byte[] metadata = MAPPER.writeValueAsBytes(chunk.getMetadata() == null ? Map.of() : chunk.getMetadata());
+
+        payload.writeByte(ADD_CHUNK);
+        payload.writeInt(text.length);
+        payload.write(text);
+        payload.writeInt(metadata.length);
+        payload.write(metadata);
+        payload.writeInt(embedding.length);
+        for (float value : embedding) {
+            payload.writeFloat(value);
+        }
+        append(bytes.toByteArray());
+        embeddingDimensions.add(embedding.length);
+    }
+
+    public synchronized void appendClear() throws IOException {
+        append(new byte[]{CLEAR});
+    }
+
+    public synchronized void appendDelete(int[] ordinals) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 + Integer.BYTES * (ordinals.length + 1));
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeByte(DELETE);
+        payload.writeInt(ordinals.length);
+        for (int ordinal : ordinals) {
+            payload.writeInt(ordinal);
+        }
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Make the records appended so far durable. Called once per mutation batch, not per record.
+     */
+    public synchronized void sync() throws IOException {
+        out.flush();
+        if (fsync) {
+            file.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Apply every record in order; returns the number of records replayed
+     */
+    public synchronized int replay(Replayer replayer) throws IOException {
+        sync();
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            in.skipNBytes(headerBytes);
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                apply(payload, replayer);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Empty the log and tag it with a new generation, after the segment for that generation was written
+     */
+    public synchronized void reset(long newGeneration) throws IOException {
+        out.close();
+        writeHeader(newGeneration);
+        openForAppend();
+    }
+
+    /**
+     * Drop the records before offset, which a checkpoint of generation newGeneration holds, and keep the ones
+     * appended after it: the log is atomically replaced by a new header followed by the records from offset on.
+     * For checkpoints written while uploads continue; offset is the {@link #sizeBytes()} the checkpoint captured.
+     */
+    public synchronized void truncateHead(long offset, long newGeneration) throws IOException {
+        out.close();
+        writeLog(newGeneration, Math.max(offset, headerBytes));
+        validate();
+        openForAppend();
+    }
+
+    /**
+     * Move the log aside to {@code <path>.rejected.<generation>} and start an empty one at newGeneration.
+     * For a log that cannot be applied to the loaded segment; the records are kept for the operator.
+     * Returns the path the log was moved to.
+     */
+    public synchronized Path setAside(long newGeneration) throws IOException {
+        out.close();
+        Path rejected = path.resolveSibling(path.getFileName() + ".rejected." + generation);
+        Files.move(path, rejected, StandardCopyOption.REPLACE_EXISTING);
+        writeHeader(newGeneration);
+        openForAppend();
+        return rejected;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        sizeBytes += 2L * Integer.BYTES + payload.length;
+        records++;
+    }
+
+    private void apply(byte[] payload, Replayer replayer) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == CLEAR) {
+            replayer.clear();
+            return;
+        }
+        if (type == DELETE) {
+            int[] ordinals = new int[in.readInt()];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = in.readInt();
+            }
+            replayer.delete(ordinals);
+            return;
+        }
+        if (type != ADD_CHUNK) {
+            throw new IOException("Unknown write-ahead log record type " + type + " in " + path);
+        }
+
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        byte[] metadata = new byte[in.readInt()];
+        in.readFully(metadata);
+        float[] embedding = new float[in.readInt()];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = in.readFloat();
+        }
+        replayer.add(new Document(new String(text, StandardCharsets.UTF_8), MAPPER.readValue(metadata, METADATA_TYPE)),
+                embedding);
+    }
+
+    /**
+     * Next intact record payload, or null at the end of the log or at the first torn / corrupt record
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > (1 << 28)) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the header and count the intact records, truncating whatever follows the last one
+     */
+    private void validate() throws IOException {
+        long valid;
+        int count = 0;
+        try (InputStream stream = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a RAG write-ahead log: " + path);
+            }
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported write-ahead log version " + version);
+            }
+            generation = in.readLong();
+            loggedModel = null;
+            headerBytes = V1_HEADER_BYTES;
+            if (version >= 2) {
+                byte[] id = new byte[in.readUnsignedShort()];
+                in.readFully(id);
+                loggedModel = new String(id, StandardCharsets.UTF_8);
+                headerBytes += Short.BYTES + id.length;
+            }
+            valid = headerBytes;
+
+            byte[] payload;
+            while ((payload = readRecord(in)) != null) {
+                valid += 2L * Integer.BYTES + payload.length;
+                count++;
+                if (payload[0] == ADD_CHUNK) {
+                    embeddingDimensions.add(addDimension(payload));
+                }
+            }
+        }
+
+        if (Files.size(path) > valid) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        sizeBytes = valid;
+        records = count;
+    }
+
+    /**
+     * Embedding dimension of an ADD_CHUNK payload, read without decoding the text and metadata
+     */
+    private static int addDimension(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int textEnd = 1 + Integer.BYTES + buffer.getInt(1);
+        return buffer.getInt(textEnd + Integer.BYTES + buffer.getInt(textEnd));
+    }
+
+    private void writeHeader(long newGeneration) throws IOException {
+        writeLog(newGeneration, -1);
+    }
+
+    /**
+     * Atomically replace the log by a header for newGeneration followed by the current log's bytes from
+     * tailFrom on (none when negative)
+     */
+    private void writeLog(long newGeneration, long tailFrom) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream header = new DataOutputStream(stream)) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeLong(newGeneration);
+            header.writeUTF(model);
+            header.flush();
+            if (tailFrom >= 0) {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long end = source.size();
+                    for (long position = tailFrom; position < end; ) {
+                        position += source.transferTo(position, end - position, stream.getChannel());
+                    }
+                }
+            }
+            stream.getChannel().force(true);
+            headerBytes = header.size();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        generation = newGeneration;
+        loggedModel = model;
+        sizeBytes = headerBytes;
+        records = 0;
+        embeddingDimensions.clear();
+    }
+
+    private void openForAppend() throws IOException {
+        file = new FileOutputStream(path.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+    }
+}
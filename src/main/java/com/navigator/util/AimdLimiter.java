@@ -0,0 +1,156 @@
+package com.navigator.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit with additive increase / multiplicative decrease.
+ * Every success raises the limit by 1 / limit (about +1 per limit's worth of calls). An overload signal (the
+ * provider rejecting calls) halves it, and a call slower than latencyTolerance x the baseline latency trims it
+ * by 10%, so the limit settles just below the point where the provider starts queueing. The baseline is the
+ * fastest call of the previous 100. Waiting callers are admitted strictly in arrival order.
+ */
+public class AimdLimiter {
+
+    private static final int LATENCY_WINDOW = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Object> waiters = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long overloads;
+    private long slowCalls;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Wait for a slot; every acquire must be followed by exactly one of onSuccess, onOverload or onFailure
+     */
+    public void acquire() throws InterruptedException {
+        acquire(false, 0);
+    }
+
+    /**
+     * Wait at most timeoutNanos for a slot; returns false, holding no slot, when none was granted in time.
+     * A granted slot must be released like one from {@link #acquire()}.
+     */
+    public boolean tryAcquire(long timeoutNanos) throws InterruptedException {
+        return acquire(true, timeoutNanos);
+    }
+
+    private boolean acquire(boolean timed, long timeoutNanos) throws InterruptedException {
+        Object ticket = new Object();
+        lock.lock();
+        try {
+            waiters.addLast(ticket);
+            try {
+                long remaining = timeoutNanos;
+                while (waiters.peekFirst() != ticket || inFlight >= (int) limit) {
+                    if (!timed) {
+                        changed.await();
+                    } else if (remaining <= 0) {
+                        waiters.remove(ticket);
+                        changed.signalAll();
+                        return false;
+                    } else {
+                        remaining = changed.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                waiters.remove(ticket);
+                changed.signalAll();
+                throw e;
+            }
+            waiters.removeFirst();
+            inFlight++;
+            // The next caller in line may fit as well
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            if (baselineNanos == Long.MAX_VALUE || ++windowSamples >= LATENCY_WINDOW) {
+                baselineNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            if (latencyNanos > latencyTolerance * baselineNanos) {
+                slowCalls++;
+                limit = Math.max(minLimit, limit * 0.9);
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onOverload() {
+        lock.lock();
+        try {
+            overloads++;
+            limit = Math.max(minLimit, limit / 2);
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A call that failed for reasons unrelated to load; leaves the limit unchanged
+     */
+    public void onFailure() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiters.size());
+            stats.put("overloads", overloads);
+            stats.put("slowCalls", slowCalls);
+            stats.put("baselineMillis", baselineNanos == Long.MAX_VALUE ? 0 : baselineNanos / 1_000_000);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        changed.signalAll();
+    }
+}
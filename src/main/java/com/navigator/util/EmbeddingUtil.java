@@ -1,13 +1,58 @@
 package com.navigator.util;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Utility class for vector operations.
  * Includes cosine similarity and other embedding-related functions.
+ * The float[] kernels use the JDK Vector API ({@link SimdKernels}) when the
+ * jdk.incubator.vector module is enabled and SIMD is switched on, and scalar loops otherwise.
  */
 public class EmbeddingUtil {
 
+    private static final boolean SIMD_AVAILABLE = detectSimd();
+
+    // Set from configuration at startup and by benchmarks, read by every kernel call on any thread
+    private static volatile boolean simdEnabled = SIMD_AVAILABLE;
+
+    /**
+     * Whether the Vector API module is present in this JVM
+     */
+    public static boolean isSimdAvailable() {
+        return SIMD_AVAILABLE;
+    }
+
+    public static boolean isSimdEnabled() {
+        return simdEnabled;
+    }
+
+    /**
+     * Switch the float[] kernels between SIMD and scalar. Ignored when the module is not available.
+     */
+    public static void setSimdEnabled(boolean enabled) {
+        simdEnabled = enabled && SIMD_AVAILABLE;
+    }
+
+    /**
+     * Number of float lanes processed per SIMD instruction (1 when running scalar)
+     */
+    public static int simdLanes() {
+        return simdEnabled ? SimdKernels.lanes() : 1;
+    }
+
+    private static boolean detectSimd() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return SimdKernels.lanes() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
     /**
      * Calculate cosine similarity between two vectors
      */
@@ -71,4 +116,198 @@ public class EmbeddingUtil {
 
         return normalized;
     }
+
+    /**
+     * Dot product of two primitive vectors
+     */
+    public static float dot(float[] vectorA, float[] vectorB) {
+        if (vectorA.length != vectorB.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return dot(vectorA, vectorB, 0, vectorA.length);
+    }
+
+    /**
+     * Dot product of a vector against a row stored at the given offset of a row-major matrix
+     */
+    public static float dot(float[] vector, float[] data, int offset, int length) {
+        return dot(vector, 0, data, offset, length);
+    }
+
+    /**
+     * Dot product of two rows given by array and offset
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.dot(a, aOffset, b, bOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product of a vector against little-endian floats stored in a (direct) buffer
+     */
+    public static float dot(float[] vector, ByteBuffer buffer, int byteOffset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.dot(vector, buffer, byteOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += vector[i] * buffer.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product of two rows of little-endian floats stored in the same buffer
+     */
+    public static float dot(ByteBuffer buffer, int aByteOffset, int bByteOffset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.dot(buffer, aByteOffset, bByteOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += buffer.getFloat(aByteOffset + i * Float.BYTES) * buffer.getFloat(bByteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    /**
+     * Integer dot product of two int8 code rows
+     */
+    public static int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.dotInt8(a, aOffset, b, bOffset, length);
+        }
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * Euclidean norm of a primitive vector
+     */
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector, 0, vector.length));
+    }
+
+    /**
+     * Calculate cosine similarity between two primitive vectors
+     */
+    public static double cosineSimilarity(float[] vectorA, float[] vectorB) {
+        if (vectorA.length != vectorB.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return cosineSimilarity(vectorA, norm(vectorA), vectorB, 0, vectorA.length);
+    }
+
+    /**
+     * Cosine similarity of a vector (with its norm precomputed) against a row of a row-major matrix
+     */
+    public static double cosineSimilarity(float[] vector, float vectorNorm, float[] data, int offset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.cosineSimilarity(vector, vectorNorm, data, offset, length);
+        }
+        float dotProduct = 0.0f;
+        float rowNorm = 0.0f;
+        for (int i = 0; i < length; i++) {
+            float value = data[offset + i];
+            dotProduct += vector[i] * value;
+            rowNorm += value * value;
+        }
+
+        if (vectorNorm == 0.0f || rowNorm == 0.0f) {
+            return 0.0;
+        }
+
+        return dotProduct / (vectorNorm * Math.sqrt(rowNorm));
+    }
+
+    /**
+     * Calculate Euclidean distance between two primitive vectors
+     */
+    public static double euclideanDistance(float[] vectorA, float[] vectorB) {
+        if (vectorA.length != vectorB.length) {
+            throw new IllegalArgumentException("Vectors must have the same dimension");
+        }
+        return Math.sqrt(squaredDistance(vectorA, 0, vectorB, 0, vectorA.length));
+    }
+
+    /**
+     * Squared Euclidean distance of two rows given by array and offset
+     */
+    public static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (simdEnabled) {
+            return SimdKernels.squaredDistance(a, aOffset, b, bOffset, length);
+        }
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Batch kernel: dot product of one query against rows [fromRow, toRow) of a row-major matrix.
+     * scores[i] receives the score of row fromRow + i.
+     */
+    public static void dotRows(float[] query, float[] data, int dimension, int fromRow, int toRow, float[] scores) {
+        if (simdEnabled) {
+            SimdKernels.dotRows(query, data, dimension, fromRow, toRow, scores);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            float sum = 0.0f;
+            int offset = row * dimension;
+            for (int i = 0; i < dimension; i++) {
+                sum += query[i] * data[offset + i];
+            }
+            scores[row - fromRow] = sum;
+        }
+    }
+
+    /**
+     * Normalize a primitive vector to unit length, returning a new array
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        float[] normalized = new float[vector.length];
+        if (norm == 0.0f) {
+            return normalized;
+        }
+
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] / norm;
+        }
+        return normalized;
+    }
+
+    /**
+     * Box a primitive vector for APIs that only accept collections (e.g. the Qdrant client)
+     */
+    public static List<Float> toList(float[] vector) {
+        List<Float> result = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Unbox a vector into a primitive array
+     */
+    public static float[] toArray(List<Float> vector) {
+        float[] result = new float[vector.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector.get(i);
+        }
+        return result;
+    }
 }
@@ -0,0 +1,160 @@
+package com.navigator.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects items submitted by concurrent callers into batches: a batch is closed window after its first item
+ * arrived or when it holds maxBatchSize items, handed to batchCall on the executor, and every caller's future
+ * is completed with its own result. Trades at most one window of delay for one call per batch instead of
+ * one per item. Batch sizes are counted in power-of-two buckets.
+ * Items that cannot share a call (e.g. different API keys) are split by a partition key: each partition of a
+ * window is its own batch, run as its own task, so partitions proceed in parallel and fail independently.
+ */
+public class MicroBatcher<T, R> implements AutoCloseable {
+
+    private final Function<List<T>, List<R>> batchCall;
+    private final Function<T, ?> partition;
+    private final Executor executor;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Pending<T, R>> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    // Batches by size bucket: 1, 2, 3-4, 5-8, ...
+    private final AtomicLongArray sizeCounts;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    /**
+     * @param batchCall returns one result per item, in item order
+     */
+    public MicroBatcher(String name, Duration window, int maxBatchSize, Executor executor,
+                        Function<List<T>, List<R>> batchCall) {
+        this(name, window, maxBatchSize, executor, item -> Boolean.TRUE, batchCall);
+    }
+
+    /**
+     * @param partition items with equal keys may share a batch
+     * @param batchCall returns one result per item, in item order; every item of a call has the same key
+     */
+    public MicroBatcher(String name, Duration window, int maxBatchSize, Executor executor,
+                        Function<T, ?> partition, Function<List<T>, List<R>> batchCall) {
+        this.batchCall = batchCall;
+        this.partition = partition;
+        this.executor = executor;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.sizeCounts = new AtomicLongArray(bucket(this.maxBatchSize) + 1);
+        this.dispatcher = new Thread(this::run, name);
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Batcher is closed"));
+            return future;
+        }
+        queue.add(new Pending<>(item, future));
+        return future;
+    }
+
+    public Map<String, Object> stats() {
+        long batchCount = batches.sum();
+        Map<String, Object> distribution = new LinkedHashMap<>();
+        for (int b = 0; b < sizeCounts.length(); b++) {
+            int low = b == 0 ? 1 : (1 << (b - 1)) + 1;
+            int high = Math.min(1 << b, maxBatchSize);
+            distribution.put(low == high ? String.valueOf(low) : low + "-" + high, sizeCounts.get(b));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("windowMillis", windowNanos / 1_000_000.0);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("batches", batchCount);
+        stats.put("items", items.sum());
+        stats.put("averageBatchSize", batchCount == 0 ? 0.0 : (double) items.sum() / batchCount);
+        stats.put("batchSizes", distribution);
+        stats.put("queued", queue.size());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+    }
+
+    private void run() {
+        List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    // Past the window, still take whatever is already waiting
+                    Pending<T, R> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                Map<Object, List<Pending<T, R>>> partitions = new LinkedHashMap<>();
+                for (Pending<T, R> pending : batch) {
+                    partitions.computeIfAbsent(partition.apply(pending.item()), key -> new ArrayList<>()).add(pending);
+                }
+                partitions.values().forEach(this::dispatch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Closing
+        }
+        batch.addAll(queue);
+        batch.forEach(pending -> pending.future.completeExceptionally(new IllegalStateException("Batcher is closed")));
+    }
+
+    private void dispatch(List<Pending<T, R>> batch) {
+        batches.increment();
+        items.add(batch.size());
+        sizeCounts.incrementAndGet(bucket(batch.size()));
+        try {
+            executor.execute(() -> {
+                try {
+                    List<R> results = batchCall.apply(batch.stream().map(Pending::item).toList());
+                    if (results.size() != batch.size()) {
+                        throw new IllegalStateException("Expected " + batch.size() + " results, got " + results.size());
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).future.complete(results.get(i));
+                    }
+                } catch (Throwable t) {
+                    batch.forEach(pending -> pending.future.completeExceptionally(t));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private static int bucket(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private record Pending<T, R>(T item, CompletableFuture<R> future) {
+    }
+}
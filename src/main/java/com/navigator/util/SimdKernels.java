@@ -0,0 +1,199 @@
+package com.navigator.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Vectorized float kernels built on the JDK Vector API.
+ * Only loaded by {@link EmbeddingUtil} when the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector); otherwise the scalar loops are used.
+ */
+final class SimdKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    // Bytes loaded per step: enough to fill one preferred int vector when widened, but at least 64 bits,
+    // the smallest shape there is (a 128-bit host has 4 int lanes, and no 32-bit byte vector)
+    private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.max(64, INT_SPECIES.length() * Byte.SIZE)));
+    // Int vectors each loaded byte vector widens into
+    private static final int BYTE_PARTS = BYTE_SPECIES.length() / INT_SPECIES.length();
+    // Rows scored together by dotRows, so that each query slice is loaded once per group
+    private static final int ROW_GROUP = 4;
+
+    private SimdKernels() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float dot(float[] vector, ByteBuffer buffer, int byteOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, vector, i);
+            FloatVector vb = FloatVector.fromByteBuffer(SPECIES, buffer, byteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += vector[i] * buffer.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    static float dot(ByteBuffer buffer, int aByteOffset, int bByteOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromByteBuffer(SPECIES, buffer, aByteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            FloatVector vb = FloatVector.fromByteBuffer(SPECIES, buffer, bByteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += buffer.getFloat(aByteOffset + i * Float.BYTES) * buffer.getFloat(bByteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    static int dotInt8(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector acc = IntVector.zero(INT_SPECIES);
+        int upper = BYTE_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += BYTE_SPECIES.length()) {
+            ByteVector va = ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i);
+            for (int part = 0; part < BYTE_PARTS; part++) {
+                IntVector ia = (IntVector) va.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                IntVector ib = (IntVector) vb.convertShape(VectorOperators.B2I, INT_SPECIES, part);
+                acc = acc.add(ia.mul(ib));
+            }
+        }
+
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, aOffset + i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            acc = diff.fma(diff, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    static double cosineSimilarity(float[] vector, float vectorNorm, float[] data, int offset, int length) {
+        FloatVector dotAcc = FloatVector.zero(SPECIES);
+        FloatVector normAcc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, vector, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, data, offset + i);
+            dotAcc = va.fma(vb, dotAcc);
+            normAcc = vb.fma(vb, normAcc);
+        }
+
+        float dotProduct = dotAcc.reduceLanes(VectorOperators.ADD);
+        float rowNorm = normAcc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float value = data[offset + i];
+            dotProduct += vector[i] * value;
+            rowNorm += value * value;
+        }
+
+        if (vectorNorm == 0.0f || rowNorm == 0.0f) {
+            return 0.0;
+        }
+        return dotProduct / (vectorNorm * Math.sqrt(rowNorm));
+    }
+
+    static void dotRows(float[] query, float[] data, int dimension, int fromRow, int toRow, float[] scores) {
+        int upper = SPECIES.loopBound(dimension);
+        int row = fromRow;
+        for (; row + ROW_GROUP <= toRow; row += ROW_GROUP) {
+            int offset0 = row * dimension;
+            int offset1 = offset0 + dimension;
+            int offset2 = offset1 + dimension;
+            int offset3 = offset2 + dimension;
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            FloatVector acc2 = FloatVector.zero(SPECIES);
+            FloatVector acc3 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+                acc0 = q.fma(FloatVector.fromArray(SPECIES, data, offset0 + i), acc0);
+                acc1 = q.fma(FloatVector.fromArray(SPECIES, data, offset1 + i), acc1);
+                acc2 = q.fma(FloatVector.fromArray(SPECIES, data, offset2 + i), acc2);
+                acc3 = q.fma(FloatVector.fromArray(SPECIES, data, offset3 + i), acc3);
+            }
+
+            float sum0 = acc0.reduceLanes(VectorOperators.ADD);
+            float sum1 = acc1.reduceLanes(VectorOperators.ADD);
+            float sum2 = acc2.reduceLanes(VectorOperators.ADD);
+            float sum3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                float q = query[i];
+                sum0 += q * data[offset0 + i];
+                sum1 += q * data[offset1 + i];
+                sum2 += q * data[offset2 + i];
+                sum3 += q * data[offset3 + i];
+            }
+            int at = row - fromRow;
+            scores[at] = sum0;
+            scores[at + 1] = sum1;
+            scores[at + 2] = sum2;
+            scores[at + 3] = sum3;
+        }
+        for (; row < toRow; row++) {
+            scores[row - fromRow] = dot(query, 0, data, row * dimension, dimension);
+        }
+    }
+}
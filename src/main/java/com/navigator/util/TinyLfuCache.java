@@ -0,0 +1,227 @@
+package com.navigator.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size- and time-bounded in-memory cache with W-TinyLFU eviction.
+ * New entries go to a small LRU window (1% of the capacity). An entry pushed out of the window is admitted
+ * to the main area only if a count-min sketch of recent accesses rates it more popular than the main area's
+ * eviction victim, so a stream of one-off keys cannot flush the frequently used ones. The main area is a
+ * segmented LRU: entries hit a second time move from probation to a protected segment (80% of the main area).
+ * Sketch counters are halved periodically, so past popularity fades. Entries expire ttl after they were put.
+ * Synchronized: meant for values that are expensive to compute, such as remote calls.
+ */
+public class TinyLfuCache<K, V> {
+
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+
+    // Insertion-ordered: the first entry of each map is its least recently used one
+    private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Entry<V>> protectedArea = new LinkedHashMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param ttl time an entry stays valid after it was put; zero or negative for no expiry
+     */
+    public TinyLfuCache(int maximumSize, Duration ttl) {
+        int capacity = Math.max(1, maximumSize);
+        this.windowMax = Math.max(1, capacity / 100);
+        this.mainMax = capacity - windowMax;
+        this.protectedMax = (int) (mainMax * 0.8);
+        this.ttlNanos = ttl.isNegative() || ttl.isZero() ? Long.MAX_VALUE : ttl.toNanos();
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * The cached value for key, or null when it is absent or expired
+     */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        Entry<V> entry;
+        LinkedHashMap<K, Entry<V>> area;
+        if ((entry = window.get(key)) != null) {
+            area = window;
+        } else if ((entry = probation.get(key)) != null) {
+            area = probation;
+        } else if ((entry = protectedArea.get(key)) != null) {
+            area = protectedArea;
+        } else {
+            misses++;
+            return null;
+        }
+
+        area.remove(key);
+        if (expired(entry)) {
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        if (area == window) {
+            window.put(key, entry);
+        } else {
+            // A second hit in the main area protects the entry; the protected LRU entry goes back on probation
+            protectedArea.put(key, entry);
+            if (protectedArea.size() > protectedMax) {
+                Map.Entry<K, Entry<V>> demoted = removeEldest(protectedArea);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, System.nanoTime());
+        if (window.containsKey(key)) {
+            window.put(key, entry);
+        } else if (probation.containsKey(key)) {
+            probation.put(key, entry);
+        } else if (protectedArea.containsKey(key)) {
+            protectedArea.put(key, entry);
+        } else {
+            window.put(key, entry);
+            if (window.size() > windowMax) {
+                Map.Entry<K, Entry<V>> candidate = removeEldest(window);
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedArea.clear();
+    }
+
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedArea.size();
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", size());
+        stats.put("maxEntries", windowMax + mainMax);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        return stats;
+    }
+
+    /**
+     * Move an entry evicted from the window into the main area, unless the main area's victim is more popular
+     */
+    private void admit(K candidate, Entry<V> entry) {
+        if (expired(entry)) {
+            expirations++;
+            return;
+        }
+        if (probation.size() + protectedArea.size() < mainMax) {
+            probation.put(candidate, entry);
+            return;
+        }
+
+        LinkedHashMap<K, Entry<V>> victimArea = probation.isEmpty() ? protectedArea : probation;
+        if (victimArea.isEmpty()) {
+            evictions++;
+            return;
+        }
+        K victim = victimArea.keySet().iterator().next();
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            victimArea.remove(victim);
+            probation.put(candidate, entry);
+        }
+        evictions++;
+    }
+
+    private boolean expired(Entry<V> entry) {
+        return System.nanoTime() - entry.createdNanos >= ttlNanos;
+    }
+
+    private static <K, V> Map.Entry<K, Entry<V>> removeEldest(LinkedHashMap<K, Entry<V>> area) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = area.entrySet().iterator();
+        Map.Entry<K, Entry<V>> eldest = iterator.next();
+        Map.Entry<K, Entry<V>> removed = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return removed;
+    }
+
+    private record Entry<V>(V value, long createdNanos) {
+    }
+
+    /**
+     * Count-min sketch of access frequencies: four rows of 4-bit saturating counters (kept in bytes), the
+     * estimate being the minimum over the rows. After 10 x width increments every counter is halved.
+     */
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+            for (int r = 0; r < rows.length; r++) {
+                rows[r] = new byte[width];
+            }
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int r = 0; r < rows.length; r++) {
+                int index = index(hash, r);
+                if (rows[r][index] < MAX_COUNT) {
+                    rows[r][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int r = 0; r < rows.length; r++) {
+                frequency = Math.min(frequency, rows[r][index(hash, r)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h += h >>> 16;
+            return h & mask;
+        }
+
+        private void age() {
+            for (byte[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.navigator.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled continuously at a per-minute rate, holding at most one minute's worth of tokens.
+ * Callers reserve tokens up front: a reservation may overdraw the bucket, and its caller then sleeps until the
+ * refill has covered it. Reservations queue up in arrival order, so a large request is never starved by a
+ * stream of small ones. Interactive callers use {@link #tryAcquire} instead, which gives up rather than waiting
+ * longer than they can afford. A rate of zero or less means unlimited.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(long perMinute) {
+        this.capacity = perMinute;
+        this.tokensPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Take amount tokens, waiting as long as the bucket needs to cover them; returns the time waited in nanos
+     */
+    public long acquire(long amount) throws InterruptedException {
+        long wait = reserve(amount);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return wait;
+    }
+
+    /**
+     * Take amount tokens if the bucket covers them within maxWaitNanos, waiting that long; otherwise take nothing
+     * and return false
+     */
+    public boolean tryAcquire(long amount, long maxWaitNanos) throws InterruptedException {
+        long wait = reserve(amount, maxWaitNanos);
+        if (wait < 0) {
+            return false;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Return tokens taken for a call that was not made
+     */
+    public synchronized void refund(long amount) {
+        if (isUnlimited()) {
+            return;
+        }
+        refill();
+        tokens = Math.min(capacity, tokens + amount);
+    }
+
+    /**
+     * Tokens currently available (negative while reservations are waiting for the refill)
+     */
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    public boolean isUnlimited() {
+        return capacity <= 0;
+    }
+
+    private long reserve(long amount) {
+        return reserve(amount, Long.MAX_VALUE);
+    }
+
+    /**
+     * Take amount tokens and return the wait until the refill covers them, or -1 (taking nothing) when that
+     * wait would exceed maxWaitNanos
+     */
+    private synchronized long reserve(long amount, long maxWaitNanos) {
+        if (isUnlimited()) {
+            return 0;
+        }
+        refill();
+        double remaining = tokens - amount;
+        long wait = remaining >= 0 ? 0 : (long) Math.ceil(-remaining / tokensPerNano);
+        if (wait > maxWaitNanos) {
+            return -1;
+        }
+        tokens = remaining;
+        return wait;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -1,7 +1,9 @@
 package com.navigator.controller;
 
 import com.navigator.model.request.RAGChatRequest;
+import com.navigator.model.response.SourceUpdateResponse;
 import com.navigator.service.ConversationService;
+import com.navigator.service.QdrantService;
 import com.navigator.service.RAGService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +12,14 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(RAGController.class)
@@ -25,10 +34,13 @@ public class RAGControllerTest {
     @MockBean
     private ConversationService conversationService;
 
+    @MockBean
+    private QdrantService qdrantService;
+
     @Test
     public void testRagChatEndpoint() {
         // Mock dependencies
-        when(ragService.query(anyString(), anyString()))
+        when(ragService.query(anyString(), any(), any(), any(), anyString()))
                 .thenReturn("RAG Response");
         when(ragService.getDocumentCount()).thenReturn(5);
 
@@ -50,6 +62,34 @@ public class RAGControllerTest {
                 .jsonPath("$.documentsCount").isEqualTo(5);
     }
 
+    @Test
+    public void testRagChatForwardsMetadataFilters() {
+        // Mock dependencies
+        when(ragService.query(anyString(), any(), any(), any(), anyString()))
+                .thenReturn("Grade 3 answer");
+
+        // Create request restricted to grade 3 science
+        RAGChatRequest request = new RAGChatRequest();
+        request.setUserMessage("Question");
+        request.setUserId("user123");
+        request.setApiKey("sk-test");
+        request.setGrade("3");
+        request.setSubject("science");
+
+        // Perform request
+        webTestClient.post()
+                .uri("/api/rag-chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Grade 3 answer");
+
+        verify(ragService).query(eq("Question"), any(), any(),
+                eq(Map.of("grade", "3", "subject", "science")), eq("sk-test"));
+    }
+
     @Test
     public void testRagStatusEndpoint() {
         // Mock dependencies
@@ -65,4 +105,103 @@ public class RAGControllerTest {
                 .jsonPath("$.documentsCount").isEqualTo(10)
                 .jsonPath("$.status").isEqualTo("ready");
     }
+
+    @Test
+    public void testDeleteSourceEndpoint() {
+        // Mock dependencies
+        when(ragService.deleteSource("notes.pdf", null))
+                .thenReturn(new SourceUpdateResponse("notes.pdf", null, "deleted", 0, 12));
+        when(ragService.getDocumentCount()).thenReturn(30);
+
+        // Perform request
+        webTestClient.delete()
+                .uri("/api/rag/sources/notes.pdf")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("success")
+                .jsonPath("$.source.chunksRemoved").isEqualTo(12)
+                .jsonPath("$.total_chunks").isEqualTo(30);
+    }
+
+    @Test
+    public void testDeleteNestedSourceByPath() {
+        // Mock dependencies
+        when(ragService.deleteSource("grades/3/science/notes.pdf", null))
+                .thenReturn(new SourceUpdateResponse("grades/3/science/notes.pdf", null, "deleted", 0, 7));
+
+        // Perform request on a knowledge base path
+        webTestClient.delete()
+                .uri("/api/rag/sources/grades/3/science/notes.pdf")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.source.filename").isEqualTo("grades/3/science/notes.pdf");
+    }
+
+    @Test
+    public void testDeleteSourceAlsoDeletesQdrantPoints() {
+        // Mock dependencies
+        when(qdrantService.isAvailable()).thenReturn(true);
+        when(ragService.deleteSource("notes.pdf", "abc"))
+                .thenReturn(new SourceUpdateResponse("notes.pdf", "abc", "deleted", 0, 4));
+
+        // Perform request
+        webTestClient.delete()
+                .uri("/api/rag/sources/notes.pdf?contentHash=abc")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(qdrantService).deleteSource("notes.pdf", "abc");
+    }
+
+    @Test
+    public void testDeleteUnknownSourceReturnsNotFound() {
+        // Mock dependencies
+        when(ragService.deleteSource(anyString(), any()))
+                .thenReturn(new SourceUpdateResponse("missing.pdf", "abc", "not_found", 0, 0));
+
+        // Perform request for one version only
+        webTestClient.delete()
+                .uri("/api/rag/sources/missing.pdf?contentHash=abc")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error");
+
+        verify(ragService).deleteSource("missing.pdf", "abc");
+    }
+
+    @Test
+    public void testDeleteSourceWithoutAPathIsABadRequest() {
+        // Perform request on a name with no path segment
+        webTestClient.delete()
+                .uri("/api/rag/sources/")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("error");
+
+        verify(ragService, never()).deleteSource(any(), any());
+    }
+
+    @Test
+    public void testQdrantFailureAfterALocalDeleteIsReported() {
+        // Mock dependencies: the local delete succeeds, the Qdrant delete fails
+        when(qdrantService.isAvailable()).thenReturn(true);
+        when(ragService.deleteSource("notes.pdf", null))
+                .thenReturn(new SourceUpdateResponse("notes.pdf", null, "deleted", 0, 3));
+        doThrow(new RuntimeException("Error deleting source from Qdrant: unavailable"))
+                .when(qdrantService).deleteSource("notes.pdf", null);
+
+        // Perform request
+        webTestClient.delete()
+                .uri("/api/rag/sources/notes.pdf")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("success")
+                .jsonPath("$.source.chunksRemoved").isEqualTo(3)
+                .jsonPath("$.qdrant_error").isEqualTo("Error deleting source from Qdrant: unavailable");
+    }
 }
@@ -0,0 +1,91 @@
+package com.navigator.controller;
+
+import com.navigator.model.request.BatchSearchRequest;
+import com.navigator.model.request.SearchRequest;
+import com.navigator.model.response.SearchResponse;
+import com.navigator.service.QdrantService;
+import com.navigator.service.RAGService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(SearchController.class)
+public class SearchControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private QdrantService qdrantService;
+
+    @MockBean
+    private RAGService ragService;
+
+    @Test
+    public void testSearchFallsBackToInMemoryIndex() {
+        // Mock dependencies
+        when(qdrantService.isAvailable()).thenReturn(false);
+        when(ragService.search(anyString(), any(), any(), any(), anyString()))
+                .thenReturn(List.of(new SearchResponse("Erosion wears rock away", 0.83, Map.of("grade", "4"))));
+
+        // Create request
+        SearchRequest request = new SearchRequest();
+        request.setQuery("What is erosion?");
+        request.setTopK(1);
+        request.setMinScore(0.5);
+        request.setApiKey("sk-test");
+
+        // Perform request
+        webTestClient.post()
+                .uri("/api/search")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].text").isEqualTo("Erosion wears rock away")
+                .jsonPath("$[0].score").isEqualTo(0.83)
+                .jsonPath("$[0].metadata.grade").isEqualTo("4");
+    }
+
+    @Test
+    public void testBatchSearchEndpoint() {
+        // Mock dependencies
+        when(qdrantService.isAvailable()).thenReturn(true);
+        when(qdrantService.searchBatch(anyList(), anyInt(), any(), any(), anyString()))
+                .thenReturn(List.of(
+                        List.of(new SearchResponse("Bees carry pollen", 0.91, Map.of("grade", "3"))),
+                        List.of()));
+
+        // Create request
+        BatchSearchRequest request = new BatchSearchRequest();
+        request.setQueries(List.of("What is pollination?", "What is erosion?"));
+        request.setTopK(1);
+        request.setApiKey("sk-test");
+
+        // Perform request
+        webTestClient.post()
+                .uri("/api/search/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].query").isEqualTo("What is pollination?")
+                .jsonPath("$[0].results[0].text").isEqualTo("Bees carry pollen")
+                .jsonPath("$[0].results[0].score").isEqualTo(0.91)
+                .jsonPath("$[1].results").isEmpty();
+    }
+}
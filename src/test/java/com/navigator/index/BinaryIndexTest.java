@@ -0,0 +1,127 @@
+package com.navigator.index;
+
+import com.navigator.util.EmbeddingUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static com.navigator.index.IndexFixtures.addRows;
+import static com.navigator.index.IndexFixtures.ordinals;
+import static com.navigator.index.IndexFixtures.randomVector;
+import static com.navigator.index.IndexFixtures.randomVectors;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryIndexTest {
+
+    private static final int DIMENSION = 96;
+
+    @Test
+    public void testSignBitsPackPositiveComponents() {
+        float[] vector = new float[70];
+        vector[0] = 0.3f;
+        vector[1] = -0.2f;
+        vector[63] = 1f;
+        vector[64] = 0.1f;
+        vector[69] = 0.5f;
+        long[] words = {-1L, -1L, -1L};
+        BinaryIndex.signBits(vector, words, 1);
+
+        assertEquals(-1L, words[0]);
+        assertEquals(1L | (1L << 63), words[1]);
+        assertEquals(1L | (1L << 5), words[2]);
+    }
+
+    @Test
+    public void testRecallImprovesWithOversample() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 3000, new Random(31));
+        ExactIndex exact = new ExactIndex(vectors);
+        BinaryIndex binary = buildIndex(vectors, null, 4);
+
+        double narrow = recall(vectors, exact, binary, 1);
+        double medium = recall(vectors, exact, binary, 8);
+        double wide = recall(vectors, exact, binary, 64);
+        assertTrue(narrow < medium && medium < wide, "recall " + narrow + ", " + medium + ", " + wide);
+        assertTrue(wide >= 0.85, "recall@10 at oversample 64 was " + wide);
+    }
+
+    @Test
+    public void testScoresAreExactCosines() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 500, new Random(33));
+        BinaryIndex binary = buildIndex(vectors, null, 8);
+
+        float[] query = randomVector(DIMENSION, new Random(34));
+        SearchHits hits = binary.search(query, 5, -1f);
+        assertEquals(5, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(vectors.dot(query, hits.ordinal(i)), hits.score(i), 0f);
+            if (i > 0) {
+                assertTrue(hits.score(i) <= hits.score(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testFullOversampleMatchesExactScan() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 400, new Random(35));
+        BinaryIndex binary = buildIndex(vectors, null, 8);
+        ExactIndex exact = new ExactIndex(vectors);
+
+        float[] query = randomVector(DIMENSION, new Random(36));
+        assertArrayEquals(ordinals(exact.search(query, 8, 0.1f)), ordinals(binary.search(query, 8, 0.1f, 50)));
+    }
+
+    @Test
+    public void testFilteredSearchOnlyReturnsMatchingRows() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 1000, new Random(37));
+        BinaryIndex binary = buildIndex(vectors, null, 8);
+        BitSet filter = new BitSet();
+        filter.set(100, 200);
+
+        SearchHits hits = binary.search(randomVector(DIMENSION, new Random(38)), 10, -1f, filter);
+        assertEquals(10, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertTrue(hits.ordinal(i) >= 100 && hits.ordinal(i) < 200);
+        }
+    }
+
+    @Test
+    public void testCodesAreOneBitPerDimension() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 1000, new Random(39));
+        BinaryIndex binary = buildIndex(vectors, null, 8);
+        long floatBytes = 1000L * DIMENSION * Float.BYTES;
+        assertTrue(binary.codeMemoryBytes() <= floatBytes / 16, "codes take " + binary.codeMemoryBytes() + " bytes");
+    }
+
+    /**
+     * Recall@10 for queries near stored rows, as questions are near the chunks that answer them; isotropic
+     * random queries are the worst case for sign bits and not what the index is for
+     */
+    private static double recall(VectorMatrix vectors, ExactIndex exact, BinaryIndex binary, int oversample) {
+        Random random = new Random(32);
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors.get(random.nextInt(vectors.size()));
+            for (int i = 0; i < DIMENSION; i++) {
+                query[i] += (float) (0.1 * random.nextGaussian());
+            }
+            query = EmbeddingUtil.normalize(query);
+            SearchHits truth = exact.search(query, k, -1f);
+            SearchHits approximate = binary.search(query, k, -1f, oversample);
+            for (int i = 0; i < approximate.size(); i++) {
+                if (truth.contains(approximate.ordinal(i))) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries * k);
+    }
+
+    private static BinaryIndex buildIndex(VectorMatrix vectors, ShardedScanner scanner, int oversample) {
+        return addRows(new BinaryIndex(vectors, scanner, oversample), vectors.size());
+    }
+}
@@ -0,0 +1,243 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static com.navigator.index.IndexFixtures.ordinals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Bm25IndexTest {
+
+    private static final String[] WORDS = {"plants", "light", "water", "roots", "leaves", "soil", "sun", "seeds",
+            "flowers", "energy", "sugar", "oxygen"};
+
+    @Test
+    public void testTokenizeDropsStopWordsAndShortTokens() {
+        assertEquals(List.of("plants", "need", "light", "x2", "\u00e9t\u00e9"),
+                Bm25Index.tokenize("The Plants need a LIGHT, x2 & \u00c9T\u00c9!"));
+        assertTrue(Bm25Index.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void testScoresFollowTermFrequencyAndRarity() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add(0, "plants need light");
+        index.add(1, "plants need light light light");
+        index.add(2, "plants need water");
+        index.add(3, "rocks erode");
+
+        SearchHits hits = index.search("light", 10, null);
+        assertArrayEquals(new int[]{1, 0}, ordinals(hits));
+        assertTrue(hits.score(0) > hits.score(1));
+
+        // A term in three chunks weighs less than one in a single chunk
+        SearchHits mixed = index.search("plants water", 10, null);
+        assertEquals(2, mixed.ordinal(0));
+        assertEquals(3, mixed.size());
+        assertEquals(0, index.search("photosynthesis", 10, null).size());
+    }
+
+    @Test
+    public void testFilterRestrictsResults() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add(0, "plants need light");
+        index.add(1, "plants need water");
+        BitSet filter = new BitSet();
+        filter.set(1);
+        assertArrayEquals(new int[]{1}, ordinals(index.search("plants", 10, filter)));
+    }
+
+    @Test
+    public void testChunksMustBeAddedInOrder() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add(0, "plants");
+        assertThrows(IllegalArgumentException.class, () -> index.add(2, "light"));
+    }
+
+    @Test
+    public void testIncrementalAddsMatchABulkBuild() {
+        List<String> texts = randomTexts(200, new Random(71));
+        Bm25Index incremental = new Bm25Index(1.2f, 0.75f);
+        for (int i = 0; i < 100; i++) {
+            incremental.add(i, texts.get(i));
+        }
+        // Searching in between must not disturb later adds
+        incremental.search("plants light", 5, null);
+        for (int i = 100; i < texts.size(); i++) {
+            incremental.add(i, texts.get(i));
+        }
+
+        assertSameResults(build(texts), incremental, "roots water sun");
+        assertSameResults(build(texts), incremental, "oxygen");
+    }
+
+    @Test
+    public void testDeletedChunksLeaveTheStatistics() {
+        List<String> texts = randomTexts(60, new Random(72));
+        Bm25Index index = build(texts);
+        List<String> liveTexts = new ArrayList<>();
+        List<Integer> liveOrdinals = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (i % 3 == 0) {
+                assertTrue(index.delete(i, texts.get(i)));
+            } else {
+                liveTexts.add(texts.get(i));
+                liveOrdinals.add(i);
+            }
+        }
+        assertFalse(index.delete(0, texts.get(0)));
+        assertFalse(index.delete(60, "plants"));
+        assertEquals(20, index.deletedCount());
+
+        // Scores equal those of an index holding only the live chunks
+        Bm25Index live = build(liveTexts);
+        for (String query : new String[]{"plants light", "soil seeds flowers", "energy"}) {
+            SearchHits expected = live.search(query, 10, null);
+            SearchHits actual = index.search(query, 10, null);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals((int) liveOrdinals.get(expected.ordinal(i)), actual.ordinal(i));
+                assertEquals(expected.score(i), actual.score(i), 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void testDeletingEveryChunkEmptiesTheIndex() {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        index.add(0, "plants need light");
+        index.add(1, "plants need water");
+        index.delete(0, "plants need light");
+        index.delete(1, "plants need water");
+        assertEquals(0, index.search("plants", 10, null).size());
+        assertEquals(0, index.termCount());
+        index.add(2, "plants again");
+        assertArrayEquals(new int[]{2}, ordinals(index.search("plants", 10, null)));
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedByLaterWrites() {
+        List<String> texts = randomTexts(80, new Random(73));
+        Bm25Index index = build(texts.subList(0, 40));
+        Bm25Index snapshot = index.snapshot();
+        SearchHits before = snapshot.search("plants roots", 10, null);
+
+        for (int i = 40; i < texts.size(); i++) {
+            index.add(i, texts.get(i));
+        }
+        // Enough deletes to rewrite the postings
+        for (int i = 0; i < 40; i += 2) {
+            index.delete(i, texts.get(i));
+        }
+
+        SearchHits after = snapshot.search("plants roots", 10, null);
+        assertArrayEquals(ordinals(before), ordinals(after));
+        assertEquals(40, snapshot.size());
+        assertEquals(0, snapshot.deletedCount());
+        assertThrows(IllegalStateException.class, () -> snapshot.add(40, "plants"));
+        assertThrows(IllegalStateException.class, () -> snapshot.delete(1, texts.get(1)));
+    }
+
+    @Test
+    public void testSectionRoundTrip() throws IOException {
+        List<String> texts = randomTexts(50, new Random(74));
+        Bm25Index index = build(texts);
+        index.delete(7, texts.get(7));
+        index.delete(21, texts.get(21));
+
+        Bm25Index restored = Bm25Index.readFrom(read(write(index.snapshot())), 1.2f, 0.75f);
+        assertEquals(50, restored.size());
+        assertEquals(2, restored.deletedCount());
+        assertTrue(restored.isDeleted(21));
+        assertEquals(index.termCount(), restored.termCount());
+        assertSameResults(index, restored, "plants water light");
+        assertSameResults(index, restored, "sugar oxygen");
+        restored.add(50, "plants plants plants");
+        assertEquals(50, restored.search("plants", 1, null).ordinal(0));
+    }
+
+    @Test
+    public void testVersionOneSectionIsRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x424D3235);
+            out.writeInt(1);
+            // Two chunks of two tokens
+            out.writeInt(2);
+            out.writeInt(2);
+            out.writeInt(2);
+            out.writeInt(1);
+            out.writeUTF("plants");
+            out.writeInt(2);
+            out.writeInt(0);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(2);
+        }
+
+        Bm25Index restored = Bm25Index.readFrom(read(bytes.toByteArray()), 1.2f, 0.75f);
+        assertEquals(2, restored.size());
+        assertEquals(0, restored.deletedCount());
+        assertArrayEquals(new int[]{1, 0}, ordinals(restored.search("plants", 10, null)));
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        assertThrows(IOException.class, () -> Bm25Index.readFrom(read(new byte[16]), 1.2f, 0.75f));
+    }
+
+    private static Bm25Index build(List<String> texts) {
+        Bm25Index index = new Bm25Index(1.2f, 0.75f);
+        for (int i = 0; i < texts.size(); i++) {
+            index.add(i, texts.get(i));
+        }
+        return index;
+    }
+
+    private static void assertSameResults(Bm25Index expected, Bm25Index actual, String query) {
+        SearchHits expectedHits = expected.search(query, 10, null);
+        SearchHits actualHits = actual.search(query, 10, null);
+        assertArrayEquals(ordinals(expectedHits), ordinals(actualHits));
+        for (int i = 0; i < expectedHits.size(); i++) {
+            assertEquals(expectedHits.score(i), actualHits.score(i), 1e-5f);
+        }
+    }
+
+    private static List<String> randomTexts(int count, Random random) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            int words = 3 + random.nextInt(12);
+            for (int w = 0; w < words; w++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    private static byte[] write(Bm25Index index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream read(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,110 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.BitSet;
+import java.util.Random;
+
+import static com.navigator.index.IndexFixtures.addRows;
+import static com.navigator.index.IndexFixtures.ordinals;
+import static com.navigator.index.IndexFixtures.randomVector;
+import static com.navigator.index.IndexFixtures.randomVectors;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int ROWS = 2000;
+
+    @Test
+    public void testRecallAgainstExactScan() {
+        VectorMatrix vectors = randomVectors(DIMENSION, ROWS, new Random(7));
+        HnswIndex hnsw = buildIndex(vectors, 64);
+        ExactIndex exact = new ExactIndex(vectors);
+
+        Random random = new Random(11);
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(DIMENSION, random);
+            SearchHits truth = exact.search(query, k, -1f);
+            SearchHits approximate = hnsw.search(query, k, -1f);
+            assertEquals(k, approximate.size());
+            for (int i = 0; i < approximate.size(); i++) {
+                if (truth.contains(approximate.ordinal(i))) {
+                    found++;
+                }
+            }
+        }
+        double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    public void testResultsAreOrderedAndCutAtMinScore() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 500, new Random(3));
+        HnswIndex hnsw = buildIndex(vectors, 64);
+
+        float[] query = vectors.get(42);
+        SearchHits hits = hnsw.search(query, 5, 0.0f);
+        assertEquals(42, hits.ordinal(0));
+        assertEquals(1.0f, hits.score(0), 1e-4f);
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.score(i) <= hits.score(i - 1));
+            assertTrue(hits.score(i) >= 0.0f);
+        }
+        assertEquals(1, hnsw.search(query, 5, 0.999f).size());
+    }
+
+    @Test
+    public void testFilteredSearchOnlyReturnsMatchingRows() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 1000, new Random(5));
+        HnswIndex hnsw = buildIndex(vectors, 64);
+        BitSet filter = new BitSet();
+        for (int row = 0; row < 1000; row += 2) {
+            filter.set(row);
+        }
+
+        SearchHits hits = hnsw.search(vectors.get(7), 10, -1f, filter);
+        assertEquals(10, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertTrue(filter.get(hits.ordinal(i)), "row " + hits.ordinal(i) + " is not in the filter");
+        }
+    }
+
+    @Test
+    public void testWriteAndReadKeepTheGraph() throws Exception {
+        VectorMatrix vectors = randomVectors(DIMENSION, 800, new Random(9));
+        HnswIndex hnsw = buildIndex(vectors, 64);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hnsw.writeTo(new DataOutputStream(bytes));
+        HnswIndex restored = HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                vectors, 100, 64);
+
+        assertEquals(hnsw.size(), restored.size());
+        float[] query = randomVector(DIMENSION, new Random(13));
+        SearchHits expected = hnsw.search(query, 10, -1f);
+        SearchHits actual = restored.search(query, 10, -1f);
+        assertArrayEquals(ordinals(expected), ordinals(actual));
+    }
+
+    @Test
+    public void testNodesMustBeAddedInOrder() {
+        HnswIndex hnsw = new HnswIndex(randomVectors(DIMENSION, 3, new Random(1)), 8, 50, 20);
+        hnsw.add(0);
+        assertThrows(IllegalArgumentException.class, () -> hnsw.add(2));
+    }
+
+    private static HnswIndex buildIndex(VectorMatrix vectors, int efSearch) {
+        return addRows(new HnswIndex(vectors, 16, 100, efSearch), vectors.size());
+    }
+}
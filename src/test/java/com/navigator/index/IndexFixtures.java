@@ -0,0 +1,48 @@
+package com.navigator.index;
+
+import com.navigator.util.EmbeddingUtil;
+
+import java.util.Random;
+
+/**
+ * Random unit vectors and index helpers shared by the vector index tests
+ */
+final class IndexFixtures {
+
+    private IndexFixtures() {
+    }
+
+    static VectorMatrix randomVectors(int dimension, int rows, Random random) {
+        VectorMatrix vectors = new VectorMatrix(dimension);
+        for (int row = 0; row < rows; row++) {
+            vectors.add(randomVector(dimension, random));
+        }
+        return vectors;
+    }
+
+    static float[] randomVector(int dimension, Random random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return EmbeddingUtil.normalize(vector);
+    }
+
+    /**
+     * Register the first rows rows of the index's matrix
+     */
+    static <T extends VectorIndex> T addRows(T index, int rows) {
+        for (int row = 0; row < rows; row++) {
+            index.add(row);
+        }
+        return index;
+    }
+
+    static int[] ordinals(SearchHits hits) {
+        int[] ordinals = new int[hits.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = hits.ordinal(i);
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,118 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static com.navigator.index.IndexFixtures.addRows;
+import static com.navigator.index.IndexFixtures.ordinals;
+import static com.navigator.index.IndexFixtures.randomVector;
+import static com.navigator.index.IndexFixtures.randomVectors;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Int8IndexTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    public void testQuantizeIsSymmetricPerRow() {
+        float[] vector = {0.5f, -1.0f, 0.25f, 0f};
+        byte[] codes = new byte[6];
+        float scale = Int8Index.quantize(vector, codes, 2);
+
+        assertEquals(1.0f / 127f, scale, 1e-7f);
+        assertArrayEquals(new byte[]{0, 0, 64, -127, 32, 0}, codes);
+        assertEquals(0f, Int8Index.quantize(new float[3], codes, 0), 0f);
+    }
+
+    @Test
+    public void testRecallAgainstExactScan() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 3000, new Random(21));
+        Int8Index int8 = buildIndex(vectors, null, 2);
+        ExactIndex exact = new ExactIndex(vectors);
+
+        Random random = new Random(22);
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(DIMENSION, random);
+            SearchHits truth = exact.search(query, k, -1f);
+            SearchHits approximate = int8.search(query, k, -1f);
+            for (int i = 0; i < approximate.size(); i++) {
+                if (truth.contains(approximate.ordinal(i))) {
+                    found++;
+                }
+            }
+        }
+        double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.95, "recall@10 was " + recall);
+    }
+
+    @Test
+    public void testScoresAreRescoredAtFullPrecision() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 500, new Random(23));
+        Int8Index int8 = buildIndex(vectors, null, 4);
+
+        float[] query = randomVector(DIMENSION, new Random(24));
+        SearchHits hits = int8.search(query, 5, -1f);
+        assertEquals(5, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(vectors.dot(query, hits.ordinal(i)), hits.score(i), 0f);
+        }
+    }
+
+    @Test
+    public void testFullOversampleMatchesExactScan() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 400, new Random(25));
+        Int8Index int8 = buildIndex(vectors, null, 1);
+        ExactIndex exact = new ExactIndex(vectors);
+
+        float[] query = randomVector(DIMENSION, new Random(26));
+        assertArrayEquals(ordinals(exact.search(query, 8, -1f)), ordinals(int8.search(query, 8, -1f, 50)));
+    }
+
+    @Test
+    public void testFilteredAndShardedSearch() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 2000, new Random(27));
+        BitSet filter = new BitSet();
+        for (int row = 0; row < 2000; row += 3) {
+            filter.set(row);
+        }
+        float[] query = randomVector(DIMENSION, new Random(28));
+
+        try (ShardedScanner scanner = new ShardedScanner(4, 256)) {
+            Int8Index sharded = buildIndex(vectors, scanner, 4);
+            Int8Index sequential = buildIndex(vectors, null, 4);
+            assertArrayEquals(ordinals(sequential.search(query, 10, -1f)), ordinals(sharded.search(query, 10, -1f)));
+
+            SearchHits hits = sharded.search(query, 10, -1f, filter);
+            assertEquals(10, hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                assertTrue(filter.get(hits.ordinal(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testCodesAreAQuarterOfTheVectors() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 1000, new Random(29));
+        Int8Index int8 = buildIndex(vectors, null, 4);
+        long floatBytes = 1000L * DIMENSION * Float.BYTES;
+        assertTrue(int8.codeMemoryBytes() < floatBytes / 3, "codes take " + int8.codeMemoryBytes() + " bytes");
+    }
+
+    @Test
+    public void testRowsMustBeAddedInOrder() {
+        Int8Index int8 = new Int8Index(randomVectors(DIMENSION, 3, new Random(1)), null, 4);
+        assertThrows(IllegalArgumentException.class, () -> int8.add(1));
+    }
+
+    private static Int8Index buildIndex(VectorMatrix vectors, ShardedScanner scanner, int oversample) {
+        return addRows(new Int8Index(vectors, scanner, oversample), vectors.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataIndexTest {
+
+    @Test
+    public void testValidateRejectsFieldsWithoutAnIndex() {
+        MetadataIndex index = new MetadataIndex(List.of("grade", "subject"));
+        assertDoesNotThrow(() -> index.validate(Map.of("grade", "3")));
+        assertDoesNotThrow(() -> index.validate(null));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> index.validate(Map.of("grade", "3", "author", "someone")));
+        assertTrue(error.getMessage().contains("author"));
+        assertThrows(IllegalArgumentException.class, () -> index.match(Map.of("author", "someone")));
+    }
+
+    @Test
+    public void testMatchIntersectsTheFilters() {
+        MetadataIndex index = newIndex();
+
+        assertArrayEquals(new int[]{1, 4, 7}, index.matchOrdinals(Map.of("grade", "3")));
+        assertArrayEquals(new int[]{4, 7}, index.matchOrdinals(Map.of("grade", "3", "subject", "science")));
+        assertArrayEquals(new int[]{7}, index.matchOrdinals(Map.of("grade", "3", "subject", "science",
+                "filename", "plants.pdf")));
+        assertEquals(BitSet.valueOf(new long[]{0b10010000}), index.match(Map.of("grade", "3", "subject", "science")));
+
+        // A value that is not there matches nothing, no filter matches everything
+        assertEquals(0, index.matchOrdinals(Map.of("grade", "3", "subject", "history")).length);
+        assertTrue(index.match(Map.of("grade", "12")).isEmpty());
+        assertNull(index.match(Map.of()));
+        assertNull(index.matchOrdinals(null));
+    }
+
+    @Test
+    public void testAddKeepsOrdinalOrder() {
+        MetadataIndex index = new MetadataIndex(List.of("grade"));
+        index.add(0, Map.of("grade", 3));
+        index.add(2, Map.of("grade", 3, "unindexed", "x"));
+        index.add(3, null);
+        // Numbers are indexed by their string form
+        assertArrayEquals(new int[]{0, 2}, index.matchOrdinals(Map.of("grade", "3")));
+        assertThrows(IllegalArgumentException.class, () -> index.add(1, Map.of("grade", 3)));
+        assertEquals(Map.of("grade", Map.of("3", 2)), index.cardinalities());
+    }
+
+    @Test
+    public void testSnapshotIsReadOnlyAndUnchangedByLaterAdds() {
+        MetadataIndex index = newIndex();
+        MetadataIndex snapshot = index.snapshot();
+        index.add(8, Map.of("grade", "3", "subject", "science"));
+
+        assertArrayEquals(new int[]{4, 7}, snapshot.matchOrdinals(Map.of("grade", "3", "subject", "science")));
+        assertArrayEquals(new int[]{4, 7, 8}, index.matchOrdinals(Map.of("grade", "3", "subject", "science")));
+        assertThrows(IllegalStateException.class, () -> snapshot.add(9, Map.of("grade", "3")));
+    }
+
+    @Test
+    public void testSectionRoundTrip() throws IOException {
+        MetadataIndex index = newIndex();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+
+        MetadataIndex restored = MetadataIndex.readFrom(read(bytes.toByteArray()));
+        assertEquals(index.fields(), restored.fields());
+        assertEquals(index.cardinalities(), restored.cardinalities());
+        assertArrayEquals(new int[]{4, 7}, restored.matchOrdinals(Map.of("grade", "3", "subject", "science")));
+        restored.add(8, Map.of("grade", "3"));
+        assertArrayEquals(new int[]{1, 4, 7, 8}, restored.matchOrdinals(Map.of("grade", "3")));
+    }
+
+    @Test
+    public void testVersionOneBitmapsAreConverted() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x4D455441);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeUTF("grade");
+            out.writeInt(2);
+            // Rows 1, 4 and 70: the last one in the second word
+            out.writeUTF("3");
+            out.writeInt(2);
+            out.writeLong(0b10010L);
+            out.writeLong(1L << 6);
+            out.writeUTF("4");
+            out.writeInt(1);
+            out.writeLong(0b1101L);
+        }
+
+        MetadataIndex restored = MetadataIndex.readFrom(read(bytes.toByteArray()));
+        assertEquals(Set.of("grade"), restored.fields());
+        assertArrayEquals(new int[]{1, 4, 70}, restored.matchOrdinals(Map.of("grade", "3")));
+        assertArrayEquals(new int[]{0, 2, 3}, restored.matchOrdinals(Map.of("grade", "4")));
+        assertEquals(Map.of("grade", Map.of("3", 3, "4", 3)), restored.cardinalities());
+        // Converted lists take further adds like any other
+        restored.add(71, Map.of("grade", "4"));
+        assertArrayEquals(new int[]{0, 2, 3, 71}, restored.matchOrdinals(Map.of("grade", "4")));
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        assertThrows(IOException.class, () -> MetadataIndex.readFrom(read(new byte[16])));
+    }
+
+    /**
+     * Eight chunks over three fields
+     */
+    private static MetadataIndex newIndex() {
+        MetadataIndex index = new MetadataIndex(List.of("grade", "subject", "filename"));
+        String[][] chunks = {
+                {"2", "math", "numbers.pdf"},
+                {"3", "math", "numbers.pdf"},
+                {"2", "science", "plants.pdf"},
+                {"4", "science", "plants.pdf"},
+                {"3", "science", "animals.pdf"},
+                {"4", "math", "numbers.pdf"},
+                {"2", "science", "animals.pdf"},
+                {"3", "science", "plants.pdf"},
+        };
+        for (int ordinal = 0; ordinal < chunks.length; ordinal++) {
+            index.add(ordinal, Map.of("grade", chunks[ordinal][0], "subject", chunks[ordinal][1],
+                    "filename", chunks[ordinal][2]));
+        }
+        return index;
+    }
+
+    private static DataInputStream read(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,136 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.navigator.index.IndexFixtures.randomVectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecallEvaluatorTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    public void testExactIndexHasFullRecall() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 300, new Random(81));
+        ExactIndex exact = new ExactIndex(vectors);
+        Map<String, Object> result = new RecallEvaluator(vectors, new ScanIndex(exact, null)).evaluate(10, 40);
+
+        assertEquals(40, result.get("samples"));
+        assertEquals(300, result.get("indexSize"));
+        List<Map<String, Object>> runs = runs(result);
+        assertEquals(2, runs.size());
+        for (Map<String, Object> run : runs) {
+            assertEquals(1.0, (double) run.get("recall"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testQueryRowIsHeldOut() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 200, new Random(82));
+        // Finds only the query row itself, which a real search always ranks first
+        TunableIndex selfOnly = new ScanIndex(new ExactIndex(vectors), null) {
+            @Override
+            public SearchHits search(float[] query, int k, float minScore, int tuning) {
+                return super.search(query, 1, minScore, tuning);
+            }
+        };
+
+        Map<String, Object> result = new RecallEvaluator(vectors, selfOnly).evaluate(5, 30, 1);
+        assertEquals(0.0, (double) runs(result).get(0).get("recall"), 1e-9);
+    }
+
+    @Test
+    public void testSamplesAreDistinctLiveRows() {
+        VectorMatrix vectors = randomVectors(DIMENSION, 100, new Random(83));
+        BitSet deleted = new BitSet();
+        deleted.set(0, 95);
+        BitSet live = new BitSet();
+        live.set(95, 100);
+        ExactIndex exact = new ExactIndex(vectors);
+
+        Map<String, Object> filtered = new RecallEvaluator(vectors, new ScanIndex(exact, live), deleted)
+                .evaluate(3, 50, 1);
+        assertEquals(5, filtered.get("samples"));
+        assertEquals(5, filtered.get("indexSize"));
+        assertEquals(1.0, (double) runs(filtered).get(0).get("recall"), 1e-9);
+
+        // Deleted rows the index still returns take the places of live ones
+        Map<String, Object> unfiltered = new RecallEvaluator(vectors, new ScanIndex(exact, null), deleted)
+                .evaluate(3, 50, 1);
+        assertTrue((double) runs(unfiltered).get(0).get("recall") < 1.0);
+    }
+
+    @Test
+    public void testEmptyIndexReportsNoSamples() {
+        VectorMatrix vectors = new VectorMatrix(DIMENSION);
+        Map<String, Object> result = new RecallEvaluator(vectors, new ScanIndex(new ExactIndex(vectors), null))
+                .evaluate(10, 20);
+        assertEquals(0, result.get("samples"));
+        assertEquals(1.0, (double) runs(result).get(0).get("recall"), 1e-9);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> runs(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("runs");
+    }
+
+    /**
+     * Exact scan posing as an approximate index, optionally restricted to a filter
+     */
+    private static class ScanIndex implements TunableIndex {
+
+        private final ExactIndex exact;
+        private final BitSet filter;
+
+        ScanIndex(ExactIndex exact, BitSet filter) {
+            this.exact = exact;
+            this.filter = filter;
+        }
+
+        @Override
+        public String tuningParameter() {
+            return "unused";
+        }
+
+        @Override
+        public int tuningValue() {
+            return 1;
+        }
+
+        @Override
+        public int[] defaultSweep() {
+            return new int[]{1, 2};
+        }
+
+        @Override
+        public SearchHits search(float[] query, int k, float minScore, int tuning) {
+            return exact.search(query, k, minScore, filter);
+        }
+
+        @Override
+        public void add(int ordinal) {
+            exact.add(ordinal);
+        }
+
+        @Override
+        public SearchHits search(float[] query, int k, float minScore) {
+            return search(query, k, minScore, tuningValue());
+        }
+
+        @Override
+        public SearchHits search(float[] query, int k, float minScore, BitSet filter) {
+            return exact.search(query, k, minScore, filter);
+        }
+
+        @Override
+        public String type() {
+            return "scan";
+        }
+    }
+}
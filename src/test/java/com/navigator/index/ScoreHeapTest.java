@@ -0,0 +1,101 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScoreHeapTest {
+
+    @Test
+    public void testBoundedOfferKeepsTopK() {
+        Random random = new Random(17);
+        float[] scores = new float[1000];
+        ScoreHeap top = ScoreHeap.min(4);
+        for (int node = 0; node < scores.length; node++) {
+            scores[node] = random.nextFloat();
+            top.offer(node, scores[node], 10);
+        }
+        assertEquals(10, top.size());
+
+        float[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        SearchHits hits = top.drainDescending();
+        assertEquals(10, hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(sorted[sorted.length - 1 - i], hits.score(i), 0f);
+            assertEquals(sorted[sorted.length - 1 - i], scores[hits.ordinal(i)], 0f);
+        }
+        assertTrue(top.isEmpty());
+    }
+
+    @Test
+    public void testMinHeapPopsLowestFirst() {
+        ScoreHeap heap = ScoreHeap.min(1);
+        heap.push(1, 0.5f);
+        heap.push(2, 0.1f);
+        heap.push(3, 0.9f);
+        heap.push(4, 0.3f);
+
+        assertEquals(2, heap.topNode());
+        assertEquals(0.1f, heap.topScore(), 0f);
+        assertEquals(2, heap.pop());
+        assertEquals(4, heap.pop());
+        assertEquals(1, heap.pop());
+        assertEquals(3, heap.pop());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testMaxHeapPopsHighestFirst() {
+        ScoreHeap heap = ScoreHeap.max(2);
+        heap.push(1, 0.5f);
+        heap.push(2, 0.1f);
+        heap.push(3, 0.9f);
+
+        assertEquals(3, heap.pop());
+        assertEquals(1, heap.pop());
+        assertEquals(2, heap.pop());
+    }
+
+    @Test
+    public void testOfferIgnoresScoresBelowTheMinimumOnceFull() {
+        ScoreHeap top = ScoreHeap.min(3);
+        top.offer(1, 0.7f, 2);
+        top.offer(2, 0.8f, 2);
+        top.offer(3, 0.1f, 2);
+        top.offer(4, 0.9f, 2);
+
+        SearchHits hits = top.drainDescending();
+        assertEquals(2, hits.size());
+        assertEquals(4, hits.ordinal(0));
+        assertEquals(2, hits.ordinal(1));
+    }
+
+    @Test
+    public void testTiesKeepTheLowerNodesInAnyOrder() {
+        int[][] orders = {{5, 1, 4, 2, 3}, {1, 2, 3, 4, 5}, {5, 4, 3, 2, 1}};
+        for (int[] order : orders) {
+            ScoreHeap top = ScoreHeap.min(2);
+            for (int node : order) {
+                top.offer(node, node == 5 ? 0.9f : 0.5f, 3);
+            }
+            SearchHits hits = top.drainDescending();
+            assertEquals(5, hits.ordinal(0));
+            assertEquals(1, hits.ordinal(1));
+            assertEquals(2, hits.ordinal(2));
+        }
+    }
+
+    @Test
+    public void testClearEmptiesTheHeap() {
+        ScoreHeap heap = ScoreHeap.min(2);
+        heap.push(1, 1f);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertEquals(0, heap.drainDescending().size());
+    }
+}
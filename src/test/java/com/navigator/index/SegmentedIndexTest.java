@@ -0,0 +1,297 @@
+package com.navigator.index;
+
+import com.navigator.util.EmbeddingUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static com.navigator.index.IndexFixtures.ordinals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentedIndexTest {
+
+    private static final int DIMENSION = 16;
+
+    @Test
+    public void testMutableSegmentSealsAtMaxRows() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(25, new Random(51));
+        int sealed = 0;
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            if (index.add(ordinal, vectors.get(ordinal))) {
+                sealed++;
+            }
+        }
+
+        assertEquals(2, sealed);
+        assertEquals(2, index.sealedSegments().size());
+        assertEquals(5, index.mutableSegment().size());
+        assertEquals(25, index.liveCount());
+    }
+
+    @Test
+    public void testSearchSpansSegmentsAndSkipsTombstones() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(35, new Random(52));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+        float[] query = vectors.get(17);
+
+        assertArrayEquals(ordinals(exactSearch(vectors, query, 5, new BitSet())),
+                ordinals(index.search(query, 5, -1f, null)));
+
+        BitSet deleted = new BitSet();
+        deleted.set(17);
+        deleted.set(3);
+        deleted.set(33);
+        deleted.stream().forEach(index::delete);
+        assertFalse(index.delete(99));
+        assertEquals(32, index.liveCount());
+        SearchHits hits = index.search(query, 5, -1f, null);
+        assertArrayEquals(ordinals(exactSearch(vectors, query, 5, deleted)), ordinals(hits));
+        assertFalse(hits.contains(17));
+    }
+
+    @Test
+    public void testSegmentsAreSearchedInParallelAboveTheThreshold() {
+        try (ShardedScanner scanner = new ShardedScanner(4, 256)) {
+            // Ten segments of 100 rows: each is below the threshold, together they are above it
+            SegmentedIndex index = new SegmentedIndex(VectorMatrix::new, ExactIndex::new, 100, Long.MAX_VALUE, 0,
+                    scanner);
+            List<float[]> vectors = randomVectors(1000, new Random(60));
+            for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+                index.add(ordinal, vectors.get(ordinal));
+            }
+            BitSet deleted = new BitSet();
+            deleted.set(123);
+            index.delete(123);
+
+            float[][] queries = {vectors.get(123), vectors.get(500), vectors.get(999)};
+            SearchHits[] batch = index.searchBatch(queries, 7, -1f, null);
+            for (int q = 0; q < queries.length; q++) {
+                int[] expected = ordinals(exactSearch(vectors, queries[q], 7, deleted));
+                assertArrayEquals(expected, ordinals(index.search(queries[q], 7, -1f, null)));
+                assertArrayEquals(expected, ordinals(batch[q]));
+            }
+            assertEquals(4L, scanner.stats().get("fanOuts"));
+        }
+    }
+
+    @Test
+    public void testSegmentsBelowTheThresholdAreSearchedInTurn() {
+        try (ShardedScanner scanner = new ShardedScanner(4, 20000)) {
+            SegmentedIndex index = new SegmentedIndex(VectorMatrix::new, ExactIndex::new, 100, Long.MAX_VALUE, 0,
+                    scanner);
+            List<float[]> vectors = randomVectors(300, new Random(61));
+            for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+                index.add(ordinal, vectors.get(ordinal));
+            }
+            assertArrayEquals(ordinals(exactSearch(vectors, vectors.get(42), 5, new BitSet())),
+                    ordinals(index.search(vectors.get(42), 5, -1f, null)));
+            assertEquals(0L, scanner.stats().get("fanOuts"));
+        }
+    }
+
+    @Test
+    public void testOrdinalFilterMatchesTheBitmapFilter() {
+        List<float[]> vectors = randomVectors(60, new Random(62));
+        List<Function<VectorMatrix, VectorIndex>> factories = List.of(ExactIndex::new,
+                matrix -> new HnswIndex(matrix, 8, 50, 16));
+        for (Function<VectorMatrix, VectorIndex> factory : factories) {
+            SegmentedIndex index = new SegmentedIndex(VectorMatrix::new, factory, 10, Long.MAX_VALUE, 0);
+            for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+                index.add(ordinal, vectors.get(ordinal));
+            }
+            // A merged segment has gaps in its ordinals, the others are contiguous
+            index.delete(4);
+            index.delete(13);
+            List<IndexSegment> candidates = index.mergeCandidates(4, 0.5);
+            assertTrue(index.replace(candidates, index.merge(candidates, deletedRows(candidates))));
+            index.delete(21);
+            index.delete(55);
+
+            int[] filter = {0, 3, 4, 5, 12, 13, 14, 21, 22, 30, 39, 40, 47, 55, 58, 59, 70};
+            BitSet bitmap = ShardedScanner.bitmap(filter);
+            BitSet excluded = new BitSet();
+            excluded.set(0, 71);
+            excluded.andNot(bitmap);
+            excluded.set(4);
+            excluded.set(13);
+            excluded.set(21);
+            excluded.set(55);
+
+            float[][] queries = {vectors.get(5), vectors.get(21), vectors.get(44)};
+            SearchHits[] batch = index.searchOrdinalsBatch(queries, 6, -1f, filter);
+            for (int q = 0; q < queries.length; q++) {
+                int[] expected = ordinals(exactSearch(vectors, queries[q], 6, excluded));
+                assertArrayEquals(expected, ordinals(index.searchOrdinals(queries[q], 6, -1f, filter)));
+                assertArrayEquals(expected, ordinals(index.search(queries[q], 6, -1f, bitmap)));
+                assertArrayEquals(expected, ordinals(batch[q]));
+            }
+            assertEquals(0, index.searchOrdinals(queries[0], 6, -1f, new int[]{4, 13, 100}).size());
+            assertArrayEquals(ordinals(index.search(queries[0], 6, -1f, null)),
+                    ordinals(index.searchOrdinals(queries[0], 6, -1f, null)));
+        }
+    }
+
+    @Test
+    public void testMergeDropsTombstonedRowsAndKeepsResults() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(40, new Random(53));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+        BitSet deleted = new BitSet();
+        deleted.set(2);
+        deleted.set(15);
+        deleted.set(28);
+        deleted.stream().forEach(index::delete);
+
+        List<IndexSegment> candidates = index.mergeCandidates(4, 0.5);
+        assertEquals(4, candidates.size());
+        IndexSegment merged = index.merge(candidates, deletedRows(candidates));
+        assertTrue(index.replace(candidates, merged));
+
+        assertEquals(1, index.sealedSegments().size());
+        assertEquals(37, merged.size());
+        assertEquals(0, merged.deletedCount());
+        for (int row = 1; row < merged.size(); row++) {
+            assertTrue(merged.ordinal(row) > merged.ordinal(row - 1), "ordinals must ascend");
+        }
+        float[] query = vectors.get(21);
+        assertArrayEquals(ordinals(exactSearch(vectors, query, 6, deleted)),
+                ordinals(index.search(query, 6, -1f, null)));
+    }
+
+    @Test
+    public void testReplaceCarriesOverDeletesMadeDuringTheMerge() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(20, new Random(54));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+
+        List<IndexSegment> candidates = index.mergeCandidates(2, 0.5);
+        IndexSegment merged = index.merge(candidates, deletedRows(candidates));
+        // Deleted after the tombstone snapshot was taken
+        index.delete(7);
+        assertTrue(index.replace(candidates, merged));
+
+        assertEquals(20, merged.size());
+        assertEquals(1, merged.deletedCount());
+        assertEquals(19, index.liveCount());
+        assertFalse(index.search(vectors.get(7), 3, -1f, null).contains(7));
+    }
+
+    @Test
+    public void testReplaceFailsWhenASegmentIsGone() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(20, new Random(55));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+        List<IndexSegment> candidates = index.mergeCandidates(2, 0.5);
+        IndexSegment first = index.merge(candidates, deletedRows(candidates));
+        IndexSegment second = index.merge(candidates, deletedRows(candidates));
+
+        assertTrue(index.replace(candidates, first));
+        assertFalse(index.replace(candidates, second));
+        assertEquals(List.of(first), index.sealedSegments());
+    }
+
+    @Test
+    public void testHeavilyDeletedSegmentIsRewrittenAlone() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(20, new Random(56));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+        for (int ordinal = 10; ordinal < 15; ordinal++) {
+            index.delete(ordinal);
+        }
+
+        List<IndexSegment> candidates = index.mergeCandidates(4, 0.5);
+        assertEquals(1, candidates.size());
+        assertEquals(10, candidates.get(0).ordinal(0));
+        IndexSegment rewritten = index.merge(candidates, deletedRows(candidates));
+        assertTrue(index.replace(candidates, rewritten));
+        assertEquals(5, rewritten.size());
+        assertEquals(15, rewritten.ordinal(0));
+    }
+
+    @Test
+    public void testFullyDeletedSegmentLeavesNothingBehind() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        List<float[]> vectors = randomVectors(10, new Random(57));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+            index.delete(ordinal);
+        }
+
+        List<IndexSegment> candidates = index.mergeCandidates(4, 0.5);
+        IndexSegment merged = index.merge(candidates, deletedRows(candidates));
+        assertTrue(index.replace(candidates, merged));
+        assertTrue(index.sealedSegments().isEmpty());
+        assertEquals(0, index.liveCount());
+    }
+
+    @Test
+    public void testMergeIsCappedBySegmentBytes() {
+        // Room for 25 vectors: two segments of 10 fit, four do not
+        SegmentedIndex index = newIndex(10, 25L * DIMENSION * Float.BYTES);
+        List<float[]> vectors = randomVectors(40, new Random(58));
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            index.add(ordinal, vectors.get(ordinal));
+        }
+
+        assertTrue(index.mergeCandidates(4, 0.5).isEmpty());
+        assertEquals(2, index.mergeCandidates(2, 0.5).size());
+    }
+
+    @Test
+    public void testClearedIndexContinuesSegmentIds() {
+        SegmentedIndex index = newIndex(10, Long.MAX_VALUE);
+        for (float[] vector : randomVectors(10, new Random(59))) {
+            index.add(index.liveCount(), vector);
+        }
+        SegmentedIndex cleared = index.cleared();
+        assertEquals(0, cleared.liveCount());
+        assertTrue(cleared.mutableSegment().id() >= index.nextSegmentId());
+    }
+
+    private static SegmentedIndex newIndex(int maxMutableRows, long maxSegmentBytes) {
+        return new SegmentedIndex(VectorMatrix::new, ExactIndex::new, maxMutableRows, maxSegmentBytes, 0);
+    }
+
+    private static List<BitSet> deletedRows(List<IndexSegment> segments) {
+        List<BitSet> deleted = new ArrayList<>();
+        segments.forEach(segment -> deleted.add(segment.deletedRows()));
+        return deleted;
+    }
+
+    private static SearchHits exactSearch(List<float[]> vectors, float[] query, int k, BitSet deleted) {
+        ScoreHeap top = ScoreHeap.min(k + 1);
+        for (int ordinal = 0; ordinal < vectors.size(); ordinal++) {
+            if (!deleted.get(ordinal)) {
+                top.offer(ordinal, EmbeddingUtil.dot(query, vectors.get(ordinal)), k);
+            }
+        }
+        return top.drainDescending();
+    }
+
+    private static List<float[]> randomVectors(int count, Random random) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            vectors.add(IndexFixtures.randomVector(DIMENSION, random));
+        }
+        return vectors;
+    }
+}
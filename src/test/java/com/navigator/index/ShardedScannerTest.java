@@ -0,0 +1,145 @@
+package com.navigator.index;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.navigator.index.IndexFixtures.ordinals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ShardedScannerTest {
+
+    private static final int THRESHOLD = 600;
+    // Around the 256-row block and the threshold, and large enough for every shard to get several blocks
+    private static final int[] SIZES = {0, 1, 255, 256, 257, 511, 512, 513, 599, 600, 601, 1024, 3001};
+    private static final int[] KS = {1, 10, 100, 5000};
+
+    private final ShardedScanner scanner = new ShardedScanner(4, THRESHOLD);
+
+    @AfterEach
+    public void tearDown() {
+        scanner.close();
+    }
+
+    @Test
+    public void testShardedSearchEqualsTheSequentialScan() {
+        for (int rows : SIZES) {
+            for (int k : KS) {
+                SearchHits sharded = scanner.search(rows, k, 0.2f, ShardedScanner.blocks(ShardedScannerTest::score));
+                SearchHits sequential = ShardedScanner.scanRange(0, rows, k, 0.2f,
+                        ShardedScanner.blocks(ShardedScannerTest::score)).drainDescending();
+                String context = rows + " rows, k " + k;
+                assertSameHits(sequential, sharded, context);
+                assertArrayEquals(expectedTop(IntStream.range(0, rows).toArray(), k, 0.2f), ordinals(sharded));
+            }
+        }
+        // The four sizes from the threshold up, for every k
+        assertEquals(16L, scanner.stats().get("parallelSearches"));
+    }
+
+    @Test
+    public void testShardedBatchEqualsTheSequentialScan() {
+        int queries = 3;
+        for (int rows : SIZES) {
+            for (int k : KS) {
+                ShardedScanner.BatchScorer scorer = (from, to, scores) -> {
+                    for (int q = 0; q < queries; q++) {
+                        for (int row = from; row < to; row++) {
+                            scores[q][row - from] = score(row + 37 * q);
+                        }
+                    }
+                };
+                SearchHits[] sharded = scanner.searchBatch(rows, queries, k, 0.2f, scorer);
+                ScoreHeap[] sequential = ShardedScanner.scanRangeBatch(0, rows, queries, k, 0.2f, scorer);
+                assertEquals(queries, sharded.length);
+                for (int q = 0; q < queries; q++) {
+                    int shift = 37 * q;
+                    SearchHits single = ShardedScanner.scanRange(0, rows, k, 0.2f,
+                            ShardedScanner.blocks(row -> score(row + shift))).drainDescending();
+                    String context = rows + " rows, k " + k + ", query " + q;
+                    assertSameHits(sequential[q].drainDescending(), sharded[q], context);
+                    assertSameHits(single, sharded[q], context);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFilteredRowsScanEqualsTheFilteredSequentialScan() {
+        BitSet filter = new BitSet();
+        for (int row = 0; row < 4000; row++) {
+            if (row % 3 != 1) {
+                filter.set(row);
+            }
+        }
+        for (int rows : SIZES) {
+            int[] filtered = ShardedScanner.filteredRows(filter, rows);
+            assertArrayEquals(filter.get(0, rows).stream().toArray(), filtered);
+            for (int k : KS) {
+                SearchHits sharded = scanner.search(filtered.length, k, 0.2f,
+                        ShardedScanner.gather(filtered, ShardedScannerTest::score)).mapOrdinals(filtered);
+                assertArrayEquals(expectedTop(filtered, k, 0.2f), ordinals(sharded), rows + " rows, k " + k);
+            }
+        }
+        assertEquals(0, ShardedScanner.filteredRows(new BitSet(), 100).length);
+    }
+
+    @Test
+    public void testFanOutKeepsThePartOrder() {
+        List<Integer> parts = new ArrayList<>();
+        for (int part = 0; part < 9; part++) {
+            parts.add(part);
+        }
+        assertEquals(List.of(0, 10, 20, 30, 40, 50, 60, 70, 80), scanner.fanOut(parts, THRESHOLD, part -> part * 10));
+        assertEquals(1L, scanner.stats().get("fanOuts"));
+
+        // Below the threshold the parts run on the calling thread
+        Thread caller = Thread.currentThread();
+        assertEquals(List.of(true, true), scanner.fanOut(List.of(1, 2), THRESHOLD - 1,
+                part -> Thread.currentThread() == caller));
+        assertEquals(1L, scanner.stats().get("fanOuts"));
+    }
+
+    @Test
+    public void testThresholdIsAtLeastOneBlock() {
+        try (ShardedScanner small = new ShardedScanner(4, 10)) {
+            assertEquals(256, small.stats().get("threshold"));
+            small.search(255, 5, -1f, ShardedScanner.blocks(ShardedScannerTest::score));
+            assertEquals(1L, small.stats().get("sequentialSearches"));
+            assertEquals(0L, small.stats().get("parallelSearches"));
+        }
+    }
+
+    /**
+     * Only 17 distinct scores, so every top-k boundary falls inside a run of ties
+     */
+    private static float score(int row) {
+        return (row * 7919 % 17) / 17f;
+    }
+
+    /**
+     * Best k of the rows scoring at least minScore, higher score first and the lower row on a tie
+     */
+    private static int[] expectedTop(int[] rows, int k, float minScore) {
+        return IntStream.of(rows)
+                .filter(row -> score(row) >= minScore)
+                .boxed()
+                .sorted(Comparator.comparing((Integer row) -> -score(row)).thenComparing(row -> row))
+                .limit(k)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private static void assertSameHits(SearchHits expected, SearchHits actual, String context) {
+        assertArrayEquals(ordinals(expected), ordinals(actual), context);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.score(i), actual.score(i), 0f);
+        }
+    }
+}
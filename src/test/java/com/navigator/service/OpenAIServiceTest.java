@@ -0,0 +1,228 @@
+package com.navigator.service;
+
+import com.navigator.config.OpenAIConfig;
+import com.navigator.util.HashUtil;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = OpenAIConfig.class, properties = {
+        "openai_api_key=test-key",
+        "openai.embedding.cache.enabled=false",
+        // Small requests, so a few texts already take several concurrent batches
+        "openai.embedding.batch-size=4",
+        "openai.embedding.batch-tokens=60",
+        "openai.embedding.micro-batch.window-millis=0",
+        "openai.clients.max-entries=2"
+})
+public class OpenAIServiceTest {
+
+    @Autowired
+    private OpenAIConfig config;
+
+    // Texts of each request the stubbed embedding model received
+    private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<OpenAIService> services = new ArrayList<>();
+
+    private OpenAiEmbeddingModel embeddingModel;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        embeddingModel = mock(OpenAiEmbeddingModel.class);
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<String> texts = ((List<TextSegment>) invocation.getArgument(0)).stream()
+                    .map(TextSegment::text)
+                    .toList();
+            requests.add(texts);
+            if (texts.contains("poison")) {
+                throw new IllegalStateException("provider rejected the batch");
+            }
+            return Response.from(texts.stream().map(text -> Embedding.from(vector(text))).toList());
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        services.forEach(OpenAIService::shutdown);
+    }
+
+    @Test
+    public void testEmbedAllSplitsRequestsBySizeAndTokens() {
+        OpenAIService service = newService();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            texts.add("chunk " + i);
+        }
+        assertVectors(texts, service.embedAll(texts, "test-key"));
+        assertEquals(List.of(4, 4, 2), sortedRequests().stream().map(List::size).toList());
+        assertEquals(texts, sortedRequests().stream().flatMap(List::stream).toList());
+
+        // About 51 estimated tokens each, so no two fit the 60 token budget of a request
+        requests.clear();
+        List<String> longTexts = List.of("a".repeat(200), "b".repeat(200), "c".repeat(200));
+        assertVectors(longTexts, service.embedAll(longTexts, "test-key"));
+        assertEquals(List.of(List.of(longTexts.get(0)), List.of(longTexts.get(1)), List.of(longTexts.get(2))),
+                sortedRequests());
+    }
+
+    @Test
+    public void testEmbedAllSendsDuplicatesOnceAndKeepsTheOrder() {
+        OpenAIService service = newService();
+        List<String> texts = List.of("roots", "stems", "roots", "leaves", "stems", "roots");
+
+        assertVectors(texts, service.embedAll(texts, "test-key"));
+        assertEquals(List.of(List.of("roots", "stems", "leaves")), requests);
+        assertTrue(service.embedAll(List.of(), "test-key").isEmpty());
+    }
+
+    @Test
+    public void testEmbedAllFailsWhenABatchFails() {
+        OpenAIService service = newService();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            texts.add(i == 9 ? "poison" : "chunk " + i);
+        }
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> service.embedAll(texts, "test-key"));
+        assertTrue(failure.getMessage().contains("provider rejected the batch"));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        // Not an HTTP error, so the failed batch is not retried
+        assertEquals(1, requests.stream().filter(request -> request.contains("poison")).count());
+    }
+
+    @Test
+    public void testModelClientsAreReusedPerApiKey() {
+        OpenAIService service = track(new OpenAIService(config));
+        OpenAiEmbeddingModel embeddings = service.createEmbeddingModel("key-a");
+        assertSame(embeddings, service.createEmbeddingModel("key-a"));
+        assertNotSame(embeddings, service.createEmbeddingModel("key-b"));
+        ChatLanguageModel chat = service.createChatModel("key-a");
+        assertSame(chat, service.createChatModel("key-a"));
+        assertEquals(3L, service.clientStats().get("clientsCreated"));
+    }
+
+    @Test
+    public void testClientKeysHoldOnlyAHashOfTheApiKey() {
+        OpenAIService service = track(new OpenAIService(config));
+        String key = service.clientKey("sk-secret", "text-embedding-3-small", 256);
+        assertTrue(key.startsWith(HashUtil.sha256Hex("sk-secret")));
+        assertFalse(key.contains("sk-secret"));
+        assertEquals(key, service.clientKey("sk-secret", "text-embedding-3-small", 256));
+        assertNotEquals(key, service.clientKey("sk-secret", "text-embedding-3-small", 512));
+        assertNotEquals(key, service.clientKey("sk-other", "text-embedding-3-small", 256));
+    }
+
+    @Test
+    public void testRegistryKeepsAtMostMaxEntriesClients() {
+        OpenAIService service = track(new OpenAIService(config));
+        List<OpenAiEmbeddingModel> first = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            first.add(service.createEmbeddingModel("key-" + i));
+        }
+        Map<?, ?> registry = (Map<?, ?>) service.clientStats().get("embeddingModels");
+        assertEquals(2, registry.get("entries"));
+        assertTrue((long) registry.get("evictions") > 0);
+
+        // At least the three clients that did not fit are built again
+        int rebuilt = 0;
+        for (int i = 0; i < 5; i++) {
+            if (service.createEmbeddingModel("key-" + i) != first.get(i)) {
+                rebuilt++;
+            }
+        }
+        assertTrue(rebuilt >= 3);
+        assertEquals(5L + rebuilt, service.clientStats().get("clientsCreated"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLocalModelSetsTheDimensionAndIdentity() {
+        EmbeddingModel onnx = mock(EmbeddingModel.class);
+        when(onnx.dimension()).thenReturn(7);
+        when(onnx.embedAll(anyList())).thenAnswer(invocation -> Response.from(
+                ((List<TextSegment>) invocation.getArgument(0)).stream()
+                        .map(segment -> Embedding.from(new float[7]))
+                        .toList()));
+        OpenAIService service = track(new OpenAIService(config,
+                new LocalEmbeddingModel("mini", "local:0123456789abcdef/mean", onnx, null)));
+
+        assertEquals(7, service.embeddingDimension());
+        assertEquals("local:0123456789abcdef/mean", service.embeddingModelId());
+        assertEquals("mini", service.embeddingModelName());
+        assertEquals("local", service.embeddingCacheStats().get("provider"));
+        assertEquals(7, service.embeddingCacheStats().get("dimension"));
+
+        // No API batching: the local model spreads one call over its own threads
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            texts.add("chunk " + i);
+        }
+        assertEquals(10, service.embedAll(texts, null).size());
+        verify(onnx, times(1)).embedAll(anyList());
+        assertEquals(0L, service.clientStats().get("clientsCreated"));
+    }
+
+    private OpenAIService newService() {
+        OpenAIService service = spy(new OpenAIService(config));
+        doReturn(embeddingModel).when(service).createEmbeddingModel(anyString());
+        return track(service);
+    }
+
+    private OpenAIService track(OpenAIService service) {
+        services.add(service);
+        return service;
+    }
+
+    /**
+     * Requests the model received, sorted by their first text: they run concurrently, and the inputs of these
+     * tests are sorted
+     */
+    private List<List<String>> sortedRequests() {
+        List<List<String>> sorted = new ArrayList<>(requests);
+        sorted.sort(Comparator.comparing(request -> request.get(0)));
+        return sorted;
+    }
+
+    private static void assertVectors(List<String> texts, List<float[]> vectors) {
+        assertEquals(texts.size(), vectors.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertArrayEquals(vector(texts.get(i)), vectors.get(i));
+        }
+    }
+
+    private static float[] vector(String text) {
+        return new float[]{text.length(), text.hashCode() % 1000, text.charAt(0)};
+    }
+}
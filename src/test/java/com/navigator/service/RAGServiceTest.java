@@ -0,0 +1,371 @@
+package com.navigator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.navigator.config.RAGConfig;
+import com.navigator.model.Document;
+import com.navigator.model.response.SearchResponse;
+import com.navigator.model.response.SourceUpdateResponse;
+import com.navigator.util.EmbeddingUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = RAGConfig.class, properties = {
+        "rag.wal.fsync=false",
+        "rag.search.parallel.parallelism=2",
+        // Small segments, so uploads also seal segments and start background merges
+        "rag.segments.max-mutable-chunks=16"
+})
+public class RAGServiceTest {
+
+    private static final int DIMENSION = 24;
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private RAGConfig ragConfig;
+
+    private final OpenAIService openAIService = mock(OpenAIService.class);
+    private final List<RAGService> services = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ReflectionTestUtils.setField(ragConfig, "chunkFile", directory.resolve("rag_chunks.blob").toString());
+        when(openAIService.embedAll(anyList(), any())).thenAnswer(invocation ->
+                ((List<String>) invocation.getArgument(0)).stream().map(RAGServiceTest::embed).toList());
+        when(openAIService.embedQuery(anyString(), any())).thenAnswer(invocation -> embed(invocation.getArgument(0)));
+        when(openAIService.embeddingModelId()).thenReturn("test-model");
+        when(openAIService.embeddingModelName()).thenReturn("test-model");
+        when(openAIService.embeddingDimension()).thenReturn(DIMENSION);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        services.forEach(RAGService::shutdown);
+    }
+
+    @Test
+    public void testConcurrentUploadsAndSearchesKeepOrdinalsUnique() throws Exception {
+        RAGService service = newService();
+        int added = service.indexSource("seed.txt", text("seed", 0), Map.of("subject", "science"), null)
+                .getChunksAdded();
+
+        int uploaders = 4;
+        int uploadsEach = 10;
+        ExecutorService threads = Executors.newFixedThreadPool(uploaders + 2);
+        try {
+            AtomicBoolean uploading = new AtomicBoolean(true);
+            AtomicInteger searches = new AtomicInteger();
+            List<Future<?>> searchers = new ArrayList<>();
+            for (int s = 0; s < 2; s++) {
+                searchers.add(threads.submit(() -> {
+                    while (uploading.get()) {
+                        assertConsistent(service.search(text("seed", 0).substring(0, 300), 5, -1.0, null, null));
+                        searches.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            List<Future<Integer>> uploads = new ArrayList<>();
+            for (int u = 0; u < uploaders; u++) {
+                int uploader = u;
+                uploads.add(threads.submit(() -> {
+                    int chunks = 0;
+                    for (int i = 0; i < uploadsEach; i++) {
+                        String filename = "source-" + uploader + "-" + i + ".txt";
+                        chunks += service.indexSource(filename, text(filename, i), Map.of("subject", "science"), null)
+                                .getChunksAdded();
+                    }
+                    return chunks;
+                }));
+            }
+            for (Future<Integer> upload : uploads) {
+                added += upload.get(60, TimeUnit.SECONDS);
+            }
+            uploading.set(false);
+            for (Future<?> searcher : searchers) {
+                searcher.get(60, TimeUnit.SECONDS);
+            }
+            assertTrue(searches.get() > 0);
+
+            // Every chunk got its own ordinal, and together they are 0..n-1
+            TreeSet<Integer> ordinals = new TreeSet<>();
+            int chunks = 0;
+            for (Map<String, Object> source : service.listSources()) {
+                for (Document chunk : service.sourceChunks((String) source.get("filename"), null)) {
+                    ordinals.add(((Number) chunk.getMetadata().get("chunk_index")).intValue());
+                    chunks++;
+                }
+            }
+            assertEquals(added, chunks);
+            assertEquals(added, ordinals.size());
+            assertEquals(added, service.getDocumentCount());
+            assertEquals(0, (int) ordinals.first());
+            assertEquals(added - 1, (int) ordinals.last());
+            assertEquals(1 + uploaders * uploadsEach, service.listSources().size());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCheckpointsDuringAppendsReplayToTheSameState() throws Exception {
+        RAGService service = newService();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        int checkpoints = 0;
+        try {
+            Future<?> appends = writer.submit(() -> {
+                for (int i = 0; i < 30; i++) {
+                    service.indexSource("source-" + i + ".txt", text("source", i), Map.of("grade", "3"), null);
+                    if (i % 3 == 0) {
+                        service.deleteSource("source-" + (i / 2) + ".txt", null);
+                    }
+                }
+            });
+            // Checkpoint (and trim the log head) whenever the writer has made progress
+            int saved = -1;
+            while (!appends.isDone()) {
+                int count = service.getDocumentCount();
+                if (count != saved) {
+                    service.saveState();
+                    saved = count;
+                    checkpoints++;
+                } else {
+                    Thread.sleep(1);
+                }
+            }
+            appends.get();
+        } finally {
+            writer.shutdownNow();
+        }
+        assertTrue(checkpoints > 1, "only " + checkpoints + " checkpoints");
+        // Records after the last checkpoint, which only the log holds
+        int logged = service.indexSource("after.txt", text("after", 0), Map.of("grade", "4"), null).getChunksAdded();
+        SourceUpdateResponse deleted = service.deleteSource("source-29.txt", null);
+        assertTrue(deleted.getChunksRemoved() > 0);
+
+        List<Map<String, Object>> sources = service.listSources();
+        int count = service.getDocumentCount();
+        List<List<SearchResponse>> results = searchAll(service);
+
+        RAGService restarted = restart(service);
+        int replayed = restarted.replayWriteAheadLog();
+        assertTrue(replayed >= logged + 1, "replayed " + replayed);
+        assertEquals(count, restarted.getDocumentCount());
+        assertEquals(sources, restarted.listSources());
+        assertSameResults(results, searchAll(restarted));
+    }
+
+    @Test
+    public void testLegacyJsonStateLoadsAndSearchesAsBefore() throws Exception {
+        // The {"documents": [...]} file the service wrote before segments: raw embeddings as number arrays
+        List<Map<String, Object>> documents = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String text = "legacy chunk " + i + " " + text("legacy", i).substring(0, 200);
+            texts.add(text);
+            List<Float> embedding = new ArrayList<>();
+            for (float value : embed(text)) {
+                embedding.add(value * 3f);
+            }
+            documents.add(Map.of("text", text, "embedding", embedding,
+                    "metadata", Map.of("source", "legacy.txt", "chunk_index", i)));
+        }
+        new ObjectMapper().writeValue(directory.resolve("rag_index.json").toFile(), Map.of("documents", documents));
+
+        RAGService service = newService();
+        assertTrue(service.loadState());
+        assertEquals(40, service.getDocumentCount());
+        List<List<SearchResponse>> imported = new ArrayList<>();
+        for (int q = 0; q < 40; q += 9) {
+            String query = texts.get(q);
+            List<SearchResponse> hits = service.search(query, 5, -1.0, null, null);
+            assertEquals(legacyRanking(texts, query, 5), hits.stream().map(SearchResponse::getText).toList());
+            assertEquals(1.0, hits.get(0).getScore(), 1e-5);
+            assertEquals("legacy.txt", hits.get(0).getMetadata().get("source"));
+            imported.add(hits);
+        }
+        List<SearchResponse> filtered = service.search(texts.get(0), 5, -1.0, Map.of("source", "legacy.txt"), null);
+        assertEquals(legacyRanking(texts, texts.get(0), 5), filtered.stream().map(SearchResponse::getText).toList());
+
+        // The import is checkpointed, so the next start reads the segment instead of the JSON
+        RAGService restarted = restart(service);
+        assertEquals(40, restarted.getDocumentCount());
+        List<List<SearchResponse>> reloaded = new ArrayList<>();
+        for (int q = 0; q < 40; q += 9) {
+            reloaded.add(restarted.search(texts.get(q), 5, -1.0, null, null));
+        }
+        assertSameResults(imported, reloaded);
+    }
+
+    @Test
+    public void testSegmentOfAnotherModelIsNotLoaded() {
+        RAGService service = newService();
+        service.indexSource("roots.txt", text("roots", 0), Map.of("subject", "science"), null);
+        service.saveState();
+        stop(service);
+
+        when(openAIService.embeddingModelId()).thenReturn("other-model");
+        RAGService switched = newService();
+        assertFalse(switched.loadState());
+        assertEquals(0, switched.getDocumentCount());
+        stop(switched);
+
+        // The vector size is checked as well, for segments written before they named their model
+        when(openAIService.embeddingModelId()).thenReturn("test-model");
+        when(openAIService.embeddingDimension()).thenReturn(DIMENSION / 2);
+        assertFalse(newService().loadState());
+    }
+
+    @Test
+    public void testWriteAheadLogOfAnotherModelIsSetAside() throws Exception {
+        RAGService service = newService();
+        service.indexSource("roots.txt", text("roots", 0), Map.of("subject", "science"), null);
+        stop(service);
+
+        when(openAIService.embeddingModelId()).thenReturn("other-model");
+        RAGService switched = newService();
+        assertFalse(switched.loadState());
+        assertEquals(0, switched.replayWriteAheadLog());
+        assertEquals(0, switched.getDocumentCount());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.anyMatch(file -> file.getFileName().toString().startsWith("rag_index.wal.rejected.")));
+        }
+        stop(switched);
+
+        // The records are out of the log, so switching back does not bring them back either
+        when(openAIService.embeddingModelId()).thenReturn("test-model");
+        RAGService restored = newService();
+        restored.loadState();
+        assertEquals(0, restored.replayWriteAheadLog());
+        assertEquals(0, restored.getDocumentCount());
+    }
+
+    /**
+     * The texts of the k chunks with the highest cosine similarity, as the in-memory list search ranked them
+     */
+    private static List<String> legacyRanking(List<String> texts, String query, int k) {
+        float[] queryEmbedding = embed(query);
+        return texts.stream()
+                .sorted(Comparator.comparingDouble(
+                        text -> -EmbeddingUtil.cosineSimilarity(queryEmbedding, embed(text))))
+                .limit(k)
+                .toList();
+    }
+
+    /**
+     * Each hit's score must be that of its own text, so text and vector come from the same chunk
+     */
+    private static void assertConsistent(List<SearchResponse> hits) {
+        for (SearchResponse hit : hits) {
+            float[] query = EmbeddingUtil.normalize(embed(text("seed", 0).substring(0, 300)));
+            float score = EmbeddingUtil.dot(query, EmbeddingUtil.normalize(embed(hit.getText())));
+            assertEquals(score, hit.getScore(), 1e-5);
+        }
+    }
+
+    private static List<List<SearchResponse>> searchAll(RAGService service) {
+        List<List<SearchResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 30; i += 7) {
+            results.add(service.search(text("source", i), 5, -1.0, null, null));
+            results.add(service.search(text("source", i), 5, -1.0, Map.of("grade", "3"), null));
+        }
+        return results;
+    }
+
+    private static void assertSameResults(List<List<SearchResponse>> expected, List<List<SearchResponse>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int q = 0; q < expected.size(); q++) {
+            assertEquals(expected.get(q).size(), actual.get(q).size());
+            for (int i = 0; i < expected.get(q).size(); i++) {
+                SearchResponse before = expected.get(q).get(i);
+                SearchResponse after = actual.get(q).get(i);
+                assertEquals(before.getText(), after.getText());
+                assertEquals(before.getMetadata().get("chunk_index").toString(),
+                        after.getMetadata().get("chunk_index").toString());
+                assertEquals(before.getScore(), after.getScore(), 1e-6);
+            }
+        }
+    }
+
+    private RAGService newService() {
+        RAGService service = new RAGService(openAIService, ragConfig);
+        ReflectionTestUtils.setField(service, "ragIndexFile", directory.resolve("rag_index.json").toString());
+        ReflectionTestUtils.setField(service, "ragSegmentFile", directory.resolve("rag_index.seg").toString());
+        ReflectionTestUtils.setField(service, "ragWalFile", directory.resolve("rag_index.wal").toString());
+        services.add(service);
+        return service;
+    }
+
+    /**
+     * Shut the service down and load a new one from its files, as on the next start
+     */
+    private RAGService restart(RAGService service) {
+        stop(service);
+        RAGService restarted = newService();
+        assertTrue(restarted.loadState());
+        return restarted;
+    }
+
+    private void stop(RAGService service) {
+        service.shutdown();
+        services.remove(service);
+    }
+
+    /**
+     * A few chunks of text unique to the name and number
+     */
+    private static String text(String name, int number) {
+        Random random = new Random(name.hashCode() * 31L + number);
+        String[] words = {"plants", "light", "water", "roots", "leaves", "soil", "sun", "seeds", "energy", "sugar"};
+        StringBuilder text = new StringBuilder(name).append(' ').append(number);
+        while (text.length() < 2500) {
+            text.append(' ').append(words[random.nextInt(words.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Deterministic stand-in for an embedding model
+     */
+    private static float[] embed(String text) {
+        Random random = new Random(text.hashCode());
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
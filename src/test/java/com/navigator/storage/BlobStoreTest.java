@@ -0,0 +1,140 @@
+package com.navigator.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlobStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsRoundTripAcrossBlocks() throws IOException {
+        for (BlobStore.Compression compression : BlobStore.Compression.values()) {
+            Path path = directory.resolve("chunks-" + compression);
+            byte[][] records = randomRecords(500, new Random(41));
+            long[] references = new long[records.length];
+            long committed;
+            try (BlobStore store = BlobStore.open(path, 0, compression, 4096, 4)) {
+                for (int i = 0; i < records.length; i++) {
+                    references[i] = store.append(records[i]);
+                }
+                // Read back from disk, from the cache and from the block still being filled
+                for (int i = 0; i < records.length; i++) {
+                    assertArrayEquals(records[i], store.read(references[i]));
+                }
+                committed = store.commit();
+                assertEquals(committed, Files.size(path));
+            }
+
+            try (BlobStore store = BlobStore.open(path, committed, compression, 4096, 4)) {
+                for (int i = records.length - 1; i >= 0; i--) {
+                    assertArrayEquals(records[i], store.read(references[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDeflateShrinksRepetitiveText() throws IOException {
+        byte[] text = "Photosynthesis turns light, water and carbon dioxide into sugar. "
+                .getBytes(StandardCharsets.UTF_8);
+        long plain;
+        long deflated;
+        try (BlobStore store = BlobStore.open(directory.resolve("plain"), 0, BlobStore.Compression.NONE, 65536, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                store.append(text);
+            }
+            plain = store.commit();
+        }
+        try (BlobStore store = BlobStore.open(directory.resolve("deflated"), 0, BlobStore.Compression.DEFLATE,
+                65536, 4)) {
+            for (int i = 0; i < 1000; i++) {
+                store.append(text);
+            }
+            deflated = store.commit();
+        }
+        assertTrue(deflated * 5 < plain, "deflated " + deflated + " of " + plain + " bytes");
+    }
+
+    @Test
+    public void testOpenDiscardsBlocksAfterTheCommittedLength() throws IOException {
+        Path path = directory.resolve("chunks");
+        long kept;
+        long committed;
+        try (BlobStore store = BlobStore.open(path, 0, BlobStore.Compression.NONE, 1024, 4)) {
+            kept = store.append(bytes("checkpointed"));
+            committed = store.commit();
+            store.append(bytes("after the checkpoint"));
+            store.commit();
+        }
+
+        try (BlobStore store = BlobStore.open(path, committed, BlobStore.Compression.NONE, 1024, 4)) {
+            assertEquals(committed, Files.size(path));
+            assertEquals(committed, store.fileBytes());
+            assertArrayEquals(bytes("checkpointed"), store.read(kept));
+            long next = store.append(bytes("replayed"));
+            store.commit();
+            assertArrayEquals(bytes("replayed"), store.read(next));
+        }
+    }
+
+    @Test
+    public void testOpenRejectsAFileShorterThanCommitted() throws IOException {
+        Path path = directory.resolve("chunks");
+        Files.write(path, new byte[10]);
+        assertThrows(IOException.class, () -> BlobStore.open(path, 100, BlobStore.Compression.NONE, 1024, 4));
+    }
+
+    @Test
+    public void testDecompressedBlocksAreCached() throws IOException {
+        Path path = directory.resolve("chunks");
+        long reference;
+        long committed;
+        try (BlobStore store = BlobStore.open(path, 0, BlobStore.Compression.DEFLATE, 1024, 4)) {
+            reference = store.append(bytes("cached"));
+            committed = store.commit();
+        }
+
+        try (BlobStore store = BlobStore.open(path, committed, BlobStore.Compression.DEFLATE, 1024, 4)) {
+            store.read(reference);
+            store.read(reference);
+            assertEquals(1, store.cacheMisses());
+            assertEquals(1, store.cacheHits());
+        }
+    }
+
+    @Test
+    public void testCompressionByName() {
+        assertEquals(BlobStore.Compression.DEFLATE, BlobStore.Compression.of("Deflate"));
+        assertEquals(BlobStore.Compression.NONE, BlobStore.Compression.of("none"));
+        assertEquals(BlobStore.Compression.NONE, BlobStore.Compression.of(null));
+    }
+
+    private static byte[][] randomRecords(int count, Random random) {
+        byte[][] records = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            records[i] = new byte[random.nextInt(300)];
+            for (int j = 0; j < records[i].length; j++) {
+                // Small alphabet so deflate has something to compress
+                records[i][j] = (byte) ('a' + random.nextInt(8));
+            }
+        }
+        return records;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+package com.navigator.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EmbeddingCacheTest {
+
+    private static final String MODEL = "text-embedding-3-small";
+    // File layout: magic and version, then per record a 32-byte key, the dimension, the floats and a checksum
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 32 + Integer.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEmbeddingsSurviveAReopen() throws IOException {
+        Path path = directory.resolve("embeddings.bin");
+        byte[] key = EmbeddingCache.key(MODEL, "Plants need light");
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            assertNull(cache.get(key));
+            cache.put(key, new float[]{0.6f, 0.8f});
+            assertArrayEquals(new float[]{0.6f, 0.8f}, cache.get(key), 0f);
+            assertEquals(1L, cache.stats().get("memoryHits"));
+        }
+
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            assertEquals(1, cache.size());
+            assertArrayEquals(new float[]{0.6f, 0.8f}, cache.get(key), 0f);
+            assertEquals(1L, cache.stats().get("diskHits"));
+            assertArrayEquals(new float[]{0.6f, 0.8f}, cache.get(key), 0f);
+            assertEquals(1L, cache.stats().get("memoryHits"));
+        }
+    }
+
+    @Test
+    public void testFirstEmbeddingOfAKeyWins() throws IOException {
+        byte[] key = EmbeddingCache.key(MODEL, "text");
+        try (EmbeddingCache cache = EmbeddingCache.open(directory.resolve("embeddings.bin"), 10)) {
+            cache.put(key, new float[]{1f});
+            cache.put(key, new float[]{2f});
+            assertEquals(1, cache.size());
+            assertArrayEquals(new float[]{1f}, cache.get(key), 0f);
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncatedOnOpen() throws IOException {
+        Path path = directory.resolve("embeddings.bin");
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            cache.put(EmbeddingCache.key(MODEL, "one"), new float[]{1f, 0f});
+            cache.put(EmbeddingCache.key(MODEL, "two"), new float[]{0f, 1f});
+            cache.put(EmbeddingCache.key(MODEL, "three"), new float[]{1f, 1f});
+        }
+        // A crash in the middle of the last record
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            assertEquals(2, cache.size());
+            assertEquals(HEADER_BYTES + 2L * recordBytes(2), Files.size(path));
+            assertNull(cache.get(EmbeddingCache.key(MODEL, "three")));
+            cache.put(EmbeddingCache.key(MODEL, "three"), new float[]{1f, 1f});
+        }
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            assertEquals(3, cache.size());
+            assertArrayEquals(new float[]{1f, 1f}, cache.get(EmbeddingCache.key(MODEL, "three")), 0f);
+        }
+    }
+
+    @Test
+    public void testCorruptRecordEndsTheFile() throws IOException {
+        Path path = directory.resolve("embeddings.bin");
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            cache.put(EmbeddingCache.key(MODEL, "one"), new float[]{1f, 0f});
+            cache.put(EmbeddingCache.key(MODEL, "two"), new float[]{0f, 1f});
+            cache.put(EmbeddingCache.key(MODEL, "three"), new float[]{1f, 1f});
+        }
+        flipByte(path, HEADER_BYTES + recordBytes(2) + RECORD_HEADER_BYTES + 1);
+
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            assertEquals(1, cache.size());
+            assertEquals(HEADER_BYTES + recordBytes(2), Files.size(path));
+            assertArrayEquals(new float[]{1f, 0f}, cache.get(EmbeddingCache.key(MODEL, "one")), 0f);
+        }
+    }
+
+    @Test
+    public void testRecordDamagedAfterOpenIsDropped() throws IOException {
+        Path path = directory.resolve("embeddings.bin");
+        byte[] key = EmbeddingCache.key(MODEL, "one");
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 10)) {
+            cache.put(key, new float[]{1f, 0f});
+        }
+
+        try (EmbeddingCache cache = EmbeddingCache.open(path, 0)) {
+            flipByte(path, HEADER_BYTES + RECORD_HEADER_BYTES + 2);
+            assertNull(cache.get(key));
+            assertEquals(0, cache.size());
+            assertEquals(1L, cache.stats().get("misses"));
+        }
+    }
+
+    @Test
+    public void testKeyNormalizesTextAndIncludesTheModel() {
+        assertArrayEquals(EmbeddingCache.key(MODEL, "Plants need light"),
+                EmbeddingCache.key(MODEL, "  Plants\n\tneed   light "));
+        // e-acute precomposed, and as e followed by a combining acute accent
+        assertArrayEquals(EmbeddingCache.key(MODEL, "caf\u00e9"), EmbeddingCache.key(MODEL, "cafe\u0301"));
+        assertFalse(Arrays.equals(EmbeddingCache.key(MODEL, "text"),
+                EmbeddingCache.key("text-embedding-3-large", "text")));
+        assertEquals("", EmbeddingCache.normalize(null));
+    }
+
+    @Test
+    public void testRejectsFilesThatAreNotCaches() throws IOException {
+        Path path = directory.resolve("embeddings.bin");
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> EmbeddingCache.open(path, 10));
+    }
+
+    private static long recordBytes(int dimension) {
+        return RECORD_HEADER_BYTES + (long) dimension * Float.BYTES + Integer.BYTES;
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+}
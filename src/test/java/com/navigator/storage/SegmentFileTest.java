@@ -0,0 +1,123 @@
+package com.navigator.storage;
+
+import com.navigator.index.VectorMatrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegmentFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testVectorSegmentRoundTrip() throws IOException {
+        VectorMatrix vectors = new VectorMatrix(3);
+        vectors.add(new float[]{1f, 0f, 0f});
+        vectors.add(new float[]{0f, 0.6f, 0.8f});
+        Map<SegmentFile.Section, SegmentFile.SectionWriter> sections = new EnumMap<>(SegmentFile.Section.class);
+        sections.put(SegmentFile.Section.ORDINALS, out -> {
+            out.writeInt(2);
+            out.writeInt(10);
+            out.writeInt(11);
+        });
+
+        Path path = directory.resolve("segment.0");
+        SegmentFile.write(path, vectors, 3, 2, sections, 7);
+        SegmentFile segment = SegmentFile.open(path);
+
+        assertEquals(3, segment.dimension());
+        assertEquals(2, segment.size());
+        assertEquals(7, segment.generation());
+        assertTrue(segment.hasVectors());
+        assertFalse(segment.hasInlineChunks());
+        VectorMatrix mapped = segment.vectors();
+        assertEquals(2, mapped.size());
+        assertArrayEquals(new float[]{0f, 0.6f, 0.8f}, mapped.get(1), 0f);
+        assertEquals(0.8f * 0.8f + 0.6f * 0.6f, mapped.dot(new float[]{0f, 0.6f, 0.8f}, 1), 1e-6f);
+
+        DataInput ordinals = segment.section(SegmentFile.Section.ORDINALS);
+        assertEquals(2, ordinals.readInt());
+        assertEquals(10, ordinals.readInt());
+        assertEquals(11, ordinals.readInt());
+        assertNull(segment.section(SegmentFile.Section.HNSW));
+        assertFalse(Files.exists(directory.resolve("segment.0.tmp")));
+    }
+
+    @Test
+    public void testManifestWithoutVectors() throws IOException {
+        Map<SegmentFile.Section, SegmentFile.SectionWriter> sections = new EnumMap<>(SegmentFile.Section.class);
+        sections.put(SegmentFile.Section.SEGMENTS, out -> {
+            out.writeInt(3);
+            out.writeInt(0);
+        });
+        sections.put(SegmentFile.Section.MODEL, out -> out.writeUTF("text-embedding-3-small"));
+        sections.put(SegmentFile.Section.LOG_POSITION, out -> {
+            out.writeLong(4);
+            out.writeLong(1024);
+        });
+
+        Path path = directory.resolve("manifest");
+        SegmentFile.write(path, null, 1536, 42, sections, 5);
+        SegmentFile manifest = SegmentFile.open(path);
+
+        assertFalse(manifest.hasVectors());
+        assertEquals(42, manifest.size());
+        assertEquals(5, manifest.generation());
+        assertEquals("text-embedding-3-small", manifest.section(SegmentFile.Section.MODEL).readUTF());
+        DataInput position = manifest.section(SegmentFile.Section.LOG_POSITION);
+        assertEquals(4, position.readLong());
+        assertEquals(1024, position.readLong());
+        // Every reader starts at the beginning of its section
+        assertEquals(3, manifest.section(SegmentFile.Section.SEGMENTS).readInt());
+        assertEquals(3, manifest.section(SegmentFile.Section.SEGMENTS).readInt());
+    }
+
+    @Test
+    public void testRewriteReplacesTheFile() throws IOException {
+        Path path = directory.resolve("manifest");
+        Map<SegmentFile.Section, SegmentFile.SectionWriter> first = new EnumMap<>(SegmentFile.Section.class);
+        first.put(SegmentFile.Section.SEGMENTS, out -> out.writeInt(1));
+        SegmentFile.write(path, null, 0, 0, first, 1);
+
+        Map<SegmentFile.Section, SegmentFile.SectionWriter> second = new EnumMap<>(SegmentFile.Section.class);
+        second.put(SegmentFile.Section.SEGMENTS, out -> out.writeInt(2));
+        SegmentFile.write(path, null, 0, 0, second, 2);
+
+        SegmentFile manifest = SegmentFile.open(path);
+        assertEquals(2, manifest.generation());
+        assertEquals(2, manifest.section(SegmentFile.Section.SEGMENTS).readInt());
+    }
+
+    @Test
+    public void testRejectsFilesThatAreNotSegments() throws IOException {
+        Path garbage = directory.resolve("garbage");
+        Files.write(garbage, new byte[512]);
+        assertThrows(IOException.class, () -> SegmentFile.open(garbage));
+
+        Path empty = directory.resolve("empty");
+        SegmentFile.write(empty, null, 0, 0, new EnumMap<>(SegmentFile.Section.class), 1);
+        assertThrows(IOException.class, () -> SegmentFile.open(empty));
+    }
+
+    @Test
+    public void testRowCountMustMatchTheVectors() {
+        VectorMatrix vectors = new VectorMatrix(2);
+        vectors.add(new float[]{1f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> SegmentFile.write(directory.resolve("segment"), vectors,
+                2, 2, new EnumMap<>(SegmentFile.Section.class), 1));
+    }
+}
@@ -0,0 +1,246 @@
+package com.navigator.storage;
+
+import com.navigator.model.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+
+    private static final String MODEL = "text-embedding-3-small";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplayAppliesRecordsInOrder() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, true, MODEL)) {
+            assertEquals(0, wal.generation());
+            wal.appendAdd(new Document("Plants need light", Map.of("grade", "3")), new float[]{0.6f, 0.8f});
+            wal.appendDelete(new int[]{0});
+            wal.appendClear();
+            wal.appendAdd(new Document("Rocks erode", Map.of()), new float[]{1f, 0f});
+            wal.sync();
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, true, MODEL)) {
+            assertEquals(4, wal.records());
+            assertEquals(Set.of(2), wal.embeddingDimensions());
+            assertEquals(MODEL, wal.loggedModel());
+            RecordingReplayer replayer = new RecordingReplayer();
+            assertEquals(4, wal.replay(replayer));
+            assertEquals(List.of("add Plants need light [0.6, 0.8] {grade=3}", "delete [0]", "clear",
+                    "add Rocks erode [1.0, 0.0] {}"), replayer.events);
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncatedOnOpen() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        long intact;
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.appendAdd(new Document("one", Map.of()), new float[]{1f});
+            wal.appendAdd(new Document("two", Map.of()), new float[]{1f});
+            wal.sync();
+            intact = wal.sizeBytes();
+            wal.appendAdd(new Document("three", Map.of()), new float[]{1f});
+        }
+        // A crash in the middle of the last record
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(2, wal.records());
+            assertEquals(intact, wal.sizeBytes());
+            assertEquals(intact, Files.size(path));
+            wal.appendAdd(new Document("four", Map.of()), new float[]{1f});
+            wal.sync();
+            RecordingReplayer replayer = new RecordingReplayer();
+            wal.replay(replayer);
+            assertEquals(List.of("add one [1.0] {}", "add two [1.0] {}", "add four [1.0] {}"), replayer.events);
+        }
+    }
+
+    @Test
+    public void testCorruptRecordEndsTheLog() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        long firstEnd;
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.appendAdd(new Document("one", Map.of()), new float[]{1f});
+            wal.sync();
+            firstEnd = wal.sizeBytes();
+            wal.appendAdd(new Document("two", Map.of()), new float[]{1f});
+            wal.appendAdd(new Document("three", Map.of()), new float[]{1f});
+        }
+        // Flip a payload byte of the second record: its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long position = firstEnd + 2 * Integer.BYTES + 3;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(1, wal.records());
+            assertEquals(firstEnd, Files.size(path));
+        }
+    }
+
+    @Test
+    public void testResetStartsANewGeneration() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.appendDelete(new int[]{1, 2});
+            wal.reset(3);
+            assertEquals(3, wal.generation());
+            assertEquals(0, wal.records());
+            wal.appendClear();
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(3, wal.generation());
+            assertEquals(1, wal.records());
+        }
+    }
+
+    @Test
+    public void testTruncateHeadKeepsRecordsAfterTheOffset() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.appendAdd(new Document("checkpointed", Map.of()), new float[]{1f, 0f});
+            wal.appendDelete(new int[]{0});
+            long offset = wal.sizeBytes();
+            wal.appendAdd(new Document("after the checkpoint", Map.of()), new float[]{0f, 1f});
+
+            wal.truncateHead(offset, 4);
+            assertEquals(4, wal.generation());
+            assertEquals(1, wal.records());
+            wal.appendClear();
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(4, wal.generation());
+            RecordingReplayer replayer = new RecordingReplayer();
+            assertEquals(2, wal.replay(replayer));
+            assertEquals(List.of("add after the checkpoint [0.0, 1.0] {}", "clear"), replayer.events);
+        }
+    }
+
+    @Test
+    public void testTruncateHeadPastTheEndEmptiesTheLog() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.appendClear();
+            // The checkpoint saw a record whose bytes were lost in a crash
+            wal.truncateHead(wal.sizeBytes() + 100, 2);
+            assertEquals(2, wal.generation());
+            assertEquals(0, wal.records());
+        }
+    }
+
+    @Test
+    public void testSetAsideKeepsTheRecords() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            wal.reset(6);
+            wal.appendClear();
+            Path rejected = wal.setAside(2);
+
+            assertEquals(directory.resolve("rag.wal.rejected.6"), rejected);
+            assertTrue(Files.exists(rejected));
+            assertEquals(2, wal.generation());
+            assertEquals(0, wal.records());
+        }
+        try (WriteAheadLog rejected = WriteAheadLog.open(directory.resolve("rag.wal.rejected.6"), false, MODEL)) {
+            assertEquals(1, rejected.records());
+        }
+    }
+
+    @Test
+    public void testHeaderNamesTheModelOfTheRecords() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, "local:abc/mean")) {
+            wal.appendAdd(new Document("text", Map.of()), new float[384]);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            // Opening does not rewrite the header: the records are still those of the previous model
+            assertEquals("local:abc/mean", wal.loggedModel());
+            assertEquals(Set.of(384), wal.embeddingDimensions());
+            wal.reset(1);
+            assertEquals(MODEL, wal.loggedModel());
+        }
+    }
+
+    @Test
+    public void testVersionOneLogIsReadWithoutAModel() throws IOException {
+        Path path = directory.resolve("rag.wal");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))) {
+            out.writeInt(0x5257414C);
+            out.writeInt(1);
+            out.writeLong(9);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(9, wal.generation());
+            assertNull(wal.loggedModel());
+            assertEquals(16, wal.sizeBytes());
+            wal.appendClear();
+            wal.sync();
+            RecordingReplayer replayer = new RecordingReplayer();
+            assertEquals(1, wal.replay(replayer));
+            assertEquals(List.of("clear"), replayer.events);
+        }
+    }
+
+    @Test
+    public void testNewLogStartsAtGenerationZero() throws IOException {
+        Path path = directory.resolve("nested").resolve("rag.wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(path, false, MODEL)) {
+            assertEquals(0, wal.generation());
+            assertEquals(0, wal.records());
+            assertTrue(wal.embeddingDimensions().isEmpty());
+        }
+        assertFalse(Files.exists(directory.resolve("nested").resolve("rag.wal.tmp")));
+    }
+
+    /**
+     * Records the replayed mutations as readable strings
+     */
+    private static final class RecordingReplayer implements WriteAheadLog.Replayer {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void add(Document chunk, float[] embedding) {
+            events.add("add " + chunk.getText() + " " + Arrays.toString(embedding) + " " + chunk.getMetadata());
+        }
+
+        @Override
+        public void clear() {
+            events.add("clear");
+        }
+
+        @Override
+        public void delete(int[] ordinals) {
+            events.add("delete " + Arrays.toString(ordinals));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AimdLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testLimitBoundsCallsInFlight() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, 2.0);
+        assertTrue(limiter.tryAcquire(0));
+        assertTrue(limiter.tryAcquire(0));
+        assertFalse(limiter.tryAcquire(10 * MILLIS));
+        assertEquals(2, limiter.stats().get("inFlight"));
+        assertEquals(0, limiter.stats().get("waiting"));
+
+        limiter.onFailure();
+        assertTrue(limiter.tryAcquire(0));
+        assertEquals(2, limiter.stats().get("limit"));
+    }
+
+    @Test
+    public void testReleaseAdmitsAWaitingCaller() throws Exception {
+        AimdLimiter limiter = new AimdLimiter(1, 1, 10, 2.0);
+        limiter.acquire();
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                waiter.complete(limiter.tryAcquire(TimeUnit.SECONDS.toNanos(5)));
+            } catch (InterruptedException e) {
+                waiter.completeExceptionally(e);
+            }
+        });
+        thread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) limiter.stats().get("waiting") == 0) {
+            assertTrue(System.nanoTime() < deadline, "caller never queued");
+            Thread.sleep(1);
+        }
+
+        limiter.onSuccess(MILLIS);
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        thread.join();
+        assertEquals(1, limiter.stats().get("inFlight"));
+    }
+
+    @Test
+    public void testSuccessesRaiseTheLimitUpToTheMaximum() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 4, 2.0);
+        for (int call = 0; call < 5; call++) {
+            limiter.acquire();
+            limiter.onSuccess(MILLIS);
+        }
+        assertEquals(3, limiter.stats().get("limit"));
+
+        for (int call = 0; call < 100; call++) {
+            limiter.acquire();
+            limiter.onSuccess(MILLIS);
+        }
+        assertEquals(4, limiter.stats().get("limit"));
+    }
+
+    @Test
+    public void testOverloadHalvesTheLimitDownToTheMinimum() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(8, 3, 10, 2.0);
+        limiter.acquire();
+        limiter.onOverload();
+        assertEquals(4, limiter.stats().get("limit"));
+        limiter.acquire();
+        limiter.onOverload();
+        assertEquals(3, limiter.stats().get("limit"));
+        assertEquals(2L, limiter.stats().get("overloads"));
+    }
+
+    @Test
+    public void testSlowCallTrimsTheLimit() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 10, 2.0);
+        // The first call sets the baseline latency
+        limiter.acquire();
+        limiter.onSuccess(10 * MILLIS);
+        assertEquals(10, limiter.stats().get("limit"));
+
+        limiter.acquire();
+        limiter.onSuccess(50 * MILLIS);
+        assertEquals(9, limiter.stats().get("limit"));
+        assertEquals(1L, limiter.stats().get("slowCalls"));
+        assertEquals(10L, limiter.stats().get("baselineMillis"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.navigator.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the scalar and SIMD similarity kernels.
+ * Run with: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EmbeddingUtilBenchmark {
+
+    @Param({"1536"})
+    private int dimension;
+
+    @Param({"10000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean simd;
+
+    private float[] query;
+    private float[] matrix;
+    private float[] scores;
+    private float queryNorm;
+
+    @Setup
+    public void setUp() {
+        EmbeddingUtil.setSimdEnabled(simd);
+
+        Random random = new Random(42);
+        query = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            query[i] = random.nextFloat() - 0.5f;
+        }
+        matrix = new float[rows * dimension];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = random.nextFloat() - 0.5f;
+        }
+        scores = new float[rows];
+        queryNorm = EmbeddingUtil.norm(query);
+    }
+
+    @Benchmark
+    public float dotProduct() {
+        return EmbeddingUtil.dot(query, 0, matrix, 0, dimension);
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return EmbeddingUtil.cosineSimilarity(query, queryNorm, matrix, 0, dimension);
+    }
+
+    @Benchmark
+    public float squaredDistance() {
+        return EmbeddingUtil.squaredDistance(query, 0, matrix, 0, dimension);
+    }
+
+    @Benchmark
+    public float[] queryAgainstAllRows() {
+        EmbeddingUtil.dotRows(query, matrix, dimension, 0, rows, scores);
+        return scores;
+    }
+}
@@ -0,0 +1,111 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MicroBatcherTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(200);
+
+    @Test
+    public void testItemsWithinAWindowShareOneCall() throws Exception {
+        List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", WINDOW, 10, Runnable::run,
+                batch -> {
+                    calls.add(batch);
+                    return batch.stream().map(String::toUpperCase).toList();
+                })) {
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (String item : List.of("roots", "stems", "leaves")) {
+                futures.add(batcher.submit(item));
+            }
+
+            assertEquals("ROOTS", get(futures.get(0)));
+            assertEquals("STEMS", get(futures.get(1)));
+            assertEquals("LEAVES", get(futures.get(2)));
+            assertEquals(List.of(List.of("roots", "stems", "leaves")), calls);
+            assertEquals(1L, batcher.stats().get("batches"));
+            assertEquals(3.0, (double) batcher.stats().get("averageBatchSize"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testFullBatchIsDispatchedBeforeTheWindowEnds() throws Exception {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test-batcher", Duration.ofSeconds(30), 4,
+                Runnable::run, batch -> {
+                    sizes.add(batch.size());
+                    return batch;
+                })) {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int item = 0; item < 8; item++) {
+                futures.add(batcher.submit(item));
+            }
+            for (int item = 0; item < 8; item++) {
+                assertEquals(item, (int) get(futures.get(item)));
+            }
+
+            assertEquals(List.of(4, 4), sizes);
+            Map<?, ?> distribution = (Map<?, ?>) batcher.stats().get("batchSizes");
+            assertEquals(2L, distribution.get("3-4"));
+        }
+    }
+
+    @Test
+    public void testPartitionsAreCalledSeparately() throws Exception {
+        List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", WINDOW, 10, Runnable::run,
+                item -> item.charAt(0), batch -> {
+                    calls.add(batch);
+                    if (batch.get(0).startsWith("x")) {
+                        throw new IllegalStateException("key rejected");
+                    }
+                    return batch;
+                })) {
+            CompletableFuture<String> first = batcher.submit("a1");
+            CompletableFuture<String> rejected = batcher.submit("x1");
+            CompletableFuture<String> second = batcher.submit("a2");
+
+            assertEquals("a1", get(first));
+            assertEquals("a2", get(second));
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> get(rejected));
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+            assertEquals(List.of(List.of("a1", "a2"), List.of("x1")), calls);
+        }
+    }
+
+    @Test
+    public void testWrongResultCountFailsTheBatch() {
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", WINDOW, 10, Runnable::run,
+                batch -> List.of())) {
+            CompletableFuture<String> future = batcher.submit("item");
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> get(future));
+            assertTrue(failure.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testClosedBatcherRejectsItems() {
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test-batcher", WINDOW, 10, Runnable::run,
+                batch -> batch);
+        batcher.close();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> get(batcher.submit("item")));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+    }
+
+    private static <R> R get(CompletableFuture<R> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
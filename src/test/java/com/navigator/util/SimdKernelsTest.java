@@ -0,0 +1,149 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SimdKernelsTest {
+
+    // Around and between the lane counts of 128- to 512-bit hosts, so the scalar tails are exercised
+    private static final int[] DIMENSIONS = {1, 3, 4, 7, 9, 15, 17, 31, 33, 63, 65, 100, 383, 1537};
+
+    @BeforeEach
+    public void requireVectorApi() {
+        assumeTrue(EmbeddingUtil.isSimdAvailable(), "run with --add-modules jdk.incubator.vector");
+    }
+
+    @Test
+    public void testDotMatchesScalar() {
+        Random random = new Random(91);
+        for (int dimension : DIMENSIONS) {
+            float[] a = randomFloats(dimension + 5, random);
+            float[] b = randomFloats(dimension + 3, random);
+            assertEquals(scalarDot(a, 5, b, 3, dimension), SimdKernels.dot(a, 5, b, 3, dimension),
+                    tolerance(dimension), "dimension " + dimension);
+        }
+    }
+
+    @Test
+    public void testBufferDotMatchesScalar() {
+        Random random = new Random(92);
+        for (int dimension : DIMENSIONS) {
+            float[] vector = randomFloats(dimension, random);
+            float[] a = randomFloats(dimension, random);
+            float[] b = randomFloats(dimension, random);
+            ByteBuffer buffer = ByteBuffer.allocateDirect((2 * dimension + 1) * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            // One float of padding, so rows start at an odd offset
+            int aOffset = Float.BYTES;
+            int bOffset = aOffset + dimension * Float.BYTES;
+            for (int i = 0; i < dimension; i++) {
+                buffer.putFloat(aOffset + i * Float.BYTES, a[i]);
+                buffer.putFloat(bOffset + i * Float.BYTES, b[i]);
+            }
+
+            assertEquals(scalarDot(vector, 0, a, 0, dimension), SimdKernels.dot(vector, buffer, aOffset, dimension),
+                    tolerance(dimension), "dimension " + dimension);
+            assertEquals(scalarDot(a, 0, b, 0, dimension), SimdKernels.dot(buffer, aOffset, bOffset, dimension),
+                    tolerance(dimension), "dimension " + dimension);
+        }
+    }
+
+    @Test
+    public void testSquaredDistanceMatchesScalar() {
+        Random random = new Random(93);
+        for (int dimension : DIMENSIONS) {
+            float[] a = randomFloats(dimension, random);
+            float[] b = randomFloats(dimension + 2, random);
+            double expected = 0;
+            for (int i = 0; i < dimension; i++) {
+                double diff = a[i] - b[i + 2];
+                expected += diff * diff;
+            }
+            assertEquals(expected, SimdKernels.squaredDistance(a, 0, b, 2, dimension), tolerance(dimension),
+                    "dimension " + dimension);
+        }
+    }
+
+    @Test
+    public void testCosineSimilarityMatchesScalar() {
+        Random random = new Random(94);
+        for (int dimension : DIMENSIONS) {
+            float[] vector = randomFloats(dimension, random);
+            float[] data = randomFloats(dimension + 1, random);
+            double dot = scalarDot(vector, 0, data, 1, dimension);
+            double expected = dot / Math.sqrt(scalarDot(vector, 0, vector, 0, dimension)
+                    * scalarDot(data, 1, data, 1, dimension));
+            float vectorNorm = (float) Math.sqrt(scalarDot(vector, 0, vector, 0, dimension));
+
+            assertEquals(expected, SimdKernels.cosineSimilarity(vector, vectorNorm, data, 1, dimension), 1e-5,
+                    "dimension " + dimension);
+        }
+        assertEquals(0.0, SimdKernels.cosineSimilarity(new float[5], 0f, new float[5], 0, 5), 0.0);
+    }
+
+    @Test
+    public void testInt8DotIsExact() {
+        Random random = new Random(95);
+        for (int dimension : DIMENSIONS) {
+            byte[] a = new byte[dimension + 1];
+            byte[] b = new byte[dimension];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            // The extremes, where a wrong widening would overflow or lose the sign
+            a[1] = Byte.MIN_VALUE;
+            b[0] = Byte.MIN_VALUE;
+            int expected = 0;
+            for (int i = 0; i < dimension; i++) {
+                expected += a[i + 1] * b[i];
+            }
+            assertEquals(expected, SimdKernels.dotInt8(a, 1, b, 0, dimension), "dimension " + dimension);
+        }
+    }
+
+    @Test
+    public void testDotRowsMatchesScalar() {
+        Random random = new Random(96);
+        for (int dimension : DIMENSIONS) {
+            int rows = 11;
+            float[] query = randomFloats(dimension, random);
+            float[] data = randomFloats(rows * dimension, random);
+            // Row counts that leave every remainder after the groups of four
+            for (int fromRow = 0; fromRow < 4; fromRow++) {
+                float[] scores = new float[rows - fromRow];
+                SimdKernels.dotRows(query, data, dimension, fromRow, rows, scores);
+                for (int row = fromRow; row < rows; row++) {
+                    assertEquals(scalarDot(query, 0, data, row * dimension, dimension), scores[row - fromRow],
+                            tolerance(dimension), "dimension " + dimension + ", row " + row);
+                }
+            }
+        }
+    }
+
+    private static double scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += (double) a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    // Float accumulation error grows with the number of terms
+    private static double tolerance(int dimension) {
+        return 1e-5 * dimension + 1e-6;
+    }
+
+    private static float[] randomFloats(int length, Random random) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,123 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+
+    // Own threads: the leader blocks, and the common pool may have only one
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneCall() throws Exception {
+        SingleFlight<String, StringBuilder> flight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<StringBuilder> leader = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+            return new StringBuilder("result");
+        }), callers);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<StringBuilder> follower = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            runs.incrementAndGet();
+            return new StringBuilder("second call");
+        }), callers);
+        awaitCoalesced(flight, 1);
+        release.countDown();
+
+        assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(1L, flight.stats().get("calls"));
+        assertEquals(0, flight.stats().get("inFlight"));
+    }
+
+    @Test
+    public void testJoinedCallersGetTheException() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Throwable> leader = CompletableFuture.supplyAsync(() -> thrown(() -> flight.execute("key",
+                () -> {
+                    started.countDown();
+                    await(release);
+                    throw new IllegalStateException("upstream failed");
+                })), callers);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Throwable> follower = CompletableFuture.supplyAsync(
+                () -> thrown(() -> flight.execute("key", () -> "not called")), callers);
+        awaitCoalesced(flight, 1);
+        release.countDown();
+
+        Throwable first = leader.get(5, TimeUnit.SECONDS);
+        assertTrue(first instanceof IllegalStateException);
+        assertSame(first, follower.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletedCallsAreNotReused() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger runs = new AtomicInteger();
+        assertEquals("1", flight.execute("key", () -> String.valueOf(runs.incrementAndGet())));
+        assertEquals("2", flight.execute("key", () -> String.valueOf(runs.incrementAndGet())));
+        assertEquals("3", flight.execute("other", () -> String.valueOf(runs.incrementAndGet())));
+        assertEquals(3L, flight.stats().get("calls"));
+        assertEquals(0L, flight.stats().get("coalesced"));
+    }
+
+    @Test
+    public void testFailedCallIsNotKept() {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        assertThrows(IllegalArgumentException.class, () -> flight.execute("key", () -> {
+            throw new IllegalArgumentException("bad input");
+        }));
+        assertEquals("ok", flight.execute("key", () -> "ok"));
+    }
+
+    private static void awaitCoalesced(SingleFlight<?, ?> flight, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((long) flight.stats().get("coalesced") < expected) {
+            assertTrue(System.nanoTime() < deadline, "caller never joined the call in flight");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Throwable thrown(Runnable call) {
+        try {
+            call.run();
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+}
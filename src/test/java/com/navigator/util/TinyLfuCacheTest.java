@@ -0,0 +1,81 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void testPutThenGet() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, Duration.ZERO);
+        assertNull(cache.get("photosynthesis"));
+        cache.put("photosynthesis", "first");
+        cache.put("photosynthesis", "second");
+
+        assertEquals("second", cache.get("photosynthesis"));
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+        assertEquals(0.5, (double) cache.stats().get("hitRate"), 1e-9);
+    }
+
+    @Test
+    public void testSizeStaysWithinTheMaximum() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, Duration.ZERO);
+        for (int key = 0; key < 500; key++) {
+            cache.put(key, key);
+        }
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+        assertEquals(100, cache.stats().get("maxEntries"));
+        assertTrue((long) cache.stats().get("evictions") >= 400);
+    }
+
+    @Test
+    public void testScanOfOneOffKeysKeepsFrequentKeys() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, Duration.ZERO);
+        for (int key = 0; key < 50; key++) {
+            cache.put(key, key);
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 50; key++) {
+                cache.get(key);
+            }
+        }
+        // Keys that are put once and never read
+        for (int key = 1000; key < 3000; key++) {
+            cache.put(key, key);
+        }
+
+        for (int key = 0; key < 50; key++) {
+            assertNotNull(cache.get(key), "frequent key " + key + " was evicted");
+        }
+    }
+
+    @Test
+    public void testEntriesExpireAfterTheTtl() throws InterruptedException {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, Duration.ofMillis(1));
+        cache.put("key", "value");
+        Thread.sleep(5);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.stats().get("expirations"));
+    }
+
+    @Test
+    public void testClearRemovesEverything() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(10, Duration.ZERO);
+        for (int key = 0; key < 10; key++) {
+            cache.put(key, key);
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(3));
+    }
+}
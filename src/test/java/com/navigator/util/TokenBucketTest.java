@@ -0,0 +1,68 @@
+package com.navigator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketTest {
+
+    @Test
+    public void testBucketStartsFull() throws InterruptedException {
+        // One token per second: the refill during the test is negligible
+        TokenBucket bucket = new TokenBucket(60);
+        assertEquals(60, bucket.available(), 0.5);
+        assertTrue(bucket.tryAcquire(60, 0));
+        assertEquals(0, bucket.available(), 0.5);
+    }
+
+    @Test
+    public void testTryAcquireTakesNothingWhenTheWaitIsTooLong() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(60);
+        assertTrue(bucket.tryAcquire(50, 0));
+        assertFalse(bucket.tryAcquire(20, TimeUnit.MILLISECONDS.toNanos(100)));
+        assertEquals(10, bucket.available(), 0.5);
+        assertTrue(bucket.tryAcquire(10, 0));
+    }
+
+    @Test
+    public void testTryAcquireWaitsForTheRefill() throws InterruptedException {
+        // 100 tokens per second
+        TokenBucket bucket = new TokenBucket(6000);
+        assertTrue(bucket.tryAcquire(6000, 0));
+
+        long start = System.nanoTime();
+        assertTrue(bucket.tryAcquire(5, TimeUnit.SECONDS.toNanos(1)));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 40, "waited " + waitedMillis + " ms");
+    }
+
+    @Test
+    public void testReservationsOverdrawTheBucket() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(6000);
+        assertEquals(0, bucket.acquire(6000));
+        assertTrue(bucket.acquire(3) > 0);
+        assertTrue(bucket.available() < 1);
+    }
+
+    @Test
+    public void testRefundIsCappedAtCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(60);
+        assertTrue(bucket.tryAcquire(40, 0));
+        bucket.refund(30);
+        assertEquals(50, bucket.available(), 0.5);
+        bucket.refund(100);
+        assertEquals(60, bucket.available(), 1e-9);
+    }
+
+    @Test
+    public void testZeroRateIsUnlimited() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0);
+        assertTrue(bucket.isUnlimited());
+        assertEquals(0, bucket.acquire(Long.MAX_VALUE / 2));
+        assertTrue(bucket.tryAcquire(1_000_000, 0));
+    }
+}